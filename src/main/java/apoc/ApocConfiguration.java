@@ -26,13 +26,13 @@ public class ApocConfiguration {
     }
 
     public static void initialize(GraphDatabaseAPI db) {
-        Static.clear();
         Map<String, String> params = db.getDependencyResolver().resolveDependency(Config.class).getRaw();
         apocConfig.clear();
         apocConfig.putAll(Util.subMap(params, PREFIX));
         PARAM_WHITELIST.forEach((k, v) -> apocConfig.put(v, params.get(k)) );
         config.clear();
         params.forEach((k, v) -> { if (!SKIP.matcher(k).find()) {config.put(k, v);} });
+        Static.clear();
     }
 
     public static Map<String, Object> get(String prefix) {
@@ -1,6 +1,8 @@
 package apoc;
 
+import apoc.cache.QueryCache;
 import apoc.index.IndexUpdateTransactionEventHandler;
+import apoc.index.IndexWarmup;
 import apoc.trigger.Trigger;
 import apoc.ttl.TTLLifeCycle;
 import org.neo4j.kernel.extension.KernelExtensionFactory;
@@ -45,6 +47,8 @@ public class ApocKernelExtensionFactory extends KernelExtensionFactory<ApocKerne
         private Trigger.LifeCycle triggerLifeCycle;
         private Log userLog;
         private TTLLifeCycle ttlLifeCycle;
+        private QueryCache.LifeCycle queryCacheLifeCycle;
+        private IndexWarmup.LifeCycle indexWarmupLifeCycle;
 
         private IndexUpdateTransactionEventHandler.LifeCycle indexUpdateLifeCycle;
 
@@ -71,6 +75,10 @@ public class ApocKernelExtensionFactory extends KernelExtensionFactory<ApocKerne
             triggerLifeCycle.start();
             indexUpdateLifeCycle = new IndexUpdateTransactionEventHandler.LifeCycle(db, log.getUserLog(Procedures.class));
             indexUpdateLifeCycle.start();
+            queryCacheLifeCycle = new QueryCache.LifeCycle(db);
+            queryCacheLifeCycle.start();
+            indexWarmupLifeCycle = new IndexWarmup.LifeCycle(db, log.getUserLog(IndexWarmup.class));
+            indexWarmupLifeCycle.start();
         }
 
         public void registerCustomProcedures() {
@@ -97,6 +105,18 @@ public class ApocKernelExtensionFactory extends KernelExtensionFactory<ApocKerne
                 } catch(Exception e) {
                     userLog.warn("Error stopping index update service",e);
                 }
+            if (queryCacheLifeCycle !=null)
+                try {
+                    queryCacheLifeCycle.stop();
+                } catch(Exception e) {
+                    userLog.warn("Error stopping query cache",e);
+                }
+            if (indexWarmupLifeCycle !=null)
+                try {
+                    indexWarmupLifeCycle.stop();
+                } catch(Exception e) {
+                    userLog.warn("Error stopping index warm-up",e);
+                }
         }
 
     }
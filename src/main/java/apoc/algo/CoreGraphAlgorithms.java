@@ -1,14 +1,16 @@
 package apoc.algo;
 
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongIntMap;
 import org.neo4j.collection.primitive.PrimitiveLongIterator;
-import org.neo4j.cursor.Cursor;
+import org.neo4j.collection.primitive.hopscotch.LongKeyIntValueTable;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.kernel.api.ReadOperations;
 import org.neo4j.kernel.api.Statement;
 import org.neo4j.kernel.api.exceptions.EntityNotFoundException;
 import org.neo4j.kernel.impl.api.store.RelationshipIterator;
-import org.neo4j.storageengine.api.NodeItem;
-import org.neo4j.storageengine.api.RelationshipItem;
+
+import java.util.Arrays;
 
 import static org.neo4j.graphdb.Direction.OUTGOING;
 import static org.neo4j.kernel.api.ReadOperations.ANY_LABEL;
@@ -29,6 +31,10 @@ public class CoreGraphAlgorithms {
     private int relCount;
     private int[] nodeRelOffsets;
     private int[] rels;
+    // node ids by dense index, the projected nodes come first, followed by the end nodes of relationships leaving the projection
+    private long[] nodeIds;
+    private int mappedCount;
+    private PrimitiveLongIntMap nodeIndex;
     public static final float ALPHA = 0.15f;
     private int labelId;
     private int relTypeId;
@@ -186,30 +192,6 @@ public class CoreGraphAlgorithms {
         return value / 100_000.0;
     }
 
-    // todo parallel, see if java8 streams are performing
-    // pass in array, use array batches (pass in batch-no)
-    private int[] loadNodes(ReadOperations ops, PrimitiveLongIterator nodeIds, int size, int relType, Direction direction) throws EntityNotFoundException {
-        // todo reuse array
-        int[] offsets = new int[size];
-        int offset = 0;
-        while (nodeIds.hasNext()) {
-            long nodeId = nodeIds.next();
-            int degree = relType == ANY_RELATIONSHIP_TYPE ? ops.nodeGetDegree(nodeId, direction) : ops.nodeGetDegree(nodeId, direction, relType);
-            offsets[mapId(nodeId)] = offset;
-            offset += degree;
-        }
-        return offsets;
-    }
-
-    private int[] loadDegrees(ReadOperations ops, PrimitiveLongIterator nodeIds, int size, int relType, Direction direction) throws EntityNotFoundException {
-        int[] degrees = new int[size];
-        while (nodeIds.hasNext()) {
-            long nodeId = nodeIds.next();
-            degrees[mapId(nodeId)] = relType == ANY_RELATIONSHIP_TYPE ? ops.nodeGetDegree(nodeId, direction) : ops.nodeGetDegree(nodeId, direction, relType);
-        }
-        return degrees;
-    }
-
     public int[] loadDegrees(String relName, Direction direction) throws EntityNotFoundException {
         ReadOperations ops = stmt.readOperations();
         int[] degrees = new int[nodeCount];
@@ -240,40 +222,6 @@ public class CoreGraphAlgorithms {
         }
     }
 
-    private int[] loadNodes(ReadOperations ops, PrimitiveLongIterator nodeIds, int labelId, int size, int relType) throws EntityNotFoundException {
-        // todo reuse array
-        int[] degrees = new int[size];
-        while (nodeIds.hasNext()) {
-            long nodeId = nodeIds.next();
-            if (labelId != -1) {
-                Cursor<NodeItem> c = ops.nodeCursorById(nodeId);
-                if (!(c.next() && c.get().hasLabel(labelId))) continue;
-            }
-            degrees[mapId(nodeId)] = relType == ANY_RELATIONSHIP_TYPE ? ops.nodeGetDegree(nodeId, OUTGOING) : ops.nodeGetDegree(nodeId, OUTGOING, relType);
-        }
-        return degrees;
-    }
-
-    // todo fix node offsets when no rel found
-    private int loadNodeRels(ReadOperations ops, PrimitiveLongIterator nodeIds, int relType, int[] rels) throws EntityNotFoundException {
-        int idx = 0;
-        int count = 0;
-        while (nodeIds.hasNext()) {
-            long id = nodeIds.next();
-            int[] relTypes = {relType};
-            RelationshipIterator relIds = relType == ANY_RELATIONSHIP_TYPE ? ops.nodeGetRelationships(id, OUTGOING) : ops.nodeGetRelationships(id, OUTGOING, relTypes);
-            while (relIds.hasNext()) {
-                Cursor<RelationshipItem> c = ops.relationshipCursorById(relIds.next());
-//                if (c.next()) {
-                    rels[idx] = mapId(c.get().endNode());
-                    count++;
-//                }
-                idx++;
-            }
-        }
-        return count;
-    }
-
     interface RelationshipProgram {
         void accept(int start, int end);
     }
@@ -442,76 +390,79 @@ public class CoreGraphAlgorithms {
         return root;
     }
 
-    private int loadRels(ReadOperations ops, PrimitiveLongIterator relIds, int size, int relType, int[] rels) throws EntityNotFoundException {
-        // todo reuse array
-        int idx = 0, count = 0;
-        while (relIds.hasNext()) {
-            long relId = relIds.next();
-            Cursor<RelationshipItem> c = ops.relationshipCursorById(relId);
-            if (c.next()) {
-                if (relType == -1 || c.get().type() == relType) {
-                    rels[idx] = mapId(c.get().endNode());
-                    count ++;
-                }
-            }
-            idx++;
-        }
-        return count;
+    private int mapId(long id) {
+        int index = nodeIndex.get(id);
+        return index == LongKeyIntValueTable.NULL ? add(id) : index;
     }
 
-
-    private static int mapId(long id) {
-        return (int) id; // TODO proper mapping to smaller array
+    private long unMapId(int index) {
+        return nodeIds[index];
     }
-    private static long unMapId(int id) {
-        return (long) id; // TODO proper mapping to smaller array
+
+    private int add(long id) {
+        if (mappedCount == nodeIds.length) nodeIds = Arrays.copyOf(nodeIds, Math.max(16, mappedCount * 2));
+        nodeIds[mappedCount] = id;
+        nodeIndex.put(id, mappedCount);
+        return mappedCount++;
     }
 
     public CoreGraphAlgorithms(Statement stmt) {
         this.stmt = stmt;
     }
 
-    private void loadRels(ReadOperations ops, int labelId, int relTypeId) throws EntityNotFoundException {
-        int allRelCount = (int) ops.relationshipsGetCount();
-        this.relCount = (int) ops.countsForRelationshipWithoutTxState(labelId,relTypeId, ANY_LABEL);
-        this.rels = new int[relCount];
-        float percentage = (float) relCount / (float) allRelCount;
-//        if (percentage > 0.5) {
-//            this.relCount = loadRels(ops, ops.relationshipsGetAll(), relCount, relTypeId,rels);
-//        }
-//        else {
-            PrimitiveLongIterator nodeIds = labelId == -1 ? ops.nodesGetAll() : ops.nodesGetForLabel(labelId);
-            this.relCount = loadNodeRels(ops, nodeIds, relTypeId, rels);
-//        }
+    /**
+     * Loads the outgoing relationships of the projected nodes in node index order, the offsets are exact and
+     * end nodes outside of the projection are mapped to indexes from {@link #nodeCount} on.
+     */
+    private void loadRels(ReadOperations ops, int relTypeId, boolean noRels) throws EntityNotFoundException {
+        this.nodeRelOffsets = new int[nodeCount];
+        this.rels = new int[noRels || nodeCount == 0 ? 0 : (int) Math.min(Integer.MAX_VALUE - 8, ops.countsForRelationshipWithoutTxState(labelId, relTypeId, ANY_LABEL))];
+        int count = 0;
+        int[] relTypes = {relTypeId};
+        long[] end = new long[1];
+        for (int node = 0; node < nodeCount; node++) {
+            nodeRelOffsets[node] = count;
+            if (noRels) continue;
+            long id = nodeIds[node];
+            RelationshipIterator relIds = relTypeId == ANY_RELATIONSHIP_TYPE ? ops.nodeGetRelationships(id, OUTGOING) : ops.nodeGetRelationships(id, OUTGOING, relTypes);
+            while (relIds.hasNext()) {
+                relIds.relationshipVisit(relIds.next(), (rel, type, start, endNode) -> end[0] = endNode);
+                // the counts store doesn't include changes of the transaction
+                if (count == rels.length) rels = Arrays.copyOf(rels, Math.max(16, count * 2));
+                rels[count++] = mapId(end[0]);
+            }
+        }
+        this.rels = count == rels.length ? rels : Arrays.copyOf(rels, count);
+        this.relCount = count;
     }
 
-    private void loadNodes(ReadOperations ops, int labelId, int relTypeId) throws EntityNotFoundException {
+    /**
+     * Maps the ids of the nodes with the label, or of all nodes, to dense indexes in the order they are scanned.
+     */
+    private void loadNodes(ReadOperations ops, int labelId, int relTypeId, boolean noNodes) {
         this.labelId = labelId;
         this.relTypeId = relTypeId;
-        int allNodeCount = (int) ops.nodesGetCount();
-        if (labelId == ANY_LABEL) {
-            this.nodeCount = allNodeCount;
-            this.nodeRelOffsets = loadNodes(ops, ops.nodesGetAll(), nodeCount, relTypeId, OUTGOING);
-        } else {
-            this.nodeCount = (int) ops.countsForNodeWithoutTxState(labelId);
-            float percentage = (float)nodeCount / (float)allNodeCount;
-
-            this.nodeRelOffsets = (percentage > 0.5f) ?
-                    loadNodes(ops, ops.nodesGetAll(), labelId,    nodeCount, relTypeId) :
-                    loadNodes(ops, ops.nodesGetForLabel(labelId), nodeCount, relTypeId, OUTGOING);
+        long expected = noNodes ? 0 : labelId == ANY_LABEL ? ops.nodesGetCount() : ops.countsForNodeWithoutTxState(labelId);
+        this.nodeIds = new long[(int) Math.min(Integer.MAX_VALUE - 8, expected)];
+        this.nodeIndex = Primitive.longIntMap((int) Math.min(1 << 20, Math.max(16, expected)));
+        this.mappedCount = 0;
+        if (!noNodes) {
+            PrimitiveLongIterator it = labelId == ANY_LABEL ? ops.nodesGetAll() : ops.nodesGetForLabel(labelId);
+            while (it.hasNext()) add(it.next());
         }
+        this.nodeCount = mappedCount;
     }
 
     public CoreGraphAlgorithms init(String label) throws EntityNotFoundException {
         ReadOperations ops = stmt.readOperations();
 
         int labelId = ops.labelGetForName(label);
-        loadNodes(ops, labelId, ANY_RELATIONSHIP_TYPE);
-        loadRels(ops, labelId, ANY_RELATIONSHIP_TYPE);
+        // an unknown label has no nodes, its id -1 would otherwise select all of them
+        loadNodes(ops, labelId, ANY_RELATIONSHIP_TYPE, labelId == ANY_LABEL);
+        loadRels(ops, ANY_RELATIONSHIP_TYPE, false);
         return this;
     }
 
-    // todo fix offset in node array while iterating over rels
     // only provide source label, no entries for dst node with diffent label in node array ?
     // store offsets in node, array (initialize with summed degrees to know where to put rels, fill rest with -1), compact later
     // degrees only for pageRank
@@ -521,17 +472,18 @@ public class CoreGraphAlgorithms {
     // keep threads with open worker-tx for reads
     public CoreGraphAlgorithms init(String label, String rel) throws EntityNotFoundException {
         ReadOperations ops = stmt.readOperations();
-        int labelId = ops.labelGetForName(label);
-        int relTypeId = ops.relationshipTypeGetForName(rel);
-        loadNodes(ops,labelId,relTypeId);
-        loadRels(ops, labelId, relTypeId);
+        int labelId = label == null ? ANY_LABEL : ops.labelGetForName(label);
+        int relTypeId = rel == null ? ANY_RELATIONSHIP_TYPE : ops.relationshipTypeGetForName(rel);
+        // unknown labels and types select nothing, their id -1 would otherwise select all of them
+        loadNodes(ops, labelId, relTypeId, label != null && labelId == ANY_LABEL);
+        loadRels(ops, relTypeId, rel != null && relTypeId == ANY_RELATIONSHIP_TYPE);
         return this;
     }
 
     public CoreGraphAlgorithms init() throws EntityNotFoundException {
         ReadOperations ops = stmt.readOperations();
-        loadNodes(ops, ANY_LABEL, ANY_RELATIONSHIP_TYPE);
-        loadRels(ops, ANY_LABEL,ANY_RELATIONSHIP_TYPE);
+        loadNodes(ops, ANY_LABEL, ANY_RELATIONSHIP_TYPE, false);
+        loadRels(ops, ANY_RELATIONSHIP_TYPE, false);
         return this;
     }
 
@@ -550,4 +502,128 @@ public class CoreGraphAlgorithms {
     public int[] getRels() {
         return rels;
     }
+
+    public long getNodeId(int nodeIdx) {
+        return unMapId(nodeIdx);
+    }
+
+    /**
+     * Undirected projection of the loaded relationships without self-loops and parallel relationships.
+     * Every remaining relationship is stored in the adjacency lists of both of its nodes, so the length of a list is the undirected degree.
+     * Adjacency lists are sorted by node index.
+     */
+    public Adjacency undirected() {
+        int[] offsets = new int[nodeCount + 1];
+        runProgram((start, end) -> {
+            if (start == end || end >= nodeCount) return;
+            offsets[start + 1]++;
+            offsets[end + 1]++;
+        });
+        for (int node = 0; node < nodeCount; node++) {
+            offsets[node + 1] += offsets[node];
+        }
+        int[] targets = new int[offsets[nodeCount]];
+        int[] fill = Arrays.copyOf(offsets, nodeCount);
+        runProgram((start, end) -> {
+            if (start == end || end >= nodeCount) return;
+            targets[fill[start]++] = end;
+            targets[fill[end]++] = start;
+        });
+
+        // sort, deduplicate and compact each adjacency list in place, the write index never passes the read index
+        int size = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            int from = offsets[node], to = offsets[node + 1];
+            Arrays.sort(targets, from, to);
+            offsets[node] = size;
+            for (int i = from; i < to; i++) {
+                if (size == offsets[node] || targets[size - 1] != targets[i]) targets[size++] = targets[i];
+            }
+        }
+        offsets[nodeCount] = size;
+        return new Adjacency(nodeCount, offsets, Arrays.copyOf(targets, size));
+    }
+
+    /**
+     * Undirected projection of the loaded relationships without self-loops and parallel relationships.
+     * Every remaining relationship is stored once, pointing from the node that is lower in (degree, id) order
+     * to the higher one, so hubs keep short adjacency lists and each triangle is seen exactly once.
+     * Adjacency lists are sorted by node index.
+     */
+    public DegreeOrderedGraph degreeOrdered() {
+        Adjacency undirected = undirected();
+        int[] degrees = new int[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            degrees[node] = undirected.degree(node);
+        }
+        int[] offsets = undirected.offsets, targets = undirected.targets;
+
+        // compact in place to the edges pointing to higher ranked nodes, the write index never passes the read index
+        int size = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            int from = offsets[node];
+            offsets[node] = size;
+            for (int i = from; i < from + degrees[node]; i++) {
+                int other = targets[i];
+                if (degrees[other] > degrees[node] || (degrees[other] == degrees[node] && other > node)) {
+                    targets[size++] = other;
+                }
+            }
+        }
+        offsets[nodeCount] = size;
+        return new DegreeOrderedGraph(nodeCount, degrees, offsets, Arrays.copyOf(targets, size));
+    }
+
+    /**
+     * Compact CSR of the loaded relationships without relationships leaving the projection.
+     * With reverse=true the relationships are indexed by their end node, to follow them backwards.
+     */
+    public Adjacency adjacency(boolean reverse) {
+        int[] offsets = new int[nodeCount + 1];
+        runProgram((start, end) -> {
+            if (end < nodeCount) offsets[(reverse ? end : start) + 1]++;
+        });
+        for (int node = 0; node < nodeCount; node++) {
+            offsets[node + 1] += offsets[node];
+        }
+        int[] targets = new int[offsets[nodeCount]];
+        int[] fill = Arrays.copyOf(offsets, nodeCount);
+        runProgram((start, end) -> {
+            if (end >= nodeCount) return;
+            if (reverse) targets[fill[end]++] = start;
+            else targets[fill[start]++] = end;
+        });
+        return new Adjacency(nodeCount, offsets, targets);
+    }
+
+    public static class Adjacency {
+        public final int nodeCount;
+        // nodeCount + 1 entries, the adjacency list of node i is targets[offsets[i] .. offsets[i+1])
+        public final int[] offsets;
+        public final int[] targets;
+
+        public Adjacency(int nodeCount, int[] offsets, int[] targets) {
+            this.nodeCount = nodeCount;
+            this.offsets = offsets;
+            this.targets = targets;
+        }
+
+        public int degree(int node) {
+            return offsets[node + 1] - offsets[node];
+        }
+
+        public int getRelCount() {
+            return targets.length;
+        }
+    }
+
+    public static class DegreeOrderedGraph extends Adjacency {
+        // undirected degree without self-loops and parallel relationships
+        public final int[] degrees;
+
+        public DegreeOrderedGraph(int nodeCount, int[] degrees, int[] offsets, int[] targets) {
+            super(nodeCount, offsets, targets);
+            this.degrees = degrees;
+        }
+    }
 }
@@ -0,0 +1,107 @@
+package apoc.algo;
+
+import apoc.Pools;
+import apoc.algo.algorithms.KCoreDecomposition;
+import apoc.util.Util;
+import org.neo4j.graphdb.Node;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.api.Statement;
+import org.neo4j.kernel.api.exceptions.EntityNotFoundException;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.logging.Log;
+import org.neo4j.procedure.*;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static apoc.algo.algorithms.AlgoUtils.SETTING_BATCH_SIZE;
+import static apoc.algo.algorithms.AlgoUtils.SETTING_WRITE;
+
+public class KCore {
+
+    static final ExecutorService pool = Pools.DEFAULT;
+
+    @Context
+    public GraphDatabaseAPI db;
+
+    @Context
+    public KernelTransaction ktx;
+
+    @Context
+    public Log log;
+
+    @Procedure("apoc.algo.kcore")
+    @Description("CALL apoc.algo.kcore({label,relationship,concurrency,minCore:0}) YIELD node, coreness - computes the coreness of each node by parallel peeling, relationships are treated as undirected")
+    public Stream<NodeCoreness> kcore(@Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        CoreGraphAlgorithms algos = load(config);
+        KCoreDecomposition kcore = compute(algos, config);
+        int minCore = Util.toLong(config.getOrDefault("minCore", 0)).intValue();
+        return IntStream.range(0, kcore.nodeCount())
+                .filter(node -> kcore.hasRelationships(node) && kcore.coreness(node) >= minCore)
+                .mapToObj(node -> new NodeCoreness(db.getNodeById(algos.getNodeId(node)), kcore.coreness(node)));
+    }
+
+    @Procedure(value = "apoc.algo.kcoreStats", mode = Mode.WRITE)
+    @Description("CALL apoc.algo.kcoreStats({label,relationship,concurrency,write:false,property:'coreness',batchSize:100000}) YIELD nodes, relationships, maxCore - computes the k-core decomposition in parallel and optionally writes the coreness back in batches")
+    public Stream<CoreStatistics> kcoreStats(@Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        long start = System.currentTimeMillis();
+        CoreGraphAlgorithms algos = load(config);
+        long loadMillis = System.currentTimeMillis() - start;
+        KCoreDecomposition kcore = compute(algos, config);
+
+        CoreStatistics stats = new CoreStatistics(kcore, loadMillis);
+        if (Util.toBoolean(config.getOrDefault(SETTING_WRITE, false))) {
+            stats.property = (String) config.getOrDefault("property", "coreness");
+            int batchSize = Util.toLong(config.getOrDefault(SETTING_BATCH_SIZE, KCoreDecomposition.WRITE_BATCH)).intValue();
+            kcore.writeResultsToDB(db, algos::getNodeId, stats.property, batchSize);
+            stats.write = true;
+            stats.writeMillis = kcore.writeMillis;
+            log.info("KCore: Writeback took " + stats.writeMillis + " milliseconds");
+        }
+        return Stream.of(stats);
+    }
+
+    private CoreGraphAlgorithms load(Map<String, Object> config) {
+        String label = (String) config.get("label");
+        String relationship = (String) config.get("relationship");
+        try (Statement stmt = ktx.acquireStatement()) {
+            return new CoreGraphAlgorithms(stmt).init(label, relationship);
+        } catch (EntityNotFoundException e) {
+            throw new RuntimeException("Error loading graph for k-core decomposition", e);
+        }
+    }
+
+    private KCoreDecomposition compute(CoreGraphAlgorithms algos, Map<String, Object> config) {
+        int concurrency = ((Number) config.getOrDefault("concurrency", Pools.getNoThreadsInDefaultPool())).intValue();
+        KCoreDecomposition kcore = new KCoreDecomposition(pool, algos.undirected());
+        kcore.compute(concurrency);
+        log.info("KCore: Computed coreness up to " + kcore.getMaxCore() + " on " + kcore.nodeCount() + " nodes in " + kcore.computeMillis + " milliseconds");
+        return kcore;
+    }
+
+    public static class NodeCoreness {
+        public final Node node;
+        public final long coreness;
+
+        public NodeCoreness(Node node, long coreness) {
+            this.node = node;
+            this.coreness = coreness;
+        }
+    }
+
+    public static class CoreStatistics {
+        public long nodes, relationships, maxCore, loadMillis, computeMillis, writeMillis;
+        public boolean write;
+        public String property;
+
+        public CoreStatistics(KCoreDecomposition kcore, long loadMillis) {
+            this.nodes = kcore.nodeCount();
+            this.relationships = kcore.relCount();
+            this.maxCore = kcore.getMaxCore();
+            this.loadMillis = loadMillis;
+            this.computeMillis = kcore.computeMillis;
+        }
+    }
+}
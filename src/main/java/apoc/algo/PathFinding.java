@@ -1,5 +1,8 @@
 package apoc.algo;
 
+import apoc.algo.algorithms.KShortestPaths;
+import apoc.path.FilterCache;
+import apoc.path.RelationshipFilter;
 import org.neo4j.procedure.Description;
 import apoc.path.RelationshipTypeAndDirections;
 import apoc.result.PathResult;
@@ -9,13 +12,20 @@ import org.neo4j.graphalgo.CommonEvaluators;
 import org.neo4j.graphalgo.GraphAlgoFactory;
 import org.neo4j.graphalgo.PathFinder;
 import org.neo4j.graphalgo.WeightedPath;
+import org.neo4j.graphalgo.impl.util.PathImpl;
+import org.neo4j.graphalgo.impl.util.WeightedPathImpl;
 import org.neo4j.graphdb.*;
 import org.neo4j.helpers.collection.Pair;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.api.ReadOperations;
+import org.neo4j.kernel.api.Statement;
+import org.neo4j.kernel.api.exceptions.EntityNotFoundException;
 import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -25,6 +35,9 @@ public class PathFinding {
     @Context
     public GraphDatabaseService db;
 
+    @Context
+    public KernelTransaction ktx;
+
     @Procedure
     @Description("apoc.algo.aStar(startNode, endNode, 'KNOWS|<WORKS_WITH|IS_MANAGER_OF>', 'distance','lat','lon') " +
             "YIELD path, weight - run A* with relationship property name as cost function")
@@ -117,6 +130,37 @@ public class PathFinding {
         return WeightedPathResult.streamWeightedPathResult(startNode, endNode, algo);
     }
 
+    @Procedure
+    @Description("apoc.algo.kShortestPaths(startNode, endNode, 'KNOWS|<WORKS_WITH|IS_MANAGER_OF>', k, {weight:'distance', default:1.0}) " +
+            "YIELD path, weight - run Yen's k shortest simple paths, ordered by the sum of the weight property or by length if no weight is given")
+    public Stream<WeightedPathResult> kShortestPaths(
+            @Name("startNode") Node startNode,
+            @Name("endNode") Node endNode,
+            @Name("relationshipTypesAndDirections") String relTypesAndDirs,
+            @Name("k") long k,
+            @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws EntityNotFoundException {
+
+        config = config == null ? Collections.emptyMap() : config;
+        String weightPropertyName = (String) config.get("weight");
+        // without a weight property every relationship costs 1, so the paths are ordered by length
+        double defaultWeight = weightPropertyName == null ? 1.0 : Util.toDouble(config.getOrDefault("default", 1.0));
+
+        List<KShortestPaths.WeightedPath> paths;
+        try (Statement stmt = ktx.acquireStatement()) {
+            ReadOperations ops = stmt.readOperations();
+            RelationshipFilter filter = FilterCache.of(db).relationshipFilter(ops, relTypesAndDirs);
+            int weightKey = weightPropertyName == null ? -1 : ops.propertyKeyGetForName(weightPropertyName);
+            paths = new KShortestPaths(ops, filter, weightKey, defaultWeight).find(startNode.getId(), endNode.getId(), (int) k);
+        }
+        return paths.stream().map(path -> {
+            PathImpl.Builder builder = new PathImpl.Builder(db.getNodeById(path.nodes[0]));
+            for (long rel : path.rels) {
+                builder = builder.push(db.getRelationshipById(rel));
+            }
+            return new WeightedPathResult(new WeightedPathImpl(path.cost, builder.build()));
+        });
+    }
+
     private PathExpander<Object> buildPathExpander(String relationshipsAndDirections) {
         PathExpanderBuilder builder = PathExpanderBuilder.empty();
         for (Pair<RelationshipType, Direction> pair : RelationshipTypeAndDirections
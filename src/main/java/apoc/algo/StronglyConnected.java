@@ -0,0 +1,142 @@
+package apoc.algo;
+
+import apoc.Pools;
+import apoc.algo.algorithms.StronglyConnectedComponents;
+import apoc.util.Util;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.api.Statement;
+import org.neo4j.kernel.api.exceptions.EntityNotFoundException;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.logging.Log;
+import org.neo4j.procedure.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static apoc.algo.algorithms.AlgoUtils.SETTING_BATCH_SIZE;
+import static apoc.algo.algorithms.AlgoUtils.SETTING_WRITE;
+
+public class StronglyConnected {
+
+    static final ExecutorService pool = Pools.DEFAULT;
+
+    @Context
+    public GraphDatabaseAPI db;
+
+    @Context
+    public KernelTransaction ktx;
+
+    @Context
+    public Log log;
+
+    @Procedure("apoc.algo.scc")
+    @Description("CALL apoc.algo.scc({label,relationship,algorithm:'parallel',concurrency,minSize:1}) YIELD componentId, size, nodeIds - strongly connected components of the directed graph, algorithm 'parallel' (forward-backward with coloring) or 'tarjan' (single threaded)")
+    public Stream<Component> scc(@Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        CoreGraphAlgorithms algos = load(config);
+        StronglyConnectedComponents scc = compute(algos, config);
+        int minSize = Util.toLong(config.getOrDefault("minSize", 1)).intValue();
+        int[] components = scc.getComponents();
+        int[] sizes = scc.componentSizes();
+        List<long[]> members = new ArrayList<>();
+        int[] slot = new int[scc.nodeCount()];
+        int[] filled = new int[scc.nodeCount()];
+        for (int node = 0; node < scc.nodeCount(); node++) {
+            int component = components[node];
+            if (component != node || sizes[component] < minSize || !scc.hasRelationships(node)) continue;
+            slot[component] = members.size();
+            members.add(new long[sizes[component]]);
+        }
+        for (int node = 0; node < scc.nodeCount(); node++) {
+            int component = components[node];
+            if (sizes[component] < minSize || !scc.hasRelationships(component)) continue;
+            members.get(slot[component])[filled[component]++] = algos.getNodeId(node);
+        }
+        return IntStream.range(0, scc.nodeCount())
+                .filter(node -> components[node] == node && sizes[node] >= minSize && scc.hasRelationships(node))
+                .mapToObj(node -> new Component(algos.getNodeId(node), members.get(slot[node])));
+    }
+
+    @Procedure(value = "apoc.algo.sccStats", mode = Mode.WRITE)
+    @Description("CALL apoc.algo.sccStats({label,relationship,algorithm:'parallel',concurrency,write:false,property:'scc',batchSize:100000}) YIELD nodes, relationships, components, maxSize - computes strongly connected components and optionally writes the component id back in batches")
+    public Stream<ComponentStatistics> sccStats(@Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        long start = System.currentTimeMillis();
+        CoreGraphAlgorithms algos = load(config);
+        long loadMillis = System.currentTimeMillis() - start;
+        StronglyConnectedComponents scc = compute(algos, config);
+
+        ComponentStatistics stats = new ComponentStatistics(scc, loadMillis);
+        if (Util.toBoolean(config.getOrDefault(SETTING_WRITE, false))) {
+            stats.property = (String) config.getOrDefault("property", "scc");
+            int batchSize = Util.toLong(config.getOrDefault(SETTING_BATCH_SIZE, StronglyConnectedComponents.WRITE_BATCH)).intValue();
+            scc.writeResultsToDB(db, algos::getNodeId, stats.property, batchSize);
+            stats.write = true;
+            stats.writeMillis = scc.writeMillis;
+            log.info("SCC: Writeback took " + stats.writeMillis + " milliseconds");
+        }
+        return Stream.of(stats);
+    }
+
+    private CoreGraphAlgorithms load(Map<String, Object> config) {
+        String label = (String) config.get("label");
+        String relationship = (String) config.get("relationship");
+        try (Statement stmt = ktx.acquireStatement()) {
+            return new CoreGraphAlgorithms(stmt).init(label, relationship);
+        } catch (EntityNotFoundException e) {
+            throw new RuntimeException("Error loading graph for strongly connected components", e);
+        }
+    }
+
+    private StronglyConnectedComponents compute(CoreGraphAlgorithms algos, Map<String, Object> config) {
+        String algorithm = (String) config.getOrDefault("algorithm", "parallel");
+        int concurrency = ((Number) config.getOrDefault("concurrency", Pools.getNoThreadsInDefaultPool())).intValue();
+        StronglyConnectedComponents scc = new StronglyConnectedComponents(pool, algos.adjacency(false), algos.adjacency(true));
+        switch (algorithm.toLowerCase()) {
+            case "tarjan":
+                scc.tarjan();
+                break;
+            case "parallel":
+                scc.forwardBackward(concurrency);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown algorithm '" + algorithm + "', supported are 'parallel' and 'tarjan'");
+        }
+        log.info("SCC: Computed components with " + algorithm + " on " + scc.nodeCount() + " nodes in " + scc.computeMillis + " milliseconds");
+        return scc;
+    }
+
+    public static class Component {
+        public final long componentId;
+        public final long size;
+        public final List<Long> nodeIds;
+
+        public Component(long componentId, long[] nodeIds) {
+            this.componentId = componentId;
+            this.size = nodeIds.length;
+            this.nodeIds = new ArrayList<>(nodeIds.length);
+            for (long nodeId : nodeIds) this.nodeIds.add(nodeId);
+        }
+    }
+
+    public static class ComponentStatistics {
+        public long nodes, relationships, components, maxSize, loadMillis, computeMillis, writeMillis;
+        public boolean write;
+        public String property;
+
+        public ComponentStatistics(StronglyConnectedComponents scc, long loadMillis) {
+            int[] sizes = scc.componentSizes();
+            for (int node = 0; node < scc.nodeCount(); node++) {
+                if (sizes[node] == 0 || !scc.hasRelationships(node)) continue;
+                this.components++;
+                this.maxSize = Math.max(this.maxSize, sizes[node]);
+            }
+            this.nodes = scc.nodeCount();
+            this.relationships = scc.relCount();
+            this.loadMillis = loadMillis;
+            this.computeMillis = scc.computeMillis;
+        }
+    }
+}
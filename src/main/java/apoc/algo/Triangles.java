@@ -0,0 +1,112 @@
+package apoc.algo;
+
+import apoc.Pools;
+import apoc.algo.algorithms.TriangleCount;
+import apoc.util.Util;
+import org.neo4j.graphdb.Node;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.api.Statement;
+import org.neo4j.kernel.api.exceptions.EntityNotFoundException;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.logging.Log;
+import org.neo4j.procedure.*;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static apoc.algo.algorithms.AlgoUtils.SETTING_BATCH_SIZE;
+import static apoc.algo.algorithms.AlgoUtils.SETTING_WRITE;
+
+public class Triangles {
+
+    static final ExecutorService pool = Pools.DEFAULT;
+
+    @Context
+    public GraphDatabaseAPI db;
+
+    @Context
+    public KernelTransaction ktx;
+
+    @Context
+    public Log log;
+
+    @Procedure("apoc.algo.triangles")
+    @Description("CALL apoc.algo.triangles({label,relationship,concurrency}) YIELD node, triangles, coefficient - counts the triangles of each node and its local clustering coefficient, relationships are treated as undirected")
+    public Stream<NodeTriangles> triangles(@Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        CoreGraphAlgorithms algos = load(config);
+        TriangleCount triangleCount = compute(algos, config);
+        return IntStream.range(0, triangleCount.nodeCount())
+                .filter(node -> triangleCount.degree(node) > 0)
+                .mapToObj(node -> new NodeTriangles(db.getNodeById(algos.getNodeId(node)), triangleCount.triangles(node), triangleCount.coefficient(node)));
+    }
+
+    @Procedure(value = "apoc.algo.trianglesStats", mode = Mode.WRITE)
+    @Description("CALL apoc.algo.trianglesStats({label,relationship,concurrency,write:false,property:'triangles',coefficientProperty:'coefficient',batchSize:100000}) YIELD nodes, relationships, triangles, averageCoefficient, transitivity - counts triangles in parallel and optionally writes the per node results back in batches")
+    public Stream<TriangleStatistics> trianglesStats(@Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        long start = System.currentTimeMillis();
+        CoreGraphAlgorithms algos = load(config);
+        long loadMillis = System.currentTimeMillis() - start;
+        TriangleCount triangleCount = compute(algos, config);
+
+        TriangleStatistics stats = new TriangleStatistics(triangleCount, loadMillis);
+        if (Util.toBoolean(config.getOrDefault(SETTING_WRITE, false))) {
+            stats.property = (String) config.getOrDefault("property", "triangles");
+            stats.coefficientProperty = (String) config.getOrDefault("coefficientProperty", "coefficient");
+            int batchSize = Util.toLong(config.getOrDefault(SETTING_BATCH_SIZE, TriangleCount.WRITE_BATCH)).intValue();
+            triangleCount.writeResultsToDB(db, algos::getNodeId, stats.property, stats.coefficientProperty, batchSize);
+            stats.write = true;
+            stats.writeMillis = triangleCount.writeMillis;
+            log.info("Triangles: Writeback took " + stats.writeMillis + " milliseconds");
+        }
+        return Stream.of(stats);
+    }
+
+    private CoreGraphAlgorithms load(Map<String, Object> config) {
+        String label = (String) config.get("label");
+        String relationship = (String) config.get("relationship");
+        try (Statement stmt = ktx.acquireStatement()) {
+            return new CoreGraphAlgorithms(stmt).init(label, relationship);
+        } catch (EntityNotFoundException e) {
+            throw new RuntimeException("Error loading graph for triangle counting", e);
+        }
+    }
+
+    private TriangleCount compute(CoreGraphAlgorithms algos, Map<String, Object> config) {
+        int concurrency = ((Number) config.getOrDefault("concurrency", Pools.getNoThreadsInDefaultPool())).intValue();
+        TriangleCount triangleCount = new TriangleCount(pool, algos.degreeOrdered());
+        triangleCount.compute(concurrency);
+        log.info("Triangles: Counted " + triangleCount.getTriangleCount() + " triangles on " + triangleCount.nodeCount() + " nodes in " + triangleCount.computeMillis + " milliseconds");
+        return triangleCount;
+    }
+
+    public static class NodeTriangles {
+        public final Node node;
+        public final long triangles;
+        public final double coefficient;
+
+        public NodeTriangles(Node node, long triangles, double coefficient) {
+            this.node = node;
+            this.triangles = triangles;
+            this.coefficient = coefficient;
+        }
+    }
+
+    public static class TriangleStatistics {
+        public long nodes, relationships, triangles, loadMillis, computeMillis, writeMillis;
+        public double averageCoefficient, transitivity;
+        public boolean write;
+        public String property, coefficientProperty;
+
+        public TriangleStatistics(TriangleCount triangleCount, long loadMillis) {
+            this.nodes = triangleCount.nodeCount();
+            this.relationships = triangleCount.relCount();
+            this.triangles = triangleCount.getTriangleCount();
+            this.averageCoefficient = triangleCount.averageCoefficient();
+            this.transitivity = triangleCount.transitivity();
+            this.loadMillis = loadMillis;
+            this.computeMillis = triangleCount.computeMillis;
+        }
+    }
+}
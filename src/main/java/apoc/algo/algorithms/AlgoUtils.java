@@ -5,6 +5,7 @@ import org.neo4j.cypher.EntityNotFoundException;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.kernel.api.DataWriteOperations;
 import org.neo4j.kernel.api.exceptions.InvalidTransactionTypeKernelException;
+import org.neo4j.kernel.api.exceptions.KernelException;
 import org.neo4j.kernel.api.exceptions.legacyindex.AutoIndexingKernelException;
 import org.neo4j.kernel.api.exceptions.schema.IllegalTokenNameException;
 import org.neo4j.kernel.api.properties.DefinedProperty;
@@ -55,8 +56,26 @@ public class AlgoUtils {
         return total;
     }
 
+    @FunctionalInterface
+    public interface NodePropertyWriter {
+        void write(DataWriteOperations ops, int propertyKeyId, int nodeIndex) throws KernelException;
+    }
+
     public static void writeBackResults(ExecutorService pool, GraphDatabaseAPI db, AlgorithmInterface algorithm,
                                         int batchSize) {
+        writeBackResults(pool, db, algorithm.getPropertyName(), algorithm.numberOfNodes(), batchSize, (ops, propertyNameId, nodeIndex) -> {
+            long graphNode = algorithm.getMappedNode(nodeIndex);
+            // indexes without a mapped node have no result to write
+            if (graphNode == -1) return;
+            ops.nodeSetProperty(graphNode, DefinedProperty.doubleProperty(propertyNameId, algorithm.getResult(graphNode)));
+        });
+    }
+
+    /**
+     * writes one property per node index in parallel batches, each batch in its own transaction
+     */
+    public static void writeBackResults(ExecutorService pool, GraphDatabaseAPI db, String propertyName, long totalNodes,
+                                        int batchSize, NodePropertyWriter writer) {
         ThreadToStatementContextBridge ctx = db.getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class);
         int propertyNameId;
         try (Transaction tx = db.beginTx()) {
@@ -64,12 +83,11 @@ public class AlgoUtils {
             if (Util.transactionIsTerminated(db)) {
                 return;
             }
-            propertyNameId = ctx.get().tokenWriteOperations().propertyKeyGetOrCreateForName(algorithm.getPropertyName());
+            propertyNameId = ctx.get().tokenWriteOperations().propertyKeyGetOrCreateForName(propertyName);
             tx.success();
         } catch (IllegalTokenNameException e) {
             throw new RuntimeException(e);
         }
-        final long totalNodes = algorithm.numberOfNodes();
         int batches = (int) totalNodes / batchSize;
         List<Future> futures = new ArrayList<>(batches);
         for (int i = 0; i < totalNodes; i += batchSize) {
@@ -87,13 +105,7 @@ public class AlgoUtils {
                         for (int i = 0; i < batchSize; i++) {
                             int nodeIndex = i + start;
                             if (nodeIndex >= totalNodes) break;
-
-                            long graphNode = algorithm.getMappedNode(nodeIndex);
-                            double value = algorithm.getResult(graphNode);
-                            if (graphNode == -1) {
-                                System.out.println("Node node found for " + graphNode + " mapped node " + nodeIndex);
-                            } else
-                                ops.nodeSetProperty(graphNode, DefinedProperty.doubleProperty(propertyNameId, value));
+                            writer.write(ops, propertyNameId, nodeIndex);
                         }
                         tx.success();
                     } catch (Exception e) {
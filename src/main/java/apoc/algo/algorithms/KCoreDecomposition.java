@@ -0,0 +1,218 @@
+package apoc.algo.algorithms;
+
+import apoc.algo.CoreGraphAlgorithms.Adjacency;
+import org.neo4j.kernel.api.properties.DefinedProperty;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Parallel k-core decomposition by bucketed peeling on the undirected projection of the relationships,
+ * parallel and reciprocal relationships count as a single neighbour and self-loops are ignored.
+ * Each level k collects the remaining nodes with degree k, removes them in parallel and decrements the degrees of
+ * their neighbours, neighbours dropping to k join the current level until it is empty. Then k jumps to the
+ * smallest remaining degree.
+ */
+public class KCoreDecomposition {
+    public static final int WRITE_BATCH = 100_000;
+    public static final int MINIMUM_BATCH_SIZE = 10_000;
+    private static final int UNASSIGNED = -1;
+
+    private final ExecutorService pool;
+    private final Adjacency graph;
+    private final int nodeCount;
+    private int[] coreness;
+    private int maxCore;
+    public long computeMillis, writeMillis;
+
+    /**
+     * @param graph undirected adjacency without self-loops and parallel relationships, see {@link apoc.algo.CoreGraphAlgorithms#undirected()}
+     */
+    public KCoreDecomposition(ExecutorService pool, Adjacency graph) {
+        this.pool = pool;
+        this.graph = graph;
+        this.nodeCount = graph.nodeCount;
+    }
+
+    public int[] compute(int concurrency) {
+        long start = System.currentTimeMillis();
+        int batchSize = Math.max(MINIMUM_BATCH_SIZE, nodeCount / (Math.max(1, concurrency) * 4) + 1);
+        AtomicIntegerArray degrees = degrees(batchSize);
+        int[] coreness = new int[nodeCount];
+        Arrays.fill(coreness, UNASSIGNED);
+
+        int remaining = nodeCount, k = 0, maxCore = 0;
+        while (remaining > 0) {
+            k = Math.max(k, minDegree(degrees, coreness, batchSize));
+            int[] frontier = collect(k, degrees, coreness, batchSize);
+            while (frontier.length > 0) {
+                remaining -= frontier.length;
+                maxCore = k;
+                frontier = peel(k, frontier, degrees, coreness, batchSize);
+            }
+        }
+        this.coreness = coreness;
+        this.maxCore = maxCore;
+        this.computeMillis = System.currentTimeMillis() - start;
+        return coreness;
+    }
+
+    private AtomicIntegerArray degrees(int batchSize) {
+        AtomicIntegerArray degrees = new AtomicIntegerArray(nodeCount);
+        forEachBatch(nodeCount, batchSize, (from, to) -> {
+            for (int node = from; node < to; node++) {
+                degrees.set(node, graph.degree(node));
+            }
+            return null;
+        });
+        return degrees;
+    }
+
+    private int minDegree(AtomicIntegerArray degrees, int[] coreness, int batchSize) {
+        int min = Integer.MAX_VALUE;
+        for (int batchMin : forEachBatch(nodeCount, batchSize, (from, to) -> {
+            int m = Integer.MAX_VALUE;
+            for (int node = from; node < to; node++) {
+                if (coreness[node] == UNASSIGNED) m = Math.min(m, degrees.get(node));
+            }
+            return m;
+        })) {
+            min = Math.min(min, batchMin);
+        }
+        return min;
+    }
+
+    private int[] collect(int k, AtomicIntegerArray degrees, int[] coreness, int batchSize) {
+        return concat(forEachBatch(nodeCount, batchSize, (from, to) -> {
+            IntBuffer level = new IntBuffer();
+            for (int node = from; node < to; node++) {
+                if (coreness[node] == UNASSIGNED && degrees.get(node) == k) {
+                    coreness[node] = k;
+                    level.add(node);
+                }
+            }
+            return level.toArray();
+        }));
+    }
+
+    private int[] peel(int k, int[] frontier, AtomicIntegerArray degrees, int[] coreness, int batchSize) {
+        return concat(forEachBatch(frontier.length, batchSize, (from, to) -> {
+            IntBuffer next = new IntBuffer();
+            for (int i = from; i < to; i++) {
+                int node = frontier[i];
+                decrement(k, node, degrees, coreness, next);
+            }
+            return next.toArray();
+        }));
+    }
+
+    private void decrement(int k, int node, AtomicIntegerArray degrees, int[] coreness, IntBuffer next) {
+        for (int r = graph.offsets[node]; r < graph.offsets[node + 1]; r++) {
+            int other = graph.targets[r];
+            if (degrees.get(other) <= k) continue;
+            int before = degrees.getAndDecrement(other);
+            if (before == k + 1) {
+                // exactly one thread sees the transition to k and owns the node
+                coreness[other] = k;
+                next.add(other);
+            } else if (before <= k) {
+                degrees.getAndIncrement(other);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Batch<T> {
+        T run(int from, int to);
+    }
+
+    private <T> List<T> forEachBatch(int size, int batchSize, Batch<T> batch) {
+        if (size <= batchSize) {
+            List<T> result = new ArrayList<>(1);
+            result.add(batch.run(0, size));
+            return result;
+        }
+        List<Future<T>> futures = new ArrayList<>(size / batchSize + 1);
+        for (int from = 0; from < size; from += batchSize) {
+            int batchStart = from;
+            int batchEnd = Math.min(size, from + batchSize);
+            futures.add(pool.submit(() -> batch.run(batchStart, batchEnd)));
+        }
+        List<T> result = new ArrayList<>(futures.size());
+        for (Future<T> future : futures) {
+            try {
+                result.add(future.get());
+            } catch (InterruptedException | ExecutionException e) {
+                throw new RuntimeException("Error computing k-cores", e);
+            }
+        }
+        return result;
+    }
+
+    private static int[] concat(List<int[]> parts) {
+        if (parts.size() == 1) return parts.get(0);
+        int size = 0;
+        for (int[] part : parts) size += part.length;
+        int[] result = new int[size];
+        int offset = 0;
+        for (int[] part : parts) {
+            System.arraycopy(part, 0, result, offset, part.length);
+            offset += part.length;
+        }
+        return result;
+    }
+
+    private static class IntBuffer {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public long relCount() {
+        // every undirected relationship is stored in the lists of both nodes
+        return graph.getRelCount() / 2;
+    }
+
+    public int getMaxCore() {
+        return maxCore;
+    }
+
+    public int coreness(int node) {
+        return coreness[node];
+    }
+
+    public boolean hasRelationships(int node) {
+        return graph.degree(node) > 0;
+    }
+
+    /**
+     * only nodes with relationships to other nodes are written, the others have coreness 0 and might not exist in the id range
+     */
+    public void writeResultsToDB(GraphDatabaseAPI db, IntToLongFunction nodeMapping, String property, int batchSize) {
+        long start = System.currentTimeMillis();
+        AlgoUtils.writeBackResults(pool, db, property, nodeCount, batchSize, (ops, propertyKeyId, node) -> {
+            if (hasRelationships(node))
+                ops.nodeSetProperty(nodeMapping.applyAsLong(node), DefinedProperty.intProperty(propertyKeyId, coreness[node]));
+        });
+        this.writeMillis = System.currentTimeMillis() - start;
+    }
+}
@@ -0,0 +1,307 @@
+package apoc.algo.algorithms;
+
+import apoc.path.RelationshipFilter;
+import apoc.util.Util;
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongLongMap;
+import org.neo4j.collection.primitive.PrimitiveLongObjectMap;
+import org.neo4j.collection.primitive.PrimitiveLongSet;
+import org.neo4j.kernel.api.ReadOperations;
+import org.neo4j.kernel.api.exceptions.EntityNotFoundException;
+import org.neo4j.kernel.impl.api.RelationshipVisitor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Yen's k shortest loopless paths on kernel relationship iterators.
+ * Every spur path is computed by the same Dijkstra with a primitive binary heap, ignoring the relationships and root path
+ * nodes excluded by Yen's algorithm. Spur searches are cut off at the cost of the worst candidate that could still be
+ * selected, so candidates that can never be among the k paths are not completed.
+ * Relationships without the weight property cost the default weight, weights must not be negative.
+ */
+public class KShortestPaths {
+    private final ReadOperations ops;
+    private final RelationshipFilter filter;
+    private final int weightKey;
+    private final double defaultWeight;
+    // weights of the relationships read so far, they are looked at again by every spur search
+    private final PrimitiveLongObjectMap<Double> weights = Primitive.longObjectMap();
+
+    /**
+     * @param weightKey property key id of the weight, -1 if every relationship costs the default weight
+     */
+    public KShortestPaths(ReadOperations ops, RelationshipFilter filter, int weightKey, double defaultWeight) {
+        this.ops = ops;
+        this.filter = filter;
+        this.weightKey = weightKey;
+        this.defaultWeight = defaultWeight;
+    }
+
+    /**
+     * @return up to k paths from start to end ordered by cost, fewer if there are no more simple paths
+     */
+    public List<WeightedPath> find(long start, long end, int k) throws EntityNotFoundException {
+        List<WeightedPath> result = new ArrayList<>(k);
+        if (k < 1) return result;
+        WeightedPath first = dijkstra(start, end, Primitive.longSet(), Primitive.longSet(), Double.POSITIVE_INFINITY);
+        if (first == null) return result;
+        result.add(first);
+
+        PriorityQueue<WeightedPath> candidates = new PriorityQueue<>((a, b) -> Double.compare(a.cost, b.cost));
+        while (result.size() < k) {
+            WeightedPath previous = result.get(result.size() - 1);
+            for (int i = 0; i < previous.nodes.length - 1; i++) {
+                int needed = k - result.size();
+                double bound = candidates.size() >= needed ? worst(candidates) : Double.POSITIVE_INFINITY;
+                double rootCost = previous.costs[i];
+                if (rootCost > bound) break;
+
+                PrimitiveLongSet excludedRels = Primitive.longSet();
+                for (WeightedPath path : result) {
+                    if (path.sharesRoot(previous, i)) excludedRels.add(path.rels[i]);
+                }
+                PrimitiveLongSet excludedNodes = Primitive.longSet();
+                for (int n = 0; n < i; n++) excludedNodes.add(previous.nodes[n]);
+
+                WeightedPath spur = dijkstra(previous.nodes[i], end, excludedNodes, excludedRels, bound - rootCost);
+                if (spur != null) {
+                    WeightedPath candidate = previous.root(i).append(spur);
+                    if (!contains(candidates, candidate)) candidates.add(candidate);
+                }
+            }
+            WeightedPath next = candidates.poll();
+            if (next == null) break;
+            result.add(next);
+        }
+        return result;
+    }
+
+    private static boolean contains(PriorityQueue<WeightedPath> candidates, WeightedPath candidate) {
+        for (WeightedPath path : candidates) {
+            if (Arrays.equals(path.rels, candidate.rels)) return true;
+        }
+        return false;
+    }
+
+    private static double worst(PriorityQueue<WeightedPath> candidates) {
+        double worst = 0;
+        for (WeightedPath path : candidates) worst = Math.max(worst, path.cost);
+        return worst;
+    }
+
+    double weight(long rel) throws EntityNotFoundException {
+        if (weightKey == -1) return defaultWeight;
+        Double weight = weights.get(rel);
+        if (weight == null) {
+            Object value = ops.relationshipGetProperty(rel, weightKey);
+            weight = value == null ? defaultWeight : Util.toDouble(value);
+            if (weight == null || weight < 0) throw new IllegalArgumentException("Relationship " + rel + " has no valid non negative weight: " + value);
+            weights.put(rel, weight);
+        }
+        return weight;
+    }
+
+    /**
+     * @return the cheapest path not passing excluded nodes or relationships, null if there is none within maxCost
+     */
+    WeightedPath dijkstra(long start, long end, PrimitiveLongSet excludedNodes, PrimitiveLongSet excludedRels, double maxCost) throws EntityNotFoundException {
+        PrimitiveLongLongMap costs = Primitive.longLongMap(); // node -> raw bits of the best known cost
+        PrimitiveLongLongMap parents = Primitive.longLongMap(); // node -> relationship it was reached with
+        PrimitiveLongSet settled = Primitive.longSet();
+        Heap heap = new Heap();
+        costs.put(start, Double.doubleToRawLongBits(0));
+        heap.push(0, start);
+        Expansion expansion = new Expansion(excludedRels);
+        while (!heap.isEmpty()) {
+            double cost = heap.peekCost();
+            long node = heap.pop();
+            if (cost > maxCost) return null;
+            if (!settled.add(node)) continue;
+            if (node == end) return path(start, end, parents, cost);
+            expansion.reset(node);
+            filter.expand(ops, node, expansion);
+            for (int i = 0; i < expansion.size; i++) {
+                long other = expansion.others[i];
+                if (settled.contains(other) || excludedNodes.contains(other)) continue;
+                double otherCost = cost + weight(expansion.rels[i]);
+                long known = costs.get(other);
+                if (known == -1 || otherCost < Double.longBitsToDouble(known)) {
+                    costs.put(other, Double.doubleToRawLongBits(otherCost));
+                    parents.put(other, expansion.rels[i]);
+                    heap.push(otherCost, other);
+                }
+            }
+        }
+        return null;
+    }
+
+    private WeightedPath path(long start, long end, PrimitiveLongLongMap parents, double cost) throws EntityNotFoundException {
+        LongList nodes = new LongList(), rels = new LongList();
+        long node = end;
+        nodes.add(node);
+        while (node != start) {
+            long rel = parents.get(node);
+            rels.add(rel);
+            node = otherNode(rel, node);
+            nodes.add(node);
+        }
+        long[] nodeIds = nodes.reversed(), relIds = rels.reversed();
+        double[] costs = new double[nodeIds.length];
+        for (int i = 1; i < costs.length; i++) costs[i] = costs[i - 1] + weight(relIds[i - 1]);
+        costs[costs.length - 1] = cost;
+        return new WeightedPath(nodeIds, relIds, costs);
+    }
+
+    private long otherNode(long rel, long node) throws EntityNotFoundException {
+        long[] other = new long[1];
+        ops.relationshipVisit(rel, (RelationshipVisitor<RuntimeException>) (id, type, startNode, endNode) -> other[0] = startNode == node ? endNode : startNode);
+        return other[0];
+    }
+
+    /**
+     * Relationships of one node that pass the filter and weren't excluded, self loops are skipped.
+     */
+    private static class Expansion implements RelationshipVisitor<RuntimeException> {
+        private final PrimitiveLongSet excludedRels;
+        long node;
+        long[] others = new long[16];
+        long[] rels = new long[16];
+        int size;
+
+        Expansion(PrimitiveLongSet excludedRels) {
+            this.excludedRels = excludedRels;
+        }
+
+        void reset(long node) {
+            this.node = node;
+            size = 0;
+        }
+
+        @Override
+        public void visit(long relId, int type, long startNode, long endNode) {
+            long other = startNode == node ? endNode : startNode;
+            if (other == node || excludedRels.contains(relId)) return;
+            if (size == rels.length) {
+                rels = Arrays.copyOf(rels, size * 2);
+                others = Arrays.copyOf(others, size * 2);
+            }
+            rels[size] = relId;
+            others[size++] = other;
+        }
+    }
+
+    /**
+     * Binary min heap of (cost, node) pairs in parallel primitive arrays. Decreased costs are pushed again,
+     * stale entries are skipped when popped as their node is settled already.
+     */
+    static class Heap {
+        private double[] costs = new double[64];
+        private long[] nodes = new long[64];
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        double peekCost() {
+            return costs[0];
+        }
+
+        void push(double cost, long node) {
+            if (size == costs.length) {
+                costs = Arrays.copyOf(costs, size * 2);
+                nodes = Arrays.copyOf(nodes, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (costs[parent] <= cost) break;
+                costs[i] = costs[parent];
+                nodes[i] = nodes[parent];
+                i = parent;
+            }
+            costs[i] = cost;
+            nodes[i] = node;
+        }
+
+        long pop() {
+            long top = nodes[0];
+            double cost = costs[--size];
+            long node = nodes[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size && costs[child + 1] < costs[child]) child++;
+                if (costs[child] >= cost) break;
+                costs[i] = costs[child];
+                nodes[i] = nodes[child];
+                i = child;
+            }
+            costs[i] = cost;
+            nodes[i] = node;
+            return top;
+        }
+    }
+
+    private static class LongList {
+        long[] values = new long[16];
+        int size;
+
+        void add(long value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        long[] reversed() {
+            long[] result = new long[size];
+            for (int i = 0; i < size; i++) result[i] = values[size - 1 - i];
+            return result;
+        }
+    }
+
+    /**
+     * A path as node and relationship ids, costs[i] is the cost from the start up to nodes[i].
+     */
+    public static class WeightedPath {
+        public final long[] nodes;
+        public final long[] rels;
+        public final double[] costs;
+        public final double cost;
+
+        WeightedPath(long[] nodes, long[] rels, double[] costs) {
+            this.nodes = nodes;
+            this.rels = rels;
+            this.costs = costs;
+            this.cost = costs[costs.length - 1];
+        }
+
+        /**
+         * @return true if this path starts with the first i relationships of the other path and continues after them
+         */
+        boolean sharesRoot(WeightedPath other, int i) {
+            if (rels.length <= i) return false;
+            for (int r = 0; r < i; r++) {
+                if (rels[r] != other.rels[r]) return false;
+            }
+            return true;
+        }
+
+        WeightedPath root(int i) {
+            return new WeightedPath(Arrays.copyOf(nodes, i + 1), Arrays.copyOf(rels, i), Arrays.copyOf(costs, i + 1));
+        }
+
+        WeightedPath append(WeightedPath spur) {
+            long[] allNodes = Arrays.copyOf(nodes, nodes.length + spur.nodes.length - 1);
+            System.arraycopy(spur.nodes, 1, allNodes, nodes.length, spur.nodes.length - 1);
+            long[] allRels = Arrays.copyOf(rels, rels.length + spur.rels.length);
+            System.arraycopy(spur.rels, 0, allRels, rels.length, spur.rels.length);
+            double[] allCosts = Arrays.copyOf(costs, allNodes.length);
+            for (int i = 1; i < spur.costs.length; i++) allCosts[nodes.length - 1 + i] = cost + spur.costs[i];
+            return new WeightedPath(allNodes, allRels, allCosts);
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package apoc.algo.algorithms;
+
+import apoc.algo.CoreGraphAlgorithms.Adjacency;
+import org.neo4j.kernel.api.properties.DefinedProperty;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Strongly connected components on int-array adjacency lists.
+ * Both variants label every node with the smallest node index of its component, so their results are identical.
+ * <ul>
+ * <li>{@link #tarjan()} iterative Tarjan, single threaded baseline without recursion</li>
+ * <li>{@link #forwardBackward(int)} trimming of trivial components, forward-backward search from a pivot for the
+ * giant component and parallel coloring for the rest</li>
+ * </ul>
+ */
+public class StronglyConnectedComponents {
+    public static final int WRITE_BATCH = 100_000;
+    public static final int MINIMUM_BATCH_SIZE = 10_000;
+    private static final int ACTIVE = -1;
+
+    private final ExecutorService pool;
+    private final Adjacency out;
+    private final Adjacency in;
+    private final int nodeCount;
+    private int[] components;
+    public long computeMillis, writeMillis;
+
+    public StronglyConnectedComponents(ExecutorService pool, Adjacency out, Adjacency in) {
+        this.pool = pool;
+        this.out = out;
+        this.in = in;
+        this.nodeCount = out.nodeCount;
+    }
+
+    public int[] tarjan() {
+        long start = System.currentTimeMillis();
+        int[] index = new int[nodeCount];
+        Arrays.fill(index, -1);
+        int[] low = new int[nodeCount];
+        boolean[] onStack = new boolean[nodeCount];
+        int[] stack = new int[nodeCount];
+        int[] callNode = new int[nodeCount];
+        int[] callEdge = new int[nodeCount];
+        int[] components = new int[nodeCount];
+        int sp = 0, counter = 0;
+
+        for (int root = 0; root < nodeCount; root++) {
+            if (index[root] != -1) continue;
+            int cp = 0;
+            index[root] = low[root] = counter++;
+            stack[sp++] = root;
+            onStack[root] = true;
+            callNode[cp] = root;
+            callEdge[cp++] = out.offsets[root];
+
+            while (cp > 0) {
+                int node = callNode[cp - 1];
+                int edge = callEdge[cp - 1];
+                if (edge < out.offsets[node + 1]) {
+                    callEdge[cp - 1]++;
+                    int target = out.targets[edge];
+                    if (index[target] == -1) {
+                        // descend instead of recursing
+                        index[target] = low[target] = counter++;
+                        stack[sp++] = target;
+                        onStack[target] = true;
+                        callNode[cp] = target;
+                        callEdge[cp++] = out.offsets[target];
+                    } else if (onStack[target]) {
+                        low[node] = Math.min(low[node], index[target]);
+                    }
+                } else {
+                    cp--;
+                    if (low[node] == index[node]) {
+                        int from = sp;
+                        int min = node;
+                        do {
+                            from--;
+                            min = Math.min(min, stack[from]);
+                        } while (stack[from] != node);
+                        for (int i = from; i < sp; i++) {
+                            onStack[stack[i]] = false;
+                            components[stack[i]] = min;
+                        }
+                        sp = from;
+                    }
+                    if (cp > 0) {
+                        int parent = callNode[cp - 1];
+                        low[parent] = Math.min(low[parent], low[node]);
+                    }
+                }
+            }
+        }
+        this.components = components;
+        this.computeMillis = System.currentTimeMillis() - start;
+        return components;
+    }
+
+    public int[] forwardBackward(int concurrency) {
+        long start = System.currentTimeMillis();
+        int[] components = new int[nodeCount];
+        Arrays.fill(components, ACTIVE);
+        int batchSize = Math.max(MINIMUM_BATCH_SIZE, nodeCount / Math.max(1, concurrency) + 1);
+
+        int remaining = trim(components);
+        if (remaining > 0) {
+            int pivot = pivot(components);
+            AtomicIntegerArray forward = new AtomicIntegerArray(nodeCount);
+            AtomicIntegerArray backward = new AtomicIntegerArray(nodeCount);
+            reach(pivot, out, components, forward, batchSize);
+            reach(pivot, in, components, backward, batchSize);
+            int min = pivot;
+            for (int node = 0; node < nodeCount; node++) {
+                if (forward.get(node) == 1 && backward.get(node) == 1) min = Math.min(min, node);
+            }
+            for (int node = 0; node < nodeCount; node++) {
+                if (forward.get(node) == 1 && backward.get(node) == 1) {
+                    components[node] = min;
+                    remaining--;
+                }
+            }
+        }
+        while (remaining > 0) {
+            remaining -= color(components, batchSize);
+        }
+        this.components = components;
+        this.computeMillis = System.currentTimeMillis() - start;
+        return components;
+    }
+
+    /**
+     * repeatedly removes nodes without active incoming or outgoing relationships, they are their own component
+     * @return number of nodes still active
+     */
+    private int trim(int[] components) {
+        int[] inDegree = new int[nodeCount];
+        int[] outDegree = new int[nodeCount];
+        int[] queue = new int[nodeCount];
+        int head = 0, tail = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            inDegree[node] = in.degree(node);
+            outDegree[node] = out.degree(node);
+            if (inDegree[node] == 0 || outDegree[node] == 0) {
+                components[node] = node;
+                queue[tail++] = node;
+            }
+        }
+        while (head < tail) {
+            int node = queue[head++];
+            for (int i = out.offsets[node]; i < out.offsets[node + 1]; i++) {
+                int target = out.targets[i];
+                if (components[target] == ACTIVE && --inDegree[target] == 0) {
+                    components[target] = target;
+                    queue[tail++] = target;
+                }
+            }
+            for (int i = in.offsets[node]; i < in.offsets[node + 1]; i++) {
+                int source = in.targets[i];
+                if (components[source] == ACTIVE && --outDegree[source] == 0) {
+                    components[source] = source;
+                    queue[tail++] = source;
+                }
+            }
+        }
+        return nodeCount - tail;
+    }
+
+    // the node with the highest in * out degree is most likely part of the giant component
+    private int pivot(int[] components) {
+        int pivot = -1;
+        long max = -1;
+        for (int node = 0; node < nodeCount; node++) {
+            if (components[node] != ACTIVE) continue;
+            long degree = (long) in.degree(node) * out.degree(node);
+            if (degree > max) {
+                max = degree;
+                pivot = node;
+            }
+        }
+        return pivot;
+    }
+
+    /**
+     * level synchronous parallel breadth first search over the active nodes, marks reached nodes with 1
+     */
+    private void reach(int source, Adjacency adjacency, int[] components, AtomicIntegerArray visited, int batchSize) {
+        visited.set(source, 1);
+        int[] frontier = {source};
+        while (frontier.length > 0) {
+            final int[] current = frontier;
+            List<Future<int[]>> futures = new ArrayList<>(current.length / batchSize + 1);
+            for (int from = 0; from < current.length; from += batchSize) {
+                int batchStart = from;
+                int batchEnd = Math.min(current.length, from + batchSize);
+                futures.add(pool.submit(() -> {
+                    int[] next = new int[16];
+                    int size = 0;
+                    for (int i = batchStart; i < batchEnd; i++) {
+                        int node = current[i];
+                        for (int r = adjacency.offsets[node]; r < adjacency.offsets[node + 1]; r++) {
+                            int target = adjacency.targets[r];
+                            if (components[target] == ACTIVE && visited.compareAndSet(target, 0, 1)) {
+                                if (size == next.length) next = Arrays.copyOf(next, size * 2);
+                                next[size++] = target;
+                            }
+                        }
+                    }
+                    return Arrays.copyOf(next, size);
+                }));
+            }
+            int size = 0;
+            List<int[]> parts = new ArrayList<>(futures.size());
+            for (Future<int[]> future : futures) {
+                int[] part = get(future);
+                parts.add(part);
+                size += part.length;
+            }
+            frontier = new int[size];
+            int offset = 0;
+            for (int[] part : parts) {
+                System.arraycopy(part, 0, frontier, offset, part.length);
+                offset += part.length;
+            }
+        }
+    }
+
+    /**
+     * Propagates the highest node index forward until stable, every node whose color is its own index is the root
+     * of a component which consists of the nodes with the same color that reach it backwards.
+     * @return number of nodes assigned to components in this round
+     */
+    private int color(int[] components, int batchSize) {
+        AtomicIntegerArray colors = new AtomicIntegerArray(nodeCount);
+        for (int node = 0; node < nodeCount; node++) {
+            colors.set(node, node);
+        }
+        AtomicBoolean changed = new AtomicBoolean(true);
+        while (changed.get()) {
+            changed.set(false);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int from = 0; from < nodeCount; from += batchSize) {
+                int batchStart = from;
+                int batchEnd = Math.min(nodeCount, from + batchSize);
+                futures.add(pool.submit(() -> {
+                    for (int node = batchStart; node < batchEnd; node++) {
+                        if (components[node] != ACTIVE) continue;
+                        int color = colors.get(node);
+                        for (int r = out.offsets[node]; r < out.offsets[node + 1]; r++) {
+                            int target = out.targets[r];
+                            if (components[target] != ACTIVE) continue;
+                            int current = colors.get(target);
+                            while (current < color) {
+                                if (colors.compareAndSet(target, current, color)) {
+                                    changed.set(true);
+                                    break;
+                                }
+                                current = colors.get(target);
+                            }
+                        }
+                    }
+                }));
+            }
+            futures.forEach(this::get);
+        }
+
+        // colors are disjoint, so the backward searches of the roots run in parallel without conflicts
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int from = 0; from < nodeCount; from += batchSize) {
+            int batchStart = from;
+            int batchEnd = Math.min(nodeCount, from + batchSize);
+            futures.add(pool.submit(() -> {
+                int assigned = 0;
+                int[] queue = new int[16];
+                for (int root = batchStart; root < batchEnd; root++) {
+                    if (components[root] != ACTIVE || colors.get(root) != root) continue;
+                    int head = 0, tail = 0, min = root;
+                    queue[tail++] = root;
+                    components[root] = root;
+                    while (head < tail) {
+                        int node = queue[head++];
+                        for (int r = in.offsets[node]; r < in.offsets[node + 1]; r++) {
+                            int source = in.targets[r];
+                            if (components[source] == ACTIVE && colors.get(source) == root) {
+                                components[source] = root;
+                                if (tail == queue.length) queue = Arrays.copyOf(queue, tail * 2);
+                                queue[tail++] = source;
+                                min = Math.min(min, source);
+                            }
+                        }
+                    }
+                    for (int i = 0; i < tail; i++) {
+                        components[queue[i]] = min;
+                    }
+                    assigned += tail;
+                }
+                return assigned;
+            }));
+        }
+        int assigned = 0;
+        for (Future<Integer> future : futures) {
+            assigned += get(future);
+        }
+        return assigned;
+    }
+
+    private <T> T get(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("Error computing strongly connected components", e);
+        }
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public long relCount() {
+        return out.getRelCount();
+    }
+
+    public boolean hasRelationships(int node) {
+        return out.degree(node) > 0 || in.degree(node) > 0;
+    }
+
+    public int[] getComponents() {
+        return components;
+    }
+
+    /**
+     * @return size of the component per component id (smallest node index in the component), 0 for other indexes
+     */
+    public int[] componentSizes() {
+        int[] sizes = new int[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            sizes[components[node]]++;
+        }
+        return sizes;
+    }
+
+    /**
+     * only nodes with relationships are written, the others are trivial components and might not exist in the id range
+     */
+    public void writeResultsToDB(GraphDatabaseAPI db, IntToLongFunction nodeMapping, String property, int batchSize) {
+        long start = System.currentTimeMillis();
+        AlgoUtils.writeBackResults(pool, db, property, nodeCount, batchSize, (ops, propertyKeyId, node) -> {
+            if (hasRelationships(node))
+                ops.nodeSetProperty(nodeMapping.applyAsLong(node), DefinedProperty.longProperty(propertyKeyId, nodeMapping.applyAsLong(components[node])));
+        });
+        this.writeMillis = System.currentTimeMillis() - start;
+    }
+}
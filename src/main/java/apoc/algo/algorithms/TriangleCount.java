@@ -0,0 +1,156 @@
+package apoc.algo.algorithms;
+
+import apoc.algo.CoreGraphAlgorithms.DegreeOrderedGraph;
+import org.neo4j.kernel.api.properties.DefinedProperty;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Parallel triangle counting on a degree ordered graph, every triangle is found once from its lowest ranked node
+ * by intersecting the sorted adjacency lists of both ends of each relationship.
+ */
+public class TriangleCount {
+    public static final int WRITE_BATCH = 100_000;
+    public static final int MINIMUM_BATCH_SIZE = 1_000;
+
+    private final ExecutorService pool;
+    private final DegreeOrderedGraph graph;
+    private AtomicIntegerArray triangles;
+    private long triangleCount;
+    public long computeMillis, writeMillis;
+
+    public TriangleCount(ExecutorService pool, DegreeOrderedGraph graph) {
+        this.pool = pool;
+        this.graph = graph;
+    }
+
+    public long compute(int concurrency) {
+        long start = System.currentTimeMillis();
+        int nodeCount = graph.nodeCount;
+        triangles = new AtomicIntegerArray(nodeCount);
+        // work per node is skewed, so we use more batches than threads
+        int batchSize = Math.max(MINIMUM_BATCH_SIZE, nodeCount / (Math.max(1, concurrency) * 4) + 1);
+        List<Future<Long>> futures = new ArrayList<>(nodeCount / batchSize + 1);
+        for (int from = 0; from < nodeCount; from += batchSize) {
+            int batchStart = from;
+            int batchEnd = Math.min(nodeCount, from + batchSize);
+            futures.add(pool.submit(() -> countBatch(batchStart, batchEnd)));
+        }
+        long total = 0;
+        for (Future<Long> future : futures) {
+            try {
+                total += future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new RuntimeException("Error counting triangles", e);
+            }
+        }
+        this.triangleCount = total;
+        this.computeMillis = System.currentTimeMillis() - start;
+        return total;
+    }
+
+    private long countBatch(int start, int end) {
+        int[] offsets = graph.offsets;
+        int[] targets = graph.targets;
+        long count = 0;
+        for (int node = start; node < end; node++) {
+            int nodeFrom = offsets[node], nodeTo = offsets[node + 1];
+            for (int i = nodeFrom; i < nodeTo; i++) {
+                int other = targets[i];
+                int a = nodeFrom, b = offsets[other], otherTo = offsets[other + 1];
+                while (a < nodeTo && b < otherTo) {
+                    int x = targets[a], y = targets[b];
+                    if (x < y) a++;
+                    else if (x > y) b++;
+                    else {
+                        triangles.incrementAndGet(node);
+                        triangles.incrementAndGet(other);
+                        triangles.incrementAndGet(x);
+                        count++;
+                        a++;
+                        b++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    public int nodeCount() {
+        return graph.nodeCount;
+    }
+
+    public long relCount() {
+        return graph.getRelCount();
+    }
+
+    public long getTriangleCount() {
+        return triangleCount;
+    }
+
+    public int triangles(int node) {
+        return triangles.get(node);
+    }
+
+    public int degree(int node) {
+        return graph.degrees[node];
+    }
+
+    /**
+     * @return share of the pairs of neighbours of the node that are connected themselves
+     */
+    public double coefficient(int node) {
+        int degree = graph.degrees[node];
+        if (degree < 2) return 0;
+        return 2.0 * triangles.get(node) / (degree * (degree - 1.0));
+    }
+
+    public double averageCoefficient() {
+        int nodeCount = graph.nodeCount;
+        if (nodeCount == 0) return 0;
+        double sum = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            sum += coefficient(node);
+        }
+        return sum / nodeCount;
+    }
+
+    /**
+     * @return global clustering coefficient, closed triplets over all connected triplets
+     */
+    public double transitivity() {
+        double triplets = 0;
+        for (int node = 0; node < graph.nodeCount; node++) {
+            int degree = graph.degrees[node];
+            triplets += degree * (degree - 1.0) / 2.0;
+        }
+        return triplets == 0 ? 0 : 3.0 * triangleCount / triplets;
+    }
+
+    /**
+     * only nodes with relationships are written, the others have no triangles and might not exist in the id range
+     */
+    public void writeResultsToDB(GraphDatabaseAPI db, IntToLongFunction nodeMapping, String triangleProperty, String coefficientProperty, int batchSize) {
+        long start = System.currentTimeMillis();
+        if (triangleProperty != null) {
+            AlgoUtils.writeBackResults(pool, db, triangleProperty, graph.nodeCount, batchSize, (ops, propertyKeyId, node) -> {
+                if (graph.degrees[node] > 0)
+                    ops.nodeSetProperty(nodeMapping.applyAsLong(node), DefinedProperty.intProperty(propertyKeyId, triangles.get(node)));
+            });
+        }
+        if (coefficientProperty != null) {
+            AlgoUtils.writeBackResults(pool, db, coefficientProperty, graph.nodeCount, batchSize, (ops, propertyKeyId, node) -> {
+                if (graph.degrees[node] > 0)
+                    ops.nodeSetProperty(nodeMapping.applyAsLong(node), DefinedProperty.doubleProperty(propertyKeyId, coefficient(node)));
+            });
+        }
+        this.writeMillis = System.currentTimeMillis() - start;
+    }
+}
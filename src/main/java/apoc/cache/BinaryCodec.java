@@ -0,0 +1,274 @@
+package apoc.cache;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary form of cached values: a type tag followed by the value, integers and lengths as zig-zag varints,
+ * primitive arrays as their raw fixed width elements. Supports null, booleans, numbers, strings, primitive arrays,
+ * lists and maps with string keys of these, integral numbers are read back as longs and floats as doubles.
+ */
+public class BinaryCodec {
+    private static final byte NULL = 0, FALSE = 1, TRUE = 2, LONG = 3, DOUBLE = 4, STRING = 5,
+            LONG_ARRAY = 6, INT_ARRAY = 7, DOUBLE_ARRAY = 8, BYTE_ARRAY = 9, LIST = 10, MAP = 11;
+
+    /**
+     * @return true if the value and everything it contains can be encoded
+     */
+    public static boolean supports(Object value) {
+        if (value == null || value instanceof Boolean || value instanceof Number || value instanceof String
+                || value instanceof long[] || value instanceof int[] || value instanceof double[] || value instanceof byte[]) {
+            return !(value instanceof Number) || isIntegral(value) || value instanceof Double || value instanceof Float;
+        }
+        if (value instanceof Collection) {
+            for (Object element : (Collection<?>) value) if (!supports(element)) return false;
+            return true;
+        }
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!(entry.getKey() instanceof String) || !supports(entry.getValue())) return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return a direct buffer holding the encoded value, positioned at its start
+     * @throws IllegalArgumentException if the value is not {@link #supports(Object) supported}
+     */
+    public static ByteBuffer encodeDirect(Object value) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size(value));
+        write(buffer, value);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Frees the memory of a direct buffer from {@link #encodeDirect(Object)} right away instead of when it is garbage collected,
+     * the buffer must not be used afterwards.
+     */
+    public static void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) return;
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) cleaner.getClass().getMethod("clean").invoke(cleaner);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // not supported by this jvm, left to the garbage collector
+        }
+    }
+
+    /**
+     * @return a heap buffer holding the encoded value, positioned at its start
+     */
+    public static ByteBuffer encode(Object value) {
+        ByteBuffer buffer = ByteBuffer.allocate(size(value));
+        write(buffer, value);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Decodes a value from a buffer that may be shared with other readers, its position is left untouched.
+     */
+    public static Object decode(ByteBuffer buffer) {
+        return read(buffer.duplicate());
+    }
+
+    public static int size(Object value) {
+        if (value == null || value instanceof Boolean) return 1;
+        if (isIntegral(value)) return 1 + varLongSize(((Number) value).longValue());
+        if (value instanceof Double || value instanceof Float) return 1 + 8;
+        if (value instanceof String) {
+            int length = utf8Length((String) value);
+            return 1 + varLongSize(length) + length;
+        }
+        if (value instanceof long[]) return arraySize(((long[]) value).length, 8);
+        if (value instanceof int[]) return arraySize(((int[]) value).length, 4);
+        if (value instanceof double[]) return arraySize(((double[]) value).length, 8);
+        if (value instanceof byte[]) return arraySize(((byte[]) value).length, 1);
+        if (value instanceof Collection) {
+            Collection<?> list = (Collection<?>) value;
+            int size = 1 + varLongSize(list.size());
+            for (Object element : list) size += size(element);
+            return size;
+        }
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            int size = 1 + varLongSize(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                int length = utf8Length((String) entry.getKey());
+                size += varLongSize(length) + length + size(entry.getValue());
+            }
+            return size;
+        }
+        throw new IllegalArgumentException("Can't encode values of type " + value.getClass().getName());
+    }
+
+    private static void write(ByteBuffer buffer, Object value) {
+        if (value == null) {
+            buffer.put(NULL);
+        } else if (value instanceof Boolean) {
+            buffer.put((Boolean) value ? TRUE : FALSE);
+        } else if (isIntegral(value)) {
+            buffer.put(LONG);
+            writeVarLong(buffer, ((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            buffer.put(DOUBLE).putDouble(((Number) value).doubleValue());
+        } else if (value instanceof String) {
+            buffer.put(STRING);
+            writeString(buffer, (String) value);
+        } else if (value instanceof long[]) {
+            long[] array = (long[]) value;
+            writeVarLong(buffer.put(LONG_ARRAY), array.length);
+            buffer.asLongBuffer().put(array);
+            buffer.position(buffer.position() + array.length * 8);
+        } else if (value instanceof int[]) {
+            int[] array = (int[]) value;
+            writeVarLong(buffer.put(INT_ARRAY), array.length);
+            buffer.asIntBuffer().put(array);
+            buffer.position(buffer.position() + array.length * 4);
+        } else if (value instanceof double[]) {
+            double[] array = (double[]) value;
+            writeVarLong(buffer.put(DOUBLE_ARRAY), array.length);
+            buffer.asDoubleBuffer().put(array);
+            buffer.position(buffer.position() + array.length * 8);
+        } else if (value instanceof byte[]) {
+            byte[] array = (byte[]) value;
+            writeVarLong(buffer.put(BYTE_ARRAY), array.length);
+            buffer.put(array);
+        } else if (value instanceof Collection) {
+            Collection<?> list = (Collection<?>) value;
+            writeVarLong(buffer.put(LIST), list.size());
+            for (Object element : list) write(buffer, element);
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            writeVarLong(buffer.put(MAP), map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeString(buffer, (String) entry.getKey());
+                write(buffer, entry.getValue());
+            }
+        } else {
+            throw new IllegalArgumentException("Can't encode values of type " + value.getClass().getName());
+        }
+    }
+
+    private static Object read(ByteBuffer buffer) {
+        byte type = buffer.get();
+        switch (type) {
+            case NULL: return null;
+            case FALSE: return false;
+            case TRUE: return true;
+            case LONG: return readVarLong(buffer);
+            case DOUBLE: return buffer.getDouble();
+            case STRING: return readString(buffer);
+            case LONG_ARRAY: {
+                long[] array = new long[(int) readVarLong(buffer)];
+                buffer.asLongBuffer().get(array);
+                buffer.position(buffer.position() + array.length * 8);
+                return array;
+            }
+            case INT_ARRAY: {
+                int[] array = new int[(int) readVarLong(buffer)];
+                buffer.asIntBuffer().get(array);
+                buffer.position(buffer.position() + array.length * 4);
+                return array;
+            }
+            case DOUBLE_ARRAY: {
+                double[] array = new double[(int) readVarLong(buffer)];
+                buffer.asDoubleBuffer().get(array);
+                buffer.position(buffer.position() + array.length * 8);
+                return array;
+            }
+            case BYTE_ARRAY: {
+                byte[] array = new byte[(int) readVarLong(buffer)];
+                buffer.get(array);
+                return array;
+            }
+            case LIST: {
+                int size = (int) readVarLong(buffer);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) list.add(read(buffer));
+                return list;
+            }
+            case MAP: {
+                int size = (int) readVarLong(buffer);
+                Map<String, Object> map = new HashMap<>(size * 4 / 3 + 1);
+                for (int i = 0; i < size; i++) map.put(readString(buffer), read(buffer));
+                return map;
+            }
+            default:
+                throw new IllegalStateException("Unknown type tag " + type + " at " + (buffer.position() - 1));
+        }
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+
+    private static int arraySize(int length, int width) {
+        return 1 + varLongSize(length) + length * width;
+    }
+
+    private static void writeString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(buffer, bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[(int) readVarLong(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) length++;
+            else if (c < 0x800) length += 2;
+            else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else length += 3;
+        }
+        return length;
+    }
+
+    private static int varLongSize(long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        int size = 1;
+        while ((zigzag >>>= 7) != 0) size++;
+        return size;
+    }
+
+    private static void writeVarLong(ByteBuffer buffer, long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        buffer.put((byte) zigzag);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long zigzag = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            zigzag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+}
@@ -0,0 +1,339 @@
+package apoc.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Concurrent cache bounded by the number of entries and/or their total weight, split into segments that are locked independently.
+ * Every segment keeps its entries in access order and evicts the least recently used ones once it exceeds its share of the bounds.
+ * Entries may expire after a time to live, expired entries are dropped when they are read, when they are the eldest of
+ * their segment, or by the sweep every segment does after a number of writes.
+ * A value heavier than the weight bound of a segment is rejected, as it would evict everything else.
+ */
+public class ConcurrentCache<K, V> {
+    public static final long NO_TTL = -1;
+    private static final int SWEEP_INTERVAL = 256;
+
+    public interface Weigher<V> {
+        long weigh(V value);
+    }
+
+    private final Segment[] segments;
+    private final Weigher<? super V> weigher;
+    private final LongSupplier clock;
+    private BiConsumer<? super K, ? super V> listener = (key, value) -> {};
+    private final LongAdder hits = new LongAdder(), misses = new LongAdder(), evictions = new LongAdder(), expirations = new LongAdder();
+
+    /**
+     * @param concurrency upper bound of the number of segments, it is lowered to a power of two not above maxEntries
+     * @param maxEntries maximum number of entries, -1 for no bound
+     * @param maxWeight maximum total weight of the entries, -1 for no bound
+     */
+    public ConcurrentCache(int concurrency, long maxEntries, long maxWeight, Weigher<? super V> weigher) {
+        this(concurrency, maxEntries, maxWeight, weigher, System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock current time in milliseconds for the time to live of the entries
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentCache(int concurrency, long maxEntries, long maxWeight, Weigher<? super V> weigher, LongSupplier clock) {
+        int count = Math.max(1, concurrency);
+        if (maxEntries > 0) count = (int) Math.min(count, maxEntries);
+        count = Integer.highestOneBit(count);
+        this.segments = new ConcurrentCache.Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(maxEntries > 0 ? maxEntries / count : Long.MAX_VALUE, maxWeight > 0 ? Math.max(1, maxWeight / count) : Long.MAX_VALUE);
+        }
+        this.weigher = weigher;
+        this.clock = clock;
+    }
+
+    /**
+     * Calls the listener under the lock of the segment whenever a value leaves the cache, when it is removed, replaced,
+     * evicted, expired or cleared. Must be set before the cache is used.
+     */
+    public ConcurrentCache<K, V> onRemoval(BiConsumer<? super K, ? super V> listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * @return true if the value is light enough to be stored
+     */
+    public boolean accepts(V value) {
+        return weigh(value) <= segments[0].maxWeight;
+    }
+
+    private long weigh(V value) {
+        return weigher == null ? 1 : weigher.weigh(value);
+    }
+
+    public V get(K key) {
+        Segment segment = segment(key);
+        synchronized (segment) {
+            Entry<V> entry = segment.live(key, now());
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.value;
+        }
+    }
+
+    /**
+     * Applies the reader to the value of the key under the lock of its segment, without counting a hit or miss.
+     * @return the result of the reader, null if there is no value
+     */
+    public <R> R peek(K key, Function<? super V, ? extends R> reader) {
+        Segment segment = segment(key);
+        synchronized (segment) {
+            Entry<V> entry = segment.live(key, now());
+            return entry == null ? null : reader.apply(entry.value);
+        }
+    }
+
+    public void recordHit() {
+        hits.increment();
+    }
+
+    public void recordMiss() {
+        misses.increment();
+    }
+
+    /**
+     * @param ttl time to live in milliseconds, {@link #NO_TTL} to keep the entry until it is evicted
+     * @return the previous value, null if there was none; a null value removes the entry
+     * @throws IllegalArgumentException if the value is not {@link #accepts(Object) accepted}, the previous value is kept
+     */
+    public V put(K key, V value, long ttl) {
+        return compute(key, (k, previous) -> value, ttl, true);
+    }
+
+    public V remove(K key) {
+        return put(key, null, NO_TTL);
+    }
+
+    /**
+     * @return the current value, the given one if there was none
+     */
+    public V putIfAbsent(K key, V value, long ttl) {
+        return compute(key, (k, previous) -> previous == null ? value : previous, ttl, false);
+    }
+
+    /**
+     * Atomically replaces the value of the key with the result of the function, which must not call back into this cache.
+     * Returning null removes the entry.
+     * @return the new value
+     * @throws IllegalArgumentException if the new value is not {@link #accepts(Object) accepted}, the previous value is kept
+     */
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> function, long ttl) {
+        return compute(key, function, ttl, false);
+    }
+
+    private V compute(K key, BiFunction<? super K, ? super V, ? extends V> function, long ttl, boolean returnPrevious) {
+        Segment segment = segment(key);
+        synchronized (segment) {
+            long now = now();
+            Entry<V> previous = segment.live(key, now);
+            V previousValue = previous == null ? null : previous.value;
+            V value = function.apply(key, previousValue);
+            if (value == null) {
+                if (previous != null) segment.remove(key, previous);
+            } else if (previous == null || value != previousValue) {
+                long weight = weigh(value);
+                if (weight > segment.maxWeight) {
+                    throw new IllegalArgumentException("Value of " + key + " weighs " + weight + ", more than the maximum of " + segment.maxWeight + " of an entry");
+                }
+                segment.put(key, new Entry<>(value, weight, ttl == NO_TTL ? Long.MAX_VALUE : now + ttl), now);
+            }
+            return returnPrevious ? previousValue : value;
+        }
+    }
+
+    /**
+     * @return a copy of the live entries
+     */
+    public Map<K, V> snapshot() {
+        return snapshot((key, value) -> value);
+    }
+
+    /**
+     * @return the live entries with their values mapped under the lock of their segment, entries mapped to null are left out
+     */
+    public <R> Map<K, R> snapshot(BiFunction<? super K, ? super V, ? extends R> mapper) {
+        Map<K, R> result = new HashMap<>();
+        long now = now();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.entries.forEach((key, entry) -> {
+                    if (entry.expires <= now) return;
+                    R value = mapper.apply(key, entry.value);
+                    if (value != null) result.put(key, value);
+                });
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of removed entries
+     */
+    public int removeIf(BiPredicate<? super K, ? super V> predicate) {
+        int removed = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                Iterator<Map.Entry<K, Entry<V>>> it = segment.entries.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<K, Entry<V>> next = it.next();
+                    if (predicate.test(next.getKey(), next.getValue().value)) {
+                        it.remove();
+                        segment.weight -= next.getValue().weight;
+                        listener.accept(next.getKey(), next.getValue().value);
+                        removed++;
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+
+    public boolean isEmpty() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                if (!segment.entries.isEmpty()) return false;
+            }
+        }
+        return true;
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.entries.forEach((key, entry) -> listener.accept(key, entry.value));
+                segment.entries.clear();
+                segment.weight = 0;
+            }
+        }
+    }
+
+    public Stats stats() {
+        long size = 0, weight = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+                weight += segment.weight;
+            }
+        }
+        return new Stats(size, weight, hits.sum(), misses.sum(), evictions.sum(), expirations.sum());
+    }
+
+    private Segment segment(K key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return segments[hash & (segments.length - 1)];
+    }
+
+    private long now() {
+        return clock.getAsLong();
+    }
+
+    private static class Entry<V> {
+        final V value;
+        final long weight;
+        final long expires;
+
+        Entry(V value, long weight, long expires) {
+            this.value = value;
+            this.weight = weight;
+            this.expires = expires;
+        }
+    }
+
+    private class Segment {
+        private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final long maxEntries, maxWeight;
+        private long weight;
+        private int writes;
+
+        Segment(long maxEntries, long maxWeight) {
+            this.maxEntries = maxEntries;
+            this.maxWeight = maxWeight;
+        }
+
+        Entry<V> live(K key, long now) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.expires <= now) {
+                remove(key, entry);
+                expirations.increment();
+                return null;
+            }
+            return entry;
+        }
+
+        void put(K key, Entry<V> entry, long now) {
+            Entry<V> previous = entries.put(key, entry);
+            if (previous != null) {
+                weight -= previous.weight;
+                if (previous.value != entry.value) listener.accept(key, previous.value);
+            }
+            weight += entry.weight;
+            if (++writes % SWEEP_INTERVAL == 0) sweep(now);
+            Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+            while (entries.size() > maxEntries || weight > maxWeight) {
+                Map.Entry<K, Entry<V>> next = eldest.next();
+                eldest.remove();
+                weight -= next.getValue().weight;
+                listener.accept(next.getKey(), next.getValue().value);
+                if (next.getValue().expires <= now) expirations.increment();
+                else evictions.increment();
+            }
+        }
+
+        void remove(K key, Entry<V> entry) {
+            entries.remove(key);
+            weight -= entry.weight;
+            listener.accept(key, entry.value);
+        }
+
+        private void sweep(long now) {
+            Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<K, Entry<V>> next = it.next();
+                if (next.getValue().expires <= now) {
+                    it.remove();
+                    weight -= next.getValue().weight;
+                    listener.accept(next.getKey(), next.getValue().value);
+                    expirations.increment();
+                }
+            }
+        }
+    }
+
+    public static class Stats {
+        public final long size;
+        public final long weight;
+        public final long hits;
+        public final long misses;
+        public final long evictions;
+        public final long expirations;
+
+        public Stats(long size, long weight, long hits, long misses, long evictions, long expirations) {
+            this.size = size;
+            this.weight = weight;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+        }
+    }
+}
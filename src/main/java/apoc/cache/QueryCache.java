@@ -0,0 +1,248 @@
+package apoc.cache;
+
+import apoc.ApocConfiguration;
+import apoc.result.MapResult;
+import apoc.util.Util;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.QueryExecutionType;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.event.LabelEntry;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.api.txstate.TxStateHolder;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.procedure.Context;
+import org.neo4j.procedure.Description;
+import org.neo4j.procedure.Name;
+import org.neo4j.procedure.Procedure;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Memoizes the rows of read-only statements under a key until they expire or a committed transaction changes the data they read.
+ * Entries registered for labels and relationship types are only dropped when a transaction touched nodes with one of the labels
+ * or relationships of one of the types, entries without them are dropped by any change.
+ */
+public class QueryCache {
+    public static final long DEFAULT_MAX_ENTRIES = 1000;
+
+    private static final Map<GraphDatabaseService, Storage> DATABASES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    @Context
+    public GraphDatabaseAPI db;
+
+    @Context
+    public KernelTransaction ktx;
+
+    @Procedure("apoc.cache.query")
+    @Description("apoc.cache.query(key, statement, params, ttl, {labels:[], types:[]}) - returns the cached rows of the read-only statement, it is run again on a miss, after ttl milliseconds or when a transaction changed nodes with the labels or relationships of the types, or any data if none are given")
+    public Stream<MapResult> query(@Name("key") String key, @Name("statement") String statement,
+                                   @Name(value = "params", defaultValue = "{}") Map<String, Object> params,
+                                   @Name(value = "ttl", defaultValue = "-1") long ttl,
+                                   @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        Map<String, Object> parameters = params == null ? Collections.emptyMap() : params;
+        // rows read with uncommitted changes of this transaction must not be seen by others
+        if (ktx instanceof TxStateHolder && ((TxStateHolder) ktx).hasTxStateWithChanges()) {
+            return run(statement, parameters).stream().map(MapResult::new);
+        }
+        Storage storage = of(db);
+        Entry entry = storage.cache.get(key);
+        if (entry == null || !entry.matches(statement, parameters)) {
+            long generation = storage.generation.get();
+            Set<String> labels = names(config.get("labels")), types = names(config.get("types"));
+            long sequence = storage.register(labels, types);
+            entry = new Entry(statement, parameters, run(statement, parameters), labels, types, sequence);
+            storage.put(key, entry, ttl, generation);
+        }
+        return entry.rows.stream().map(MapResult::new);
+    }
+
+    private List<Map<String, Object>> run(String statement, Map<String, Object> params) {
+        try (Result plan = db.execute("EXPLAIN " + statement, params)) {
+            if (plan.getQueryExecutionType().queryType() != QueryExecutionType.QueryType.READ_ONLY) {
+                throw new IllegalArgumentException("Only read-only statements can be cached: " + statement);
+            }
+        }
+        List<Map<String, Object>> rows = new ArrayList<>();
+        try (Result result = db.execute(statement, params)) {
+            while (result.hasNext()) rows.add(Collections.unmodifiableMap(result.next()));
+        }
+        return Collections.unmodifiableList(rows);
+    }
+
+    private static Set<String> names(Object value) {
+        if (value == null) return Collections.emptySet();
+        if (value instanceof String) return Collections.singleton((String) value);
+        Set<String> names = new HashSet<>();
+        for (Object name : (Collection<?>) value) names.add(name.toString());
+        return names;
+    }
+
+    static Storage of(GraphDatabaseService db) {
+        return DATABASES.computeIfAbsent(db, key -> new Storage());
+    }
+
+    static class Storage {
+        final ConcurrentCache<String, Entry> cache = new ConcurrentCache<>(Static.DEFAULT_CONCURRENCY,
+                Util.toLong(ApocConfiguration.get("cache.query.max_entries", DEFAULT_MAX_ENTRIES)),
+                Util.toLong(ApocConfiguration.get("cache.query.max_weight", -1)),
+                entry -> Static.weigh(entry.rows));
+        // incremented by every commit, entries computed while it changed may be stale and are dropped
+        final AtomicLong generation = new AtomicLong();
+        // labels and types entries were ever registered for, only changes of them are looked up by commits
+        final Set<String> labels = ConcurrentHashMap.newKeySet(), types = ConcurrentHashMap.newKeySet();
+        // incremented by every entry after registering its labels and types
+        final AtomicLong sequence = new AtomicLong();
+
+        long register(Set<String> labels, Set<String> types) {
+            this.labels.addAll(labels);
+            this.types.addAll(types);
+            return sequence.incrementAndGet();
+        }
+
+        void put(String key, Entry entry, long ttl, long generation) {
+            if (!cache.accepts(entry)) return;
+            cache.put(key, entry, ttl);
+            if (this.generation.get() != generation) {
+                cache.compute(key, (k, current) -> current == entry ? null : current, ConcurrentCache.NO_TTL);
+            }
+        }
+
+        void invalidate(Changes changes) {
+            generation.incrementAndGet();
+            if (changes == null) cache.clear();
+            else cache.removeIf((key, entry) -> changes.affect(entry));
+        }
+    }
+
+    static class Entry {
+        final String statement;
+        final Map<String, Object> params;
+        final List<Map<String, Object>> rows;
+        final Set<String> labels, types;
+        final long sequence;
+
+        Entry(String statement, Map<String, Object> params, List<Map<String, Object>> rows, Set<String> labels, Set<String> types, long sequence) {
+            this.statement = statement;
+            this.params = params;
+            this.rows = rows;
+            this.labels = labels;
+            this.types = types;
+            this.sequence = sequence;
+        }
+
+        boolean matches(String statement, Map<String, Object> params) {
+            return this.statement.equals(statement) && this.params.equals(params);
+        }
+    }
+
+    /**
+     * Registered labels and relationship types touched by a transaction, all entries are affected if some could not be determined.
+     * Entries registered after the changes were looked up are affected as well, their labels and types were not looked up.
+     */
+    static class Changes {
+        final Set<String> labels = new HashSet<>(), types = new HashSet<>();
+        boolean unknown;
+        long since;
+
+        boolean affect(Entry entry) {
+            if (unknown || entry.sequence > since || (entry.labels.isEmpty() && entry.types.isEmpty())) return true;
+            for (String label : entry.labels) if (labels.contains(label)) return true;
+            for (String type : entry.types) if (types.contains(type)) return true;
+            return false;
+        }
+
+        static Changes of(TransactionData data, Storage storage) {
+            Changes changes = new Changes();
+            // read before the registered names, so entries registered later are affected
+            changes.since = storage.sequence.get();
+            Set<String> labels = storage.labels, types = storage.types;
+            if (!labels.isEmpty()) {
+                // labels of created and deleted nodes are reported as assigned and removed
+                for (LabelEntry entry : data.assignedLabels()) changes.addLabel(labels, entry.label());
+                for (LabelEntry entry : data.removedLabels()) changes.addLabel(labels, entry.label());
+                for (PropertyEntry<Node> entry : data.assignedNodeProperties()) changes.addLabels(labels, data, entry.entity());
+                for (PropertyEntry<Node> entry : data.removedNodeProperties()) changes.addLabels(labels, data, entry.entity());
+            }
+            if (!types.isEmpty()) {
+                for (Relationship rel : data.createdRelationships()) changes.addType(types, rel);
+                for (Relationship rel : data.deletedRelationships()) changes.addType(types, rel);
+                for (PropertyEntry<Relationship> entry : data.assignedRelationshipProperties()) changes.addType(types, entry.entity());
+                for (PropertyEntry<Relationship> entry : data.removedRelationshipProperties()) {
+                    if (!data.isDeleted(entry.entity())) changes.addType(types, entry.entity());
+                }
+            }
+            return changes;
+        }
+
+        private void addLabel(Set<String> registered, Label label) {
+            if (registered.contains(label.name())) labels.add(label.name());
+        }
+
+        private void addLabels(Set<String> registered, TransactionData data, Node node) {
+            if (data.isDeleted(node)) return;
+            for (Label label : node.getLabels()) addLabel(registered, label);
+        }
+
+        private void addType(Set<String> registered, Relationship rel) {
+            try {
+                String type = rel.getType().name();
+                if (registered.contains(type)) types.add(type);
+            } catch (Exception e) {
+                unknown = true; // the type of a deleted relationship may not be readable anymore
+            }
+        }
+    }
+
+    public static class Invalidator implements TransactionEventHandler<Changes> {
+        private final Storage storage;
+
+        public Invalidator(GraphDatabaseService db) {
+            this.storage = of(db);
+        }
+
+        @Override
+        public Changes beforeCommit(TransactionData data) throws Exception {
+            // without changes the cache is cleared, it only holds entries added until the transaction is committed
+            if (storage.cache.isEmpty()) return null;
+            return Changes.of(data, storage);
+        }
+
+        @Override
+        public void afterCommit(TransactionData data, Changes changes) {
+            storage.invalidate(changes);
+        }
+
+        @Override
+        public void afterRollback(TransactionData data, Changes changes) {
+        }
+    }
+
+    public static class LifeCycle {
+        private final GraphDatabaseAPI db;
+        private Invalidator invalidator;
+
+        public LifeCycle(GraphDatabaseAPI db) {
+            this.db = db;
+        }
+
+        public void start() {
+            invalidator = new Invalidator(db);
+            db.registerTransactionEventHandler(invalidator);
+        }
+
+        public void stop() {
+            if (invalidator == null) return;
+            db.unregisterTransactionEventHandler(invalidator);
+            DATABASES.remove(db);
+        }
+    }
+}
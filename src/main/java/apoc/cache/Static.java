@@ -11,6 +11,9 @@ import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
 
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.stream.Stream;
@@ -24,12 +27,138 @@ public class Static {
     @Context
     public GraphDatabaseAPI db;
 
-    private static Map<String,Object> storage = new HashMap<>();
+    // unbounded like before the storage was a cache, values are only evicted if a bound is configured
+    public static final long DEFAULT_MAX_ENTRIES = -1;
+    public static final int DEFAULT_CONCURRENCY = 16;
+
+    public static final long DEFAULT_OFF_HEAP_THRESHOLD = 64 * 1024;
+
+    private static volatile ConcurrentCache<String,Object> storage = create();
+    // large values encoded into direct buffers, null if apoc.cache.offheap.max_bytes is not configured
+    private static volatile ConcurrentCache<String,ByteBuffer> offHeap = createOffHeap();
+
+    /**
+     * The server lifetime storage is bounded by apoc.cache.static.max_entries and apoc.cache.static.max_weight
+     * (estimated bytes), both unbounded by default, entries live for apoc.cache.static.ttl
+     * milliseconds unless a ttl is given when they are set.
+     */
+    private static ConcurrentCache<String,Object> create() {
+        return new ConcurrentCache<>(
+                Util.toInteger(ApocConfiguration.get("cache.static.concurrency", DEFAULT_CONCURRENCY)),
+                Util.toLong(ApocConfiguration.get("cache.static.max_entries", DEFAULT_MAX_ENTRIES)),
+                Util.toLong(ApocConfiguration.get("cache.static.max_weight", -1)),
+                Static::weigh);
+    }
+
+    /**
+     * Values estimated to take at least apoc.cache.offheap.threshold bytes (default 64k) are kept outside of the heap,
+     * up to apoc.cache.offheap.max_bytes in total. Values that can't be encoded or are larger than that stay on the heap.
+     * There are few large values, so they share one segment and any of them may use the whole budget.
+     * The memory of a buffer is freed as soon as it leaves the cache, so buffers are only read under the lock of their segment.
+     */
+    private static ConcurrentCache<String,ByteBuffer> createOffHeap() {
+        long maxBytes = Util.toLong(ApocConfiguration.get("cache.offheap.max_bytes", 0));
+        if (maxBytes <= 0) return null;
+        return new ConcurrentCache<String,ByteBuffer>(1, -1, maxBytes, ByteBuffer::capacity)
+                .onRemoval((key, buffer) -> BinaryCodec.release(buffer));
+    }
+
+    private static boolean offHeap(Object value) {
+        return offHeap != null && value != null
+                && weigh(value) >= Util.toLong(ApocConfiguration.get("cache.offheap.threshold", DEFAULT_OFF_HEAP_THRESHOLD))
+                && BinaryCodec.supports(value);
+    }
+
+    /**
+     * Counts a hit in the storage that holds the value, or a miss of the heap storage.
+     */
+    private static Object lookup(String key) {
+        Object value = storage.peek(key, v -> v);
+        if (value != null) {
+            storage.recordHit();
+            return value;
+        }
+        value = offHeapValue(key);
+        if (value != null) {
+            offHeap.recordHit();
+            return value;
+        }
+        storage.recordMiss();
+        return null;
+    }
+
+    private static Object offHeapValue(String key) {
+        return offHeap == null ? null : offHeap.peek(key, BinaryCodec::decode);
+    }
+
+    /**
+     * Stores large values off-heap, if they fit.
+     * @return the value to keep on the heap, null if it was stored off-heap
+     */
+    private static Object keep(String key, Object value, long ttl) {
+        if (!offHeap(value)) return value;
+        ByteBuffer buffer = BinaryCodec.encodeDirect(value);
+        if (!offHeap.accepts(buffer)) {
+            BinaryCodec.release(buffer);
+            return value;
+        }
+        offHeap.put(key, buffer, ttl);
+        return null;
+    }
+
+    /**
+     * Changes of a key are done under the lock of its heap entry, which then also guards its off-heap entry.
+     * @return the previous value
+     */
+    private static Object store(String key, Object value, long ttl) {
+        Object[] previous = new Object[1];
+        storage.compute(key, (k, current) -> {
+            previous[0] = current != null ? current : offHeapValue(k);
+            if (offHeap != null) offHeap.remove(k);
+            return keep(k, value, ttl);
+        }, ttl);
+        return previous[0];
+    }
+
+    private static long defaultTtl() {
+        return Util.toLong(ApocConfiguration.get("cache.static.ttl", ConcurrentCache.NO_TTL));
+    }
+
+    private static long ttl(long ttl) {
+        return ttl == ConcurrentCache.NO_TTL ? defaultTtl() : ttl;
+    }
+
+    /**
+     * @return rough estimate of the heap size of a value in bytes
+     */
+    static long weigh(Object value) {
+        if (value == null) return 0;
+        if (value instanceof String) return 40 + 2 * ((String) value).length();
+        if (value instanceof Map) {
+            long weight = 48;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) weight += 32 + weigh(entry.getKey()) + weigh(entry.getValue());
+            return weight;
+        }
+        if (value instanceof Collection) {
+            long weight = 40;
+            for (Object element : (Collection<?>) value) weight += 8 + weigh(element);
+            return weight;
+        }
+        if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            if (value.getClass().getComponentType().isPrimitive()) return 16 + 8L * length;
+            long weight = 16;
+            for (int i = 0; i < length; i++) weight += 8 + weigh(Array.get(value, i));
+            return weight;
+        }
+        return 24;
+    }
 
     @Procedure("apoc.static.get")
     @Description("apoc.static.get(name) - returns statically stored value from config (apoc.static.<key>) or server lifetime storage")
     public Stream<ObjectResult> get(@Name("key") String key) {
-        return Stream.of(new ObjectResult(storage.getOrDefault(key, fromConfig(key))));
+        Object value = lookup(key);
+        return Stream.of(new ObjectResult(value == null ? fromConfig(key) : value));
     }
 
     @Procedure("apoc.static.getAll")
@@ -41,7 +170,10 @@ public class Static {
     private HashMap<String, Object> getFromConfigAndStorage(@Name("prefix") String prefix) {
         Map<String,Object> config = ApocConfiguration.get("static." + prefix);
         HashMap<String, Object> result = new HashMap<>(config);
-        result.putAll(Util.subMap(storage, prefix));
+        Map<String, Object> stored = new HashMap<>();
+        if (offHeap != null) stored.putAll(offHeap.snapshot((key, buffer) -> key.startsWith(prefix) ? BinaryCodec.decode(buffer) : null));
+        stored.putAll(storage.snapshot());
+        result.putAll(Util.subMap(stored, prefix));
         return result;
     }
 
@@ -57,13 +189,61 @@ public class Static {
     }
 
     @Procedure("apoc.static.set")
-    @Description("apoc.static.set(name, value) - stores value under key for server livetime storage, returns previously stored or configured value")
-    public Stream<ObjectResult> set(@Name("key") String key, @Name("value") Object value) {
-        Object previous = value == null ? storage.remove(key) : storage.put(key, value);
+    @Description("apoc.static.set(name, value, [ttl]) - stores value under key for server livetime storage, expiring after ttl milliseconds if given, returns previously stored or configured value")
+    public Stream<ObjectResult> set(@Name("key") String key, @Name("value") Object value, @Name(value = "ttl", defaultValue = "-1") long ttl) {
+        Object previous = store(key, value, ttl(ttl));
         return Stream.of(new ObjectResult(previous==null ? fromConfig(key) : previous));
     }
 
+    @Procedure("apoc.static.setIfAbsent")
+    @Description("apoc.static.setIfAbsent(name, value, [ttl]) - atomically stores value under key if there is no stored value, returns the stored value")
+    public Stream<ObjectResult> setIfAbsent(@Name("key") String key, @Name("value") Object value, @Name(value = "ttl", defaultValue = "-1") long ttl) {
+        Object[] result = new Object[1];
+        storage.compute(key, (k, current) -> {
+            result[0] = current != null ? current : offHeapValue(k);
+            if (result[0] != null) return current;
+            result[0] = value;
+            return keep(k, value, ttl(ttl));
+        }, ttl(ttl));
+        return Stream.of(new ObjectResult(result[0]));
+    }
+
+    @Procedure("apoc.static.increment")
+    @Description("apoc.static.increment(name, [delta], [ttl]) - atomically adds delta (default 1) to the stored or configured number under key, returns the new value")
+    public Stream<ObjectResult> increment(@Name("key") String key, @Name(value = "delta", defaultValue = "1") Number delta, @Name(value = "ttl", defaultValue = "-1") long ttl) {
+        return Stream.of(new ObjectResult(storage.compute(key, (k, previous) -> {
+            Object current = previous != null ? previous : offHeapValue(k);
+            if (current == null) current = fromConfig(k);
+            if (current == null) return delta;
+            Number number = current instanceof Number ? (Number) current : Util.toLong(current);
+            if (number == null) number = Util.toDouble(current);
+            if (number == null) throw new IllegalArgumentException("Value of " + k + " is not a number: " + current);
+            if (previous == null && offHeap != null) offHeap.remove(k);
+            if (isIntegral(number) && isIntegral(delta)) return number.longValue() + delta.longValue();
+            return number.doubleValue() + delta.doubleValue();
+        }, ttl(ttl))));
+    }
+
+    private static boolean isIntegral(Number number) {
+        return number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte;
+    }
+
+    @Procedure("apoc.static.stats")
+    @Description("apoc.static.stats() - size, estimated weight, hits, misses, evictions and expirations of the server lifetime storage")
+    public Stream<ConcurrentCache.Stats> stats() {
+        return Stream.of(storage.stats());
+    }
+
+    @Procedure("apoc.static.offHeapStats")
+    @Description("apoc.static.offHeapStats() - number of values, size in bytes, hits, misses, evictions and expirations of the off-heap storage of large values")
+    public Stream<ConcurrentCache.Stats> offHeapStats() {
+        return offHeap == null ? Stream.empty() : Stream.of(offHeap.stats());
+    }
+
     public static void clear() {
-        storage.clear();
+        ConcurrentCache<String,ByteBuffer> previous = offHeap;
+        storage = create();
+        offHeap = createOffHeap();
+        if (previous != null) previous.clear();
     }
 }
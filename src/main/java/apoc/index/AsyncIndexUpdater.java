@@ -0,0 +1,407 @@
+package apoc.index;
+
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.index.Index;
+import org.neo4j.graphdb.index.IndexManager;
+import org.neo4j.kernel.impl.core.NodeManager;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.kernel.lifecycle.LifeSupport;
+import org.neo4j.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Applies the index commands of committed transactions in background threads. Commands are partitioned by index name,
+ * so every index is updated by a single worker in commit order. Each worker collects the commands of a transaction as one
+ * batch and applies them in its own transaction, which is committed and rolled over after a number of operations or milliseconds.
+ * Before applying them a worker takes all batches queued so far and drops the commands whose entries are removed again by a later
+ * command for the same index, node and key, so a value replaced many times in a row is only indexed once with its last state.
+ * With a journal directory every worker also appends its batches to an {@link IndexJournal} before queueing them and
+ * checkpoints them after their index transaction was committed, the journal is not locked while a committing transaction
+ * waits for a full queue. Journals left over by a previous run are replayed
+ * by the workers before they take new batches, using the current state of the nodes instead of the journaled commands.
+ */
+public class AsyncIndexUpdater {
+    // upper bound of the batches a worker coalesces at once
+    private static final int MAX_DRAIN = 1000;
+
+    private final GraphDatabaseAPI db;
+    private final Log log;
+    private final long opsRollover, millisRollover;
+    final Worker[] workers;
+    private final File journalDir;
+    private final boolean forceJournal;
+    private volatile boolean running = true;
+
+    /**
+     * @param queueCapacity number of pending transaction batches per worker, committing transactions block when it is reached
+     */
+    public AsyncIndexUpdater(GraphDatabaseAPI db, Log log, int threads, int queueCapacity, long opsRollover, long millisRollover) {
+        this(db, log, threads, queueCapacity, opsRollover, millisRollover, null, false);
+    }
+
+    /**
+     * @param journalDir directory of the workers' journals, null to keep pending commands only in memory
+     * @param forceJournal sync each journal record to the disk before the transaction's commit returns
+     */
+    public AsyncIndexUpdater(GraphDatabaseAPI db, Log log, int threads, int queueCapacity, long opsRollover, long millisRollover,
+                             File journalDir, boolean forceJournal) {
+        this.db = db;
+        this.journalDir = journalDir;
+        this.forceJournal = forceJournal;
+        this.log = log;
+        this.opsRollover = opsRollover;
+        this.millisRollover = millisRollover;
+        this.workers = new Worker[Math.max(1, threads)];
+        for (int i = 0; i < workers.length; i++) workers[i] = new Worker(i, Math.max(1, queueCapacity));
+    }
+
+    public void start() throws IOException {
+        openJournals();
+        for (Worker worker : workers) {
+            Thread thread = new Thread(worker, "apoc-index-update-" + worker.id);
+            thread.start();
+        }
+        log.info("started " + workers.length + " background threads for async index updates");
+    }
+
+    void openJournals() throws IOException {
+        if (journalDir != null) {
+            Replay replay = new Replay(pendingJournals());
+            for (Worker worker : workers) {
+                worker.replay = replay;
+                worker.journal = new IndexJournal(IndexJournal.file(journalDir, worker.id), forceJournal);
+            }
+        }
+    }
+
+    /**
+     * Lets the workers finish their queued batches and exit.
+     */
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * Moves the journals of the previous run out of the way of the new ones, the workers replay and delete them.
+     */
+    private List<File> pendingJournals() throws IOException {
+        if (!journalDir.isDirectory() && !journalDir.mkdirs()) {
+            throw new IOException("Can't create the async index journal directory " + journalDir);
+        }
+        File[] files = journalDir.listFiles((dir, name) -> name.startsWith(IndexJournal.PREFIX)
+                && (name.endsWith(IndexJournal.SUFFIX) || name.endsWith(IndexJournal.REPLAY)));
+        List<File> pending = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (File file : files == null ? new File[0] : files) {
+            if (file.getName().endsWith(IndexJournal.SUFFIX)) {
+                File renamed = new File(journalDir, file.getName() + "." + now + IndexJournal.REPLAY);
+                if (!file.renameTo(renamed)) throw new IOException("Can't rename the async index journal " + file);
+                file = renamed;
+            }
+            pending.add(file);
+        }
+        return pending;
+    }
+
+    /**
+     * Queues the commands of a committed transaction, one batch per worker, blocks while a worker's queue is full.
+     */
+    public void submit(Collection<IndexCommand> commands) throws InterruptedException {
+        if (commands == null || commands.isEmpty()) return;
+        List<IndexCommand>[] partitions = partition(commands);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < partitions.length; i++) {
+            if (partitions[i] == null) continue;
+            Worker worker = workers[i];
+            worker.pendingOps.addAndGet(partitions[i].size());
+            if (worker.journal == null) {
+                worker.queue.put(new Batch(partitions[i], now, 0));
+                continue;
+            }
+            // the journal tracks its uncommitted records itself, so the batch is queued without holding it
+            long end = 0;
+            try {
+                end = worker.journal.append(partitions[i]);
+            } catch (IOException e) {
+                log.warn("failed to journal async index updates, they are lost if the database stops before they are applied", e);
+            }
+            worker.queue.put(new Batch(partitions[i], now, end));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<IndexCommand>[] partition(Collection<IndexCommand> commands) {
+        List<IndexCommand>[] partitions = new List[workers.length];
+        for (IndexCommand command : commands) {
+            int worker = workers.length == 1 ? 0 : Math.floorMod(command.index.hashCode(), workers.length);
+            if (partitions[worker] == null) partitions[worker] = new ArrayList<>();
+            partitions[worker].add(command);
+        }
+        return partitions;
+    }
+
+    public Stream<WorkerStats> stats() {
+        return Stream.of(workers).map(Worker::stats);
+    }
+
+    private boolean databaseRunning() {
+        return db.getDependencyResolver().resolveDependency(LifeSupport.class).isRunning();
+    }
+
+    static class Batch {
+        final List<IndexCommand> commands;
+        final long enqueued;
+        // logical journal offset after the batch's record
+        final long journalEnd;
+
+        Batch(List<IndexCommand> commands, long enqueued, long journalEnd) {
+            this.commands = commands;
+            this.enqueued = enqueued;
+            this.journalEnd = journalEnd;
+        }
+    }
+
+    /**
+     * The journals of the previous run, every worker replays the commands of its own indexes from them,
+     * the last one to finish deletes the files.
+     */
+    private class Replay {
+        final List<File> files;
+        final AtomicInteger remaining = new AtomicInteger(workers.length);
+        private List<IndexCommand> commands;
+
+        Replay(List<File> files) {
+            this.files = files;
+        }
+
+        synchronized List<IndexCommand> commands(int worker) {
+            if (commands == null) {
+                commands = new ArrayList<>();
+                for (File file : files) {
+                    try {
+                        commands.addAll(IndexJournal.read(file));
+                    } catch (IOException e) {
+                        log.warn("failed to read async index journal " + file, e);
+                    }
+                }
+            }
+            List<IndexCommand> own = new ArrayList<>();
+            for (IndexCommand command : commands) {
+                if (workers.length == 1 || Math.floorMod(command.index.hashCode(), workers.length) == worker) own.add(command);
+            }
+            return own;
+        }
+
+        void done() {
+            if (remaining.decrementAndGet() > 0) return;
+            for (File file : files) {
+                if (!file.delete()) log.warn("failed to delete replayed async index journal " + file);
+            }
+        }
+    }
+
+    class Worker implements Runnable {
+        final int id;
+        final BlockingQueue<Batch> queue;
+        IndexJournal journal;
+        Replay replay;
+        final AtomicLong pendingOps = new AtomicLong(), appliedOps = new AtomicLong(), coalescedOps = new AtomicLong(), rollovers = new AtomicLong(),
+                lagMillis = new AtomicLong(), lastRolloverMillis = new AtomicLong();
+        private final Map<String, Index<Node>> indexes = new HashMap<>();
+
+        Worker(int id, int queueCapacity) {
+            this.id = id;
+            this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        }
+
+        @Override
+        public void run() {
+            Transaction tx = db.beginTx();
+            long opsCount = 0;
+            long lastCommit = System.currentTimeMillis();
+            // journal ends of the batches applied in the current transaction
+            List<Long> journalEnds = new ArrayList<>();
+            try {
+                if (replay != null) {
+                    tx = replay(tx);
+                }
+                while (true) {
+                    Batch batch = queue.poll(millisRollover, TimeUnit.MILLISECONDS);
+                    long now = System.currentTimeMillis();
+                    if ((opsCount > 0) && ((now - lastCommit > millisRollover) || (opsCount >= opsRollover))) {
+                        tx = rollover(tx, opsCount, now - lastCommit);
+                        lastCommit = now;
+                        opsCount = 0;
+                        checkpoint(journalEnds);
+                    }
+                    if (batch == null) {
+                        if (running && databaseRunning()) {
+                            // in case we couldn't get anything from queue, we'll update lastcommit to prevent too early commits
+                            if (opsCount == 0) {
+                                lastCommit = now;
+                            }
+                        } else {
+                            log.info("shutdown detected, terminating indexing background thread " + id);
+                            break;
+                        }
+                    } else {
+                        List<Batch> batches = new ArrayList<>();
+                        batches.add(batch);
+                        queue.drainTo(batches, MAX_DRAIN);
+                        opsCount += apply(batches);
+                        for (Batch applied : batches) if (applied.journalEnd != 0) journalEnds.add(applied.journalEnd);
+                        lagMillis.set(System.currentTimeMillis() - batches.get(batches.size() - 1).enqueued);
+                    }
+                }
+            } catch (InterruptedException e) {
+                log.error(e.getMessage(), e);
+                throw new RuntimeException(e);
+            } finally {
+                tx.success();
+                tx.close();
+                checkpoint(journalEnds);
+                if (journal != null) {
+                    try {
+                        journal.close();
+                    } catch (IOException e) {
+                        log.warn("failed to close async index journal of background thread " + id, e);
+                    }
+                }
+                log.info("stopping background thread " + id + " for async index updates");
+            }
+        }
+
+        private void checkpoint(List<Long> journalEnds) {
+            if (journal == null || journalEnds.isEmpty()) return;
+            try {
+                journal.checkpoint(journalEnds.stream().mapToLong(Long::longValue).toArray());
+                journalEnds.clear();
+            } catch (IOException e) {
+                log.warn("failed to truncate async index journal of background thread " + id, e);
+            }
+        }
+
+        /**
+         * Re-indexes the nodes and keys of the left over journal commands with their current state,
+         * the journaled type and value may be outdated by later transactions.
+         */
+        private Transaction replay(Transaction tx) {
+            List<IndexCommand> commands = IndexCommand.coalesce(replay.commands(id));
+            if (!commands.isEmpty()) {
+                log.info("background thread " + id + " replaying " + commands.size() + " async index updates from the journal");
+            }
+            NodeManager nodeManager = db.getDependencyResolver().resolveDependency(NodeManager.class);
+            long opsCount = 0;
+            for (IndexCommand command : commands) {
+                try {
+                    Index<Node> index = indexes.computeIfAbsent(command.index, name -> db.index().existsForNodes(name) ? db.index().forNodes(name) : null);
+                    if (index == null) continue;
+                    Node node = nodeManager.newNodeProxyById(command.node);
+                    current(command, node).apply(index, node);
+                } catch (Exception e) {
+                    log.warn("failed to replay index update " + command, e);
+                }
+                if (++opsCount >= opsRollover) {
+                    tx = rollover(tx, opsCount, 0);
+                    opsCount = 0;
+                }
+            }
+            tx = rollover(tx, opsCount, 0);
+            replay.done();
+            replay = null;
+            return tx;
+        }
+
+        private Transaction rollover(Transaction tx, long opsCount, long millisSinceCommit) {
+            long start = System.currentTimeMillis();
+            tx.success();
+            tx.close();
+            indexes.clear();
+            lastRolloverMillis.set(System.currentTimeMillis() - start);
+            rollovers.incrementAndGet();
+            log.debug("background indexing thread " + id + " doing tx rollover, opscount " + opsCount + ", millis since last rollover " + millisSinceCommit);
+            return db.beginTx();
+        }
+
+        private int apply(List<Batch> batches) {
+            List<IndexCommand> queued = new ArrayList<>();
+            for (Batch batch : batches) queued.addAll(batch.commands);
+            List<IndexCommand> commands = batches.size() == 1 && queued.size() == 1 ? queued : IndexCommand.coalesce(queued);
+            IndexManager indexManager = db.index();
+            NodeManager nodeManager = db.getDependencyResolver().resolveDependency(NodeManager.class);
+            for (IndexCommand command : commands) {
+                try {
+                    Index<Node> index = indexes.computeIfAbsent(command.index, name -> indexManager.existsForNodes(name) ? indexManager.forNodes(name) : null);
+                    if (index != null) command.apply(index, nodeManager.newNodeProxyById(command.node));
+                } catch (Exception e) {
+                    log.warn("failed to apply index update " + command, e);
+                }
+            }
+            pendingOps.addAndGet(-queued.size());
+            appliedOps.addAndGet(commands.size());
+            coalescedOps.addAndGet(queued.size() - commands.size());
+            return commands.size();
+        }
+
+        /**
+         * @return a command that indexes the node's current value of the label and property of the index key, or removes its entries
+         */
+        private IndexCommand current(IndexCommand command, Node node) {
+            String key = command.key;
+            try {
+                // labels may contain dots as well, so try every split of the key
+                for (int dot = key.indexOf('.'); dot >= 0; dot = key.indexOf('.', dot + 1)) {
+                    String label = key.substring(0, dot), property = key.substring(dot + 1);
+                    if (node.hasLabel(Label.label(label)) && node.hasProperty(property)) {
+                        return new IndexCommand(command.index, command.node, IndexCommand.Type.REPLACE, key, node.getProperty(property));
+                    }
+                }
+            } catch (NotFoundException e) {
+                // deleted node
+            }
+            return new IndexCommand(command.index, command.node, IndexCommand.Type.REMOVE, key, null);
+        }
+
+        WorkerStats stats() {
+            return new WorkerStats(id, queue.size(), pendingOps.get(), appliedOps.get(), coalescedOps.get(), rollovers.get(), lagMillis.get(), lastRolloverMillis.get());
+        }
+    }
+
+    public static class WorkerStats {
+        public final long worker;
+        public final long queuedBatches;
+        public final long pendingOps;
+        public final long appliedOps;
+        public final long coalescedOps;
+        public final long rollovers;
+        public final long lagMillis;
+        public final long lastRolloverMillis;
+
+        public WorkerStats(long worker, long queuedBatches, long pendingOps, long appliedOps, long coalescedOps, long rollovers, long lagMillis, long lastRolloverMillis) {
+            this.worker = worker;
+            this.queuedBatches = queuedBatches;
+            this.pendingOps = pendingOps;
+            this.appliedOps = appliedOps;
+            this.coalescedOps = coalescedOps;
+            this.rollovers = rollovers;
+            this.lagMillis = lagMillis;
+            this.lastRolloverMillis = lastRolloverMillis;
+        }
+    }
+}
@@ -1,27 +1,48 @@
 package apoc.index;
 
 import apoc.ApocKernelExtensionFactory;
+import apoc.Pools;
 import apoc.util.Util;
 import org.neo4j.kernel.KernelApi;
 import org.neo4j.procedure.*;
 import apoc.result.WeightedNodeResult;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.WildcardQuery;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.ResourceIterator;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.index.Index;
 import org.neo4j.graphdb.index.IndexHits;
+import org.neo4j.collection.primitive.PrimitiveIntIterator;
 import org.neo4j.index.impl.lucene.legacy.LuceneDataSource;
 import org.neo4j.index.impl.lucene.legacy.LuceneIndexImplementation;
 import org.neo4j.index.lucene.QueryContext;
 import org.neo4j.index.lucene.ValueContext;
+import org.neo4j.kernel.api.LegacyIndexHits;
+import org.neo4j.kernel.api.ReadOperations;
+import org.neo4j.kernel.api.Statement;
+import org.neo4j.kernel.api.StatementConstants;
+import org.neo4j.kernel.api.exceptions.EntityNotFoundException;
+import org.neo4j.kernel.impl.core.NodeManager;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
+import org.neo4j.kernel.impl.store.id.IdGeneratorFactory;
+import org.neo4j.kernel.impl.store.id.IdType;
 import org.neo4j.kernel.impl.util.JobScheduler;
 import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.logging.Log;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -34,11 +55,41 @@ public class FreeTextSearch {
         public final String label;
         public final String property;
         public final long nodeCount;
+        public final double progress;
+        public final long elapsedMillis;
+        public final long etaMillis;
 
-        private IndexStats(String label, String property, long nodeCount) {
+        private IndexStats(String label, String property, long nodeCount, double progress, long elapsedMillis, long etaMillis) {
             this.label = label;
             this.property = property;
             this.nodeCount = nodeCount;
+            this.progress = progress;
+            this.elapsedMillis = elapsedMillis;
+            this.etaMillis = etaMillis;
+        }
+    }
+
+    public static class IndexCheck {
+        public final String index;
+        public final String label;
+        public final String property;
+        public final long nodesChecked;
+        public final long entriesChecked;
+        public final long missing;
+        public final long stale;
+        public final List<Long> missingNodes;
+        public final List<Long> staleNodes;
+
+        private IndexCheck(String index, String label, String property, long nodesChecked, long entriesChecked, List<Long> missingNodes, List<Long> staleNodes, long missing, long stale) {
+            this.index = index;
+            this.label = label;
+            this.property = property;
+            this.nodesChecked = nodesChecked;
+            this.entriesChecked = entriesChecked;
+            this.missing = missing;
+            this.stale = stale;
+            this.missingNodes = missingNodes;
+            this.staleNodes = staleNodes;
         }
     }
 
@@ -47,19 +98,26 @@ public class FreeTextSearch {
      * <p>
      * This will populate the index with all currently matching data. Updates will not be reflected in the index.
      * In order to get updates into the index, the index has to be rebuilt.
+     * <p>
+     * The node id space is split into ranges that are indexed by several threads in parallel, each committing
+     * a transaction every {@code batchSize} indexed nodes. With {@code progressMillis} rows with the share of scanned
+     * node ids and the estimated remaining time are streamed in that interval, before the final rows per label and property.
      *
      * @param index     The name of the index to create.
      * @param structure The labels of nodes to index, and the properties to index for each label.
-     * @return a stream containing a single element that describes the created index.
+     * @param options   The index configuration and the population options {@code workers}, {@code batchSize}, {@code rangeSize} and {@code progressMillis}.
+     * @return a stream containing an element per label and property that describes the created index.
      */
     @Procedure(mode = Mode.SCHEMA)
-    @Description("apoc.index.addAllNodes('name',{label1:['prop1',...],...}, {options}) YIELD type, name, config - create a free text search index")
+    @Description("apoc.index.addAllNodes('name',{label1:['prop1',...],...}, {options}) YIELD label, property, nodeCount, progress, elapsedMillis, etaMillis - create a free text search index")
     public Stream<IndexStats> addAllNodes(@Name("index") String index, @Name("structure") Map<String, List<String>> structure, @Name(value = "options", defaultValue = "" ) Map<String,Object> options  ) {
         if (structure.isEmpty()) {
             throw new IllegalArgumentException("No structure given.");
         }
+        Map<String, Object> config = options == null ? new HashMap<>() : new HashMap<>(options);
+        Population population = new Population(config);
         return async(executor(), "Creating index '" + index + "'", result -> {
-            populate(index(index, structure, options ), structure, result);
+            populate(index(index, structure, config), structure, population, result);
         });
     }
 
@@ -88,29 +146,141 @@ public class FreeTextSearch {
      * Search in the specified index for nodes matching the the given value.
      * <p>
      * Any indexed property is searched.
+     * <p>
+     * The number of results is pushed into the index query, so only the top scored hits are collected, and the
+     * results are streamed without reading the nodes from the store until their properties or labels are used.
+     * <p>
+     * To page through the results pass the weight and node id of the last result of the previous page as
+     * {@code {after:{weight:0.5, id:123}}}.
      *
      * @param index The name of the index to search in.
      * @param query The query specifying what to search for.
-     * @param maxNumberOfresults maximum number of results to be retruned. Defaults to 100. If -1, returns all the results.
+     * @param maxNumberOfresults maximum number of results to be retruned. Defaults to 100. If negative, returns all the results.
+     * @param config optional {@code after} cursor of the previous page.
      * @return a stream of all matching nodes.
      */
     @Procedure(mode = Mode.READ)
-    @Description("apoc.index.search('name', 'query', [maxNumberOfResults]) YIELD node, weight - search for nodes in the free text index matching the given query")
+    @Description("apoc.index.search('name', 'query', [maxNumberOfResults], [{after:{weight,id}}]) YIELD node, weight - search for nodes in the free text index matching the given query")
     public Stream<WeightedNodeResult> search(@Name("index") String index, @Name("query") String query,
-                                             @Name(value="numberOfResults", defaultValue = "100") long maxNumberOfresults) throws Exception {
+                                             @Name(value="numberOfResults", defaultValue = "100") long maxNumberOfresults,
+                                             @Name(value="config", defaultValue = "{}") Map<String, Object> config) throws Exception {
         if (!db.index().existsForNodes(index)) {
             return Stream.empty();
         }
-        QueryContext queryParam = new QueryContext(parseFreeTextQuery(query)).sort(Sort.RELEVANCE);
-        if (maxNumberOfresults!=-1) {
-            queryParam = queryParam.top((int)maxNumberOfresults);
+        // any negative number of results is unlimited
+        if (maxNumberOfresults < 0) maxNumberOfresults = -1;
+        IndexMetrics.Span span = IndexMetrics.span(index);
+        Query luceneQuery = parseFreeTextQuery(query);
+        Object after = config == null ? null : config.get("after");
+        if (!(after instanceof Map)) {
+            return result(search(index, luceneQuery, maxNumberOfresults == -1 ? 0 : (int) Math.min(Integer.MAX_VALUE, maxNumberOfresults)), null, maxNumberOfresults, span);
+        }
+        Map<String, Object> cursor = (Map<String, Object>) after;
+        Double cursorWeight = Util.toDouble(cursor.get("weight"));
+        Long id = Util.toLong(cursor.get("id"));
+        if (cursorWeight == null || id == null) {
+            throw new IllegalArgumentException("The after cursor needs the weight and id of the last result, got " + cursor);
+        }
+        float weight = cursorWeight.floatValue();
+        // the index API has no searchAfter, so the top hits up to the cursor are collected and skipped without loading their nodes.
+        // Hits are ordered by descending score, if the cursor's node doesn't match anymore the page starts with all hits of its score
+        int top = maxNumberOfresults == -1 ? 0 : (int) Math.min(Integer.MAX_VALUE, Math.max(1, maxNumberOfresults) * 2);
+        while (true) {
+            LegacyIndexHits hits = search(index, luceneQuery, top);
+            boolean truncated = top > 0 && hits.size() >= top;
+            int read = 0;
+            List<ScoredHit> pending = new ArrayList<>();
+            boolean passed = false;
+            while (hits.hasNext()) {
+                long node = hits.next();
+                float score = hits.currentScore();
+                read++;
+                if (score > weight) continue;
+                if (score == weight) {
+                    // hits with the cursor's score up to its node were on the previous page
+                    if (node == id) pending.clear();
+                    else pending.add(new ScoredHit(node, score));
+                    continue;
+                }
+                pending.add(new ScoredHit(node, score));
+                passed = true;
+                break;
+            }
+            int remaining = truncated ? top - read + pending.size() : Integer.MAX_VALUE;
+            if (!truncated || (passed && remaining >= maxNumberOfresults)) {
+                return result(hits, pending, maxNumberOfresults, span);
+            }
+            hits.close();
+            top = (int) Math.min(Integer.MAX_VALUE, Math.max(top * 4L, read + maxNumberOfresults));
         }
-        List<WeightedNodeResult> hits = KernelApi.toWeightedNodeResultFromLegacyIndex(KernelApi.nodeQueryIndex(index, queryParam, db), db);
+    }
 
-        return hits.stream();
+    /**
+     * Metrics of the background threads that apply index updates if apoc.autoIndex.async is enabled.
+     *
+     * @return a stream with one element per background thread.
+     */
+    @Procedure(mode = Mode.READ)
+    @Description("apoc.index.autoUpdateStats() YIELD worker, queuedBatches, pendingOps, appliedOps, coalescedOps, rollovers, lagMillis, lastRolloverMillis - metrics of the async index update threads")
+    public Stream<AsyncIndexUpdater.WorkerStats> autoUpdateStats() {
+        ApocKernelExtensionFactory.ApocLifecycle apocLifecycle = db.getDependencyResolver().resolveDependency(ApocKernelExtensionFactory.ApocLifecycle.class);
+        if (apocLifecycle == null || apocLifecycle.getIndexUpdateLifeCycle() == null) return Stream.empty();
+        return apocLifecycle.getIndexUpdateLifeCycle().stats();
     }
 
 
+    /**
+     * Compares a sample of the nodes with the label and property against the entries of the index for them.
+     * <p>
+     * A node is missing if it has no entry with its current value, an entry is stale if its node was deleted,
+     * lost the label or property.
+     *
+     * @param sampleSize the number of nodes and the number of index entries to check.
+     * @return a stream containing a single element with the counts and up to 100 ids of missing and stale nodes.
+     */
+    @Procedure(mode = Mode.READ)
+    @Description("apoc.index.check('name','Label','prop',[sampleSize=1000]) YIELD nodesChecked, entriesChecked, missing, stale, missingNodes, staleNodes - compare a sample of nodes against a free text index")
+    public Stream<IndexCheck> check(@Name("index") String index, @Name("label") String label, @Name("property") String property,
+                                    @Name(value = "sampleSize", defaultValue = "1000") long sampleSize) {
+        if (!db.index().existsForNodes(index)) {
+            throw new IllegalArgumentException("No index named '" + index + "'");
+        }
+        Index<Node> nodeIndex = db.index().forNodes(index);
+        String key = label + "." + property;
+        List<Long> missingNodes = new ArrayList<>(), staleNodes = new ArrayList<>();
+        long nodesChecked = 0, missing = 0;
+        try (ResourceIterator<Node> nodes = db.findNodes(Label.label(label))) {
+            while (nodes.hasNext() && nodesChecked < sampleSize) {
+                Node node = nodes.next();
+                Object value = node.getProperty(property, null);
+                if (value == null) continue;
+                nodesChecked++;
+                if (!indexed(nodeIndex, node, key, value)) {
+                    missing++;
+                    if (missingNodes.size() < MAX_REPORTED) missingNodes.add(node.getId());
+                }
+            }
+        }
+        long entriesChecked = 0, stale = 0;
+        try (IndexHits<Node> hits = nodeIndex.query(new WildcardQuery(new Term(key, "*")))) {
+            while (hits.hasNext() && entriesChecked < sampleSize) {
+                Node node = hits.next();
+                entriesChecked++;
+                boolean current;
+                try {
+                    current = node.hasLabel(Label.label(label)) && node.hasProperty(property);
+                } catch (NotFoundException e) {
+                    current = false;
+                }
+                if (!current) {
+                    stale++;
+                    if (staleNodes.size() < MAX_REPORTED) staleNodes.add(node.getId());
+                }
+            }
+        }
+        return Stream.of(new IndexCheck(index, label, property, nodesChecked, entriesChecked, missingNodes, staleNodes, missing, stale));
+    }
+
     @Context
     public GraphDatabaseAPI db;
 
@@ -124,6 +294,91 @@ public class FreeTextSearch {
     private static final JobScheduler.Group GROUP = new JobScheduler.Group(
             FreeTextSearch.class.getSimpleName(), JobScheduler.SchedulingStrategy.POOLED);
 
+    // ids of missing and stale nodes reported by check
+    private static final int MAX_REPORTED = 100;
+
+    /**
+     * Numbers are indexed numerically by {@link #populate} and as their string by the auto update, so both forms are looked up.
+     */
+    private static boolean indexed(Index<Node> index, Node node, String key, Object value) {
+        if (contains(index.get(key, value), node)) return true;
+        return value instanceof Number && contains(index.get(key, ValueContext.numeric(((Number) value).doubleValue())), node);
+    }
+
+    private static boolean contains(IndexHits<Node> hits, Node node) {
+        try {
+            while (hits.hasNext()) {
+                if (hits.next().getId() == node.getId()) return true;
+            }
+            return false;
+        } finally {
+            hits.close();
+        }
+    }
+
+    private LegacyIndexHits search(String index, Query query, int top) throws Exception {
+        QueryContext queryParam = new QueryContext(query).sort(Sort.RELEVANCE);
+        if (top > 0) {
+            queryParam = queryParam.top(top);
+        }
+        return KernelApi.nodeQueryIndex(index, queryParam, db);
+    }
+
+    private static class ScoredHit {
+        final long id;
+        final float score;
+
+        ScoredHit(long id, float score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+
+    /**
+     * Streams the hits as lazy node proxies, which are only read from the store if used.
+     *
+     * @param pending hits that were already read from the hits and come first, or null
+     * @param span of the query, only the reads of the hits are added to it
+     */
+    private Stream<WeightedNodeResult> result(LegacyIndexHits hits, List<ScoredHit> pending, long limit, IndexMetrics.Span span) {
+        NodeManager nodeManager = db.getDependencyResolver().resolveDependency(NodeManager.class);
+        span.pause();
+        Iterator<WeightedNodeResult> it = new Iterator<WeightedNodeResult>() {
+            int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                span.resume();
+                try {
+                    return (pending != null && next < pending.size()) || hits.hasNext();
+                } finally {
+                    span.pause();
+                }
+            }
+
+            @Override
+            public WeightedNodeResult next() {
+                span.resume();
+                try {
+                    if (pending != null && next < pending.size()) {
+                        ScoredHit hit = pending.get(next++);
+                        return new WeightedNodeResult(nodeManager.newNodeProxyById(hit.id), hit.score);
+                    }
+                    long id = hits.next();
+                    return new WeightedNodeResult(nodeManager.newNodeProxyById(id), hits.currentScore());
+                } finally {
+                    span.pause();
+                }
+            }
+        };
+        Stream<WeightedNodeResult> stream = StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED), false)
+                .onClose(() -> {
+                    hits.close();
+                    span.record();
+                });
+        return limit == -1 ? stream : stream.limit(limit);
+    }
+
     private static Stream<WeightedNodeResult> result(IndexHits<Node> hits) {
         return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new Iterator<WeightedNodeResult>() {
             @Override
@@ -140,43 +395,145 @@ public class FreeTextSearch {
         }, 0), false);
     }
 
-    private void populate(Index<Node> index, Map<String, List<String>> config, Consumer<IndexStats> result) {
-        Map<String, String[]> structure = convertStructure(config);
+    /**
+     * Settings and shared state of an index population, the settings are removed from the index configuration.
+     */
+    private static class Population {
+        final int workers, batchSize;
+        final long rangeSize, progressMillis;
+        final AtomicLong nextId = new AtomicLong(), scannedIds = new AtomicLong(), indexedNodes = new AtomicLong();
+        String index;
+        Map<Integer, String> labels;
+        Map<String, String[]> structure;
+        long highId;
+
+        Population(Map<String, Object> options) {
+            this.workers = (int) Math.max(1, option(options, "workers", Runtime.getRuntime().availableProcessors()));
+            this.batchSize = (int) Math.max(1, option(options, "batchSize", 50_000));
+            this.rangeSize = Math.max(1, option(options, "rangeSize", 100_000));
+            this.progressMillis = option(options, "progressMillis", 0);
+        }
+
+        private static long option(Map<String, Object> options, String key, long defaultValue) {
+            Long value = Util.toLong(options.remove(key));
+            return value == null ? defaultValue : value;
+        }
+
+        IndexStats progress(long start) {
+            long elapsed = System.currentTimeMillis() - start, scanned = scannedIds.get();
+            double progress = highId == 0 ? 1 : Math.min(1, (double) scanned / highId);
+            long eta = scanned == 0 ? -1 : (long) (elapsed * (highId - scanned) / (double) scanned);
+            return new IndexStats(null, null, indexedNodes.get(), progress, elapsed, Math.max(0, eta));
+        }
+    }
+
+    private void populate(Index<Node> index, Map<String, List<String>> config, Population population, Consumer<IndexStats> result) {
+        long start = System.currentTimeMillis();
+        population.index = index.getName();
+        population.structure = convertStructure(config);
+        population.labels = new HashMap<>();
+        try (Transaction tx = db.beginTx();
+             Statement statement = db.getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class).get()) {
+            ReadOperations ops = statement.readOperations();
+            for (String label : population.structure.keySet()) {
+                int id = ops.labelGetForName(label);
+                if (id != StatementConstants.NO_SUCH_LABEL) population.labels.put(id, label);
+            }
+            tx.success();
+        }
+        population.highId = db.getDependencyResolver().resolveDependency(IdGeneratorFactory.class).get(IdType.NODE).getHighId();
+        List<Future<Map<LabelProperty, Counter>>> futures = new ArrayList<>(population.workers);
+        for (int i = 0; i < population.workers; i++) {
+            futures.add(Pools.DEFAULT.submit(() -> populateRanges(population)));
+        }
         Map<LabelProperty, Counter> stats = new HashMap<>();
-        Transaction tx = db.beginTx();
         try {
-            int batch = 0;
-            for (Node node : db.getAllNodes()) {
-                boolean indexed = false;
-                for (Label label : node.getLabels()) {
-                    String[] keys = structure.get(label.name());
-                    if (keys == null) continue;
-                    indexed = true;
-                    Map<String, Object> properties = keys.length == 0 ? node.getAllProperties() : node.getProperties(keys);
-                    for (Map.Entry<String, Object> entry : properties.entrySet()) {
-                        Object value = entry.getValue();
-                        index.add(node, KEY, value.toString());
-                        if (value instanceof Number) {
-                            value = ValueContext.numeric(((Number) value).doubleValue());
-                        }
-                        index.add(node, label.name() + "." + entry.getKey(), value);
-                        stats.computeIfAbsent(new LabelProperty(label.name(), entry.getKey()), x -> new Counter()).count++;
+            for (Future<Map<LabelProperty, Counter>> future : futures) {
+                Map<LabelProperty, Counter> workerStats = null;
+                while (workerStats == null) {
+                    try {
+                        workerStats = population.progressMillis > 0 ? future.get(population.progressMillis, TimeUnit.MILLISECONDS) : future.get();
+                    } catch (TimeoutException e) {
+                        result.accept(population.progress(start));
                     }
                 }
-                if (indexed) {
-                    if (++batch == 50_000) {
+                workerStats.forEach((key, counter) -> stats.computeIfAbsent(key, x -> new Counter()).count += counter.count);
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw new RuntimeException("Error populating index '" + index.getName() + "'", e);
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        stats.forEach((key,counter) -> result.accept(key.stats(counter, elapsed)));
+    }
+
+    /**
+     * Indexes the nodes of the next free id range until all are taken, every indexing transaction holds at most batchSize nodes.
+     */
+    private Map<LabelProperty, Counter> populateRanges(Population population) {
+        Map<LabelProperty, Counter> stats = new HashMap<>();
+        ThreadToStatementContextBridge bridge = db.getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class);
+        long start;
+        while ((start = population.nextId.getAndAdd(population.rangeSize)) < population.highId) {
+            long end = Math.min(population.highId, start + population.rangeSize);
+            Transaction tx = db.beginTx();
+            try {
+                Index<Node> index = db.index().forNodes(population.index);
+                int batch = 0;
+                for (long id = start; id < end; id++) {
+                    List<String> labels = labels(bridge, population.labels, id);
+                    if (labels == null) continue;
+                    Node node = db.getNodeById(id);
+                    for (String label : labels) {
+                        String[] keys = population.structure.get(label);
+                        Map<String, Object> properties = keys.length == 0 ? node.getAllProperties() : node.getProperties(keys);
+                        for (Map.Entry<String, Object> entry : properties.entrySet()) {
+                            Object value = entry.getValue();
+                            index.add(node, KEY, value.toString());
+                            if (value instanceof Number) {
+                                value = ValueContext.numeric(((Number) value).doubleValue());
+                            }
+                            index.add(node, label + "." + entry.getKey(), value);
+                            stats.computeIfAbsent(new LabelProperty(label, entry.getKey()), x -> new Counter()).count++;
+                        }
+                    }
+                    population.indexedNodes.incrementAndGet();
+                    if (++batch == population.batchSize) {
                         batch = 0;
                         tx.success();
                         tx.close();
                         tx = db.beginTx();
+                        index = db.index().forNodes(population.index);
                     }
                 }
+                tx.success();
+            } finally {
+                tx.close();
             }
-            tx.success();
-        } finally {
-            tx.close();
+            population.scannedIds.addAndGet(end - start);
+        }
+        return stats;
+    }
+
+    /**
+     * @return the names of the node's labels that are part of the index structure, null if there are none or the node doesn't exist
+     */
+    private static List<String> labels(ThreadToStatementContextBridge bridge, Map<Integer, String> structureLabels, long id) {
+        try (Statement statement = bridge.get()) {
+            ReadOperations ops = statement.readOperations();
+            if (!ops.nodeExists(id)) return null;
+            List<String> labels = null;
+            PrimitiveIntIterator it = ops.nodeGetLabels(id);
+            while (it.hasNext()) {
+                String label = structureLabels.get(it.next());
+                if (label == null) continue;
+                if (labels == null) labels = new ArrayList<>(2);
+                labels.add(label);
+            }
+            return labels;
+        } catch (EntityNotFoundException e) {
+            return null;
         }
-        stats.forEach((key,counter) -> result.accept(key.stats(counter)));
     }
 
     private Map<String, String[]> convertStructure(Map<String, List<String>> config) {
@@ -286,8 +643,8 @@ public class FreeTextSearch {
             return Objects.hash(label, property);
         }
 
-        IndexStats stats(Counter counter) {
-            return new IndexStats(label, property, counter.count);
+        IndexStats stats(Counter counter, long elapsedMillis) {
+            return new IndexStats(label, property, counter.count, 1, elapsedMillis, 0);
         }
     }
 
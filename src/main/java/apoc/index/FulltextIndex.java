@@ -5,20 +5,25 @@ import apoc.monitor.Kernel;
 import apoc.result.WeightedNodeResult;
 import apoc.result.WeightedRelationshipResult;
 import apoc.util.Util;
+import org.apache.lucene.search.Sort;
 import org.neo4j.graphdb.*;
 import org.neo4j.graphdb.index.Index;
 import org.neo4j.graphdb.index.IndexHits;
 import org.neo4j.graphdb.index.IndexManager;
 import org.neo4j.graphdb.index.RelationshipIndex;
 import org.neo4j.index.impl.lucene.legacy.LuceneIndexImplementation;
+import org.neo4j.index.lucene.QueryContext;
 import org.neo4j.kernel.KernelApi;
 import org.neo4j.kernel.api.LegacyIndexHits;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.*;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -42,11 +47,19 @@ public class FulltextIndex {
     @Procedure(mode = Mode.READ)
     public Stream<WeightedNodeResult> nodes(@Name("label") String label, @Name("query") String query) throws Exception {
         if (!db.index().existsForNodes(label)) return Stream.empty();
+        IndexMetrics.Span span = IndexMetrics.span(label);
         List<WeightedNodeResult> hits = KernelApi.toWeightedNodeResultFromLegacyIndex(KernelApi.nodeQueryIndex(label, query,db), db);
+        span.record();
 
         return hits.stream();
     }
 
+    @Description("apoc.index.latency() YIELD index, count, meanMicros, p50Micros, p90Micros, p99Micros, maxMicros - query latency histograms of the manual indexes since startup")
+    @Procedure(mode = Mode.READ)
+    public Stream<IndexMetrics.IndexLatency> latency() {
+        return IndexMetrics.stats();
+    }
+
     public static class IndexInfo {
         public final String type;
         public final String name;
@@ -137,45 +150,98 @@ public class FulltextIndex {
     @Procedure(mode = Mode.READ)
     public Stream<WeightedRelationshipResult> relationships(@Name("type") String type, @Name("query") String query) throws Exception {
         if (!db.index().existsForRelationships(type)) return Stream.empty();
-        return KernelApi.toWeightedRelationshipResultFromLegacyIndex(KernelApi.relationshipQueryIndex(type, query, db, null, null), db).stream();
+        IndexMetrics.Span span = IndexMetrics.span(type);
+        List<WeightedRelationshipResult> hits = KernelApi.toWeightedRelationshipResultFromLegacyIndex(KernelApi.relationshipQueryIndex(type, query, db, null, null), db);
+        span.record();
+        return hits.stream();
     }
 
     // CALL apoc.index.between(joe, 'KNOWS', null, 'since:2010-*')
-    // CALL apoc.index.between(joe, 'CHECKIN', philz, 'on:2016-01-*')
-    @Description("apoc.index.between(node1,'TYPE',node2,'prop:value*') YIELD rel - lucene query on relationship index with the given type name bound by either or both sides (each node parameter can be null)")
+    // CALL apoc.index.between(joe, 'CHECKIN', philz, 'on:2016-01-*', {limit:10})
+    @Description("apoc.index.between(node1,'TYPE',node2,'prop:value*',[{limit:-1}]) YIELD rel - lucene query on relationship index with the given type name bound by either or both sides (each node parameter can be null)")
     @Procedure(mode = Mode.READ)
-    public Stream<WeightedRelationshipResult> between(@Name("from") Node from, @Name("type") String type, @Name("to") Node to, @Name("query") String query) throws Exception {
+    public Stream<WeightedRelationshipResult> between(@Name("from") Node from, @Name("type") String type, @Name("to") Node to, @Name("query") String query,
+                                                      @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws Exception {
         if (!db.index().existsForRelationships(type)) return Stream.empty();
-
-        return KernelApi.toWeightedRelationshipResultFromLegacyIndex(KernelApi.relationshipQueryIndex(type, query, db,  from.getId(), to.getId()),db).stream();
+        IndexMetrics.Span span = IndexMetrics.span(type);
+        LegacyIndexHits hits = KernelApi.relationshipQueryIndex(type, relationshipQuery(query, config), db, id(from), id(to));
+        return stream(hits, span).map(hit -> new WeightedRelationshipResult(db.getRelationshipById(hit.id), hit.weight));
     }
 
     @Procedure(mode = Mode.READ)
-    @Description("out(node,'TYPE','prop:value*') YIELD node - lucene query on relationship index with the given type name for *outgoing* relationship of the given node, *returns end-nodes*")
-    public Stream<WeightedNodeResult> out(@Name("from") Node from, @Name("type") String type, @Name("query") String query) throws Exception {
+    @Description("apoc.index.out(node,'TYPE','prop:value*',[{limit:-1}]) YIELD node - lucene query on relationship index with the given type name for *outgoing* relationship of the given node, *returns end-nodes*")
+    public Stream<WeightedNodeResult> out(@Name("from") Node from, @Name("type") String type, @Name("query") String query,
+                                          @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws Exception {
         if (!db.index().existsForRelationships(type)) return Stream.empty();
-        LegacyIndexHits legacyIndexHits = KernelApi.relationshipQueryIndex(type, query, db, from.getId(), null);
-        List<WeightedNodeResult> results = new ArrayList<>(legacyIndexHits.size());
-        while (legacyIndexHits.hasNext()) {
-            results.add(new WeightedNodeResult(KernelApi.getEndNode(db, legacyIndexHits.next()), legacyIndexHits.currentScore()));
-        }
-
-        return results.stream();
+        IndexMetrics.Span span = IndexMetrics.span(type);
+        LegacyIndexHits hits = KernelApi.relationshipQueryIndex(type, relationshipQuery(query, config), db, from.getId(), null);
+        return stream(hits, span).map(hit -> new WeightedNodeResult(KernelApi.getEndNode(db, hit.id), hit.weight));
     }
 
     // CALL apoc.index.in(philz, 'CHECKIN', 'on:2010-*')
     @Procedure(mode = Mode.READ)
-    @Description("apoc.index.in(node,'TYPE','prop:value*') YIELD node lucene query on relationship index with the given type name for *incoming* relationship of the given node, *returns start-nodes*")
-    public Stream<WeightedNodeResult> in(@Name("to") Node to, @Name("type") String type, @Name("query") String query) throws Exception {
+    @Description("apoc.index.in(node,'TYPE','prop:value*',[{limit:-1}]) YIELD node lucene query on relationship index with the given type name for *incoming* relationship of the given node, *returns start-nodes*")
+    public Stream<WeightedNodeResult> in(@Name("to") Node to, @Name("type") String type, @Name("query") String query,
+                                         @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws Exception {
         if (!db.index().existsForRelationships(type)) return Stream.empty();
+        IndexMetrics.Span span = IndexMetrics.span(type);
+        LegacyIndexHits hits = KernelApi.relationshipQueryIndex(type, relationshipQuery(query, config), db, null, to.getId());
+        return stream(hits, span).map(hit -> new WeightedNodeResult(KernelApi.getStartNode(db, hit.id), hit.weight));
+    }
+
+    private static Long id(Node node) {
+        return node == null ? null : node.getId();
+    }
 
-        LegacyIndexHits legacyIndexHits = KernelApi.relationshipQueryIndex(type, query, db, null, to.getId());
-        List<WeightedNodeResult> results = new ArrayList<>(legacyIndexHits.size());
-        while (legacyIndexHits.hasNext()) {
-            results.add(new WeightedNodeResult(db.getNodeById(legacyIndexHits.next()), legacyIndexHits.currentScore()));
+    /**
+     * The index adds the start and end node constraints to the lucene query itself, so with a limit only
+     * the best scored relationships of the given nodes are collected.
+     */
+    private static Object relationshipQuery(String query, Map<String, Object> config) {
+        Long limit = config == null ? null : Util.toLong(config.get("limit"));
+        if (limit == null || limit <= 0) return query;
+        return new QueryContext(query).sort(Sort.RELEVANCE).top((int) Math.min(Integer.MAX_VALUE, limit));
+    }
+
+    private static class Hit {
+        final long id;
+        final double weight;
+
+        Hit(long id, double weight) {
+            this.id = id;
+            this.weight = weight;
         }
+    }
 
-        return results.stream();
+    private static Stream<Hit> stream(LegacyIndexHits hits, IndexMetrics.Span span) {
+        span.pause();
+        Iterator<Hit> it = new Iterator<Hit>() {
+            @Override
+            public boolean hasNext() {
+                span.resume();
+                try {
+                    return hits.hasNext();
+                } finally {
+                    span.pause();
+                }
+            }
+
+            @Override
+            public Hit next() {
+                span.resume();
+                try {
+                    long id = hits.next();
+                    return new Hit(id, hits.currentScore());
+                } finally {
+                    span.pause();
+                }
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED), false)
+                .onClose(() -> {
+                    hits.close();
+                    span.record();
+                });
     }
 
     // CALL apoc.index.addNode(joe, ['name','age','city'])
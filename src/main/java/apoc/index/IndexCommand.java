@@ -0,0 +1,102 @@
+package apoc.index;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.index.Index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A pending update of a node's entries in a manual index, for the indexed key and the combined {@link FreeTextSearch#KEY} field.
+ * Commands only hold ids and names, so they can be queued and applied in another transaction.
+ */
+public class IndexCommand {
+    public enum Type {
+        /** add the value */
+        ADD,
+        /** remove the node's entries and add the value */
+        REPLACE,
+        /** remove the node's entries */
+        REMOVE
+    }
+
+    public final String index;
+    public final long node;
+    public final Type type;
+    public final String key;
+    public final Object value;
+
+    public IndexCommand(String index, long node, Type type, String key, Object value) {
+        this.index = index;
+        this.node = node;
+        this.type = type;
+        this.key = key;
+        this.value = value;
+    }
+
+    public void apply(Index<Node> index, Node node) {
+        if (type != Type.ADD) {
+            index.remove(node, key);
+            index.remove(node, FreeTextSearch.KEY);
+        }
+        if (type != Type.REMOVE) {
+            index.add(node, key, value);
+            index.add(node, FreeTextSearch.KEY, value);
+        }
+    }
+
+    /**
+     * Drops the commands whose entries are removed again by a later command for the same index, node and key.
+     * The remaining commands keep their submission order, removals also clear the {@link FreeTextSearch#KEY} field shared by all keys of the node,
+     * so commands for different keys of a node can't be merged or reordered.
+     */
+    public static List<IndexCommand> coalesce(Collection<IndexCommand> commands) {
+        List<IndexCommand> all = new ArrayList<>(commands);
+        List<IndexCommand> result = new ArrayList<>(all.size());
+        Set<Target> removedLater = new HashSet<>();
+        for (int i = all.size() - 1; i >= 0; i--) {
+            IndexCommand command = all.get(i);
+            Target target = new Target(command.index, command.node, command.key);
+            if (removedLater.contains(target)) continue;
+            if (command.type != Type.ADD) removedLater.add(target);
+            result.add(command);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    private static class Target {
+        final String index;
+        final long node;
+        final String key;
+
+        Target(String index, long node, String key) {
+            this.index = index;
+            this.node = node;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Target)) return false;
+            Target target = (Target) o;
+            return node == target.node && index.equals(target.index) && key.equals(target.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(index, node, key);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + index + " " + node + " " + key + (type == Type.REMOVE ? "" : "=" + value);
+    }
+}
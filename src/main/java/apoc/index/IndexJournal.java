@@ -0,0 +1,165 @@
+package apoc.index;
+
+import apoc.cache.BinaryCodec;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Append-only journal of the index commands of one async index worker that are not committed to the index yet.
+ * Every record holds the commands of one transaction batch as [length][crc32][payload], the payload only keeps index,
+ * node, type and key of the commands, on replay the values are read from the graph again.
+ * Records are positioned by a logical offset that keeps growing. Batches can be queued in another order than they were
+ * appended, so the journal tracks the records that are not committed to the index yet. After the worker committed its
+ * index transaction the records before the first uncommitted one are dropped: the file is truncated if nothing else was
+ * appended, otherwise the remaining records are written to a new file that atomically replaces it.
+ */
+public class IndexJournal implements Closeable {
+    static final String PREFIX = "apoc-autoindex-", SUFFIX = ".journal", REPLAY = ".replay";
+    private static final int HEADER = 8;
+
+    private final File file;
+    private final boolean force;
+    // only held while writing to or rewriting the file, never while a batch is queued
+    private final ReentrantLock lock = new ReentrantLock();
+    private FileChannel channel;
+    // logical offset of the start of the file
+    private long base;
+    // logical start offsets of the records that are not committed to the index yet, by their end offsets
+    private final TreeMap<Long, Long> uncommitted = new TreeMap<>();
+
+    /**
+     * @param force sync every record to the disk, otherwise records survive a crash of the process but not of the machine
+     */
+    public IndexJournal(File file, boolean force) throws IOException {
+        this.file = file;
+        this.force = force;
+        this.channel = FileChannel.open(file.toPath(), CREATE, WRITE, TRUNCATE_EXISTING);
+    }
+
+    static File file(File directory, int worker) {
+        return new File(directory, PREFIX + worker + SUFFIX);
+    }
+
+    /**
+     * @return the logical offset after the record, which identifies it in {@link #checkpoint(long...)}
+     */
+    public long append(List<IndexCommand> commands) throws IOException {
+        List<Object> records = new ArrayList<>(commands.size());
+        for (IndexCommand command : commands) {
+            records.add(Arrays.asList(command.index, command.node, (long) command.type.ordinal(), command.key));
+        }
+        ByteBuffer payload = BinaryCodec.encode(records);
+        CRC32 crc = new CRC32();
+        crc.update(payload.array(), 0, payload.limit());
+        ByteBuffer header = ByteBuffer.allocate(HEADER).putInt(payload.limit()).putInt((int) crc.getValue());
+        header.flip();
+        ByteBuffer[] buffers = {header, payload};
+        lock.lock();
+        try {
+            long start = base + channel.position();
+            while (payload.hasRemaining()) channel.write(buffers);
+            if (force) channel.force(false);
+            long end = base + channel.position();
+            uncommitted.put(end, start);
+            return end;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks the records as committed to the index and drops all records before the first uncommitted one.
+     * @param ends logical offsets returned by {@link #append(List)} for the committed records
+     */
+    public void checkpoint(long... ends) throws IOException {
+        lock.lock();
+        try {
+            for (long end : ends) uncommitted.remove(end);
+            long safe = uncommitted.isEmpty() ? base + channel.position() : uncommitted.firstEntry().getValue();
+            long applied = safe - base;
+            if (applied <= 0) return;
+            long size = channel.size();
+            if (applied >= size) {
+                channel.truncate(0);
+                channel.position(0);
+            } else {
+                File tmp = new File(file.getPath() + ".tmp");
+                try (FileChannel out = FileChannel.open(tmp.toPath(), CREATE, WRITE, TRUNCATE_EXISTING)) {
+                    long position = applied;
+                    while (position < size) position += channel.transferTo(position, size - position, out);
+                    out.force(false);
+                }
+                channel.close();
+                Files.move(tmp.toPath(), file.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+                channel = FileChannel.open(file.toPath(), WRITE);
+                channel.position(channel.size());
+            }
+            base = safe;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads the commands of all complete records, a torn or corrupt record at the end of the file ends the journal.
+     * The command values are null.
+     */
+    @SuppressWarnings("unchecked")
+    static List<IndexCommand> read(File file) throws IOException {
+        List<IndexCommand> commands = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            while (true) {
+                header.clear();
+                if (!readFully(channel, header)) break;
+                int length = header.getInt(0);
+                long checksum = header.getInt(4) & 0xFFFFFFFFL;
+                if (length <= 0 || length > channel.size() - channel.position()) break;
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                if (!readFully(channel, payload)) break;
+                CRC32 crc = new CRC32();
+                crc.update(payload.array(), 0, length);
+                if (crc.getValue() != checksum) break;
+                payload.flip();
+                for (Object record : (List<Object>) BinaryCodec.decode(payload)) {
+                    List<Object> fields = (List<Object>) record;
+                    commands.add(new IndexCommand((String) fields.get(0), (Long) fields.get(1),
+                            IndexCommand.Type.values()[((Long) fields.get(2)).intValue()], (String) fields.get(3), null));
+                }
+            }
+        }
+        return commands;
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) return false;
+        }
+        return true;
+    }
+}
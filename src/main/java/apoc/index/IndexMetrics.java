@@ -0,0 +1,124 @@
+package apoc.index;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Latency histograms of the queries against manual indexes, one per index name, see {@link Span} for what is measured.
+ * Latencies are counted in power of two microsecond buckets, so percentiles are reported as the upper bound of their bucket.
+ */
+public class IndexMetrics {
+    private static final Map<String, Histogram> HISTOGRAMS = new ConcurrentHashMap<>();
+
+    public static class IndexLatency {
+        public final String index;
+        public final long count;
+        public final double meanMicros;
+        public final long p50Micros;
+        public final long p90Micros;
+        public final long p99Micros;
+        public final long maxMicros;
+
+        public IndexLatency(String index, long count, double meanMicros, long p50Micros, long p90Micros, long p99Micros, long maxMicros) {
+            this.index = index;
+            this.count = count;
+            this.meanMicros = meanMicros;
+            this.p50Micros = p50Micros;
+            this.p90Micros = p90Micros;
+            this.p99Micros = p99Micros;
+            this.maxMicros = maxMicros;
+        }
+    }
+
+    /**
+     * @return a running span for a query against the index
+     */
+    public static Span span(String index) {
+        return new Span(index);
+    }
+
+    /**
+     * The time a query spends in the index, from running the query to reading its last hit.
+     * Hits that are streamed to the caller are read between {@link #resume()} and {@link #pause()},
+     * so the time the consumer spends between two hits is not counted, like for hits that are read all at once.
+     * A span is used by one thread at a time.
+     */
+    public static class Span {
+        private final String index;
+        private long nanos, resumed = System.nanoTime();
+        private boolean running = true, recorded;
+
+        Span(String index) {
+            this.index = index;
+        }
+
+        public void resume() {
+            if (running) return;
+            resumed = System.nanoTime();
+            running = true;
+        }
+
+        public void pause() {
+            if (!running) return;
+            nanos += System.nanoTime() - resumed;
+            running = false;
+        }
+
+        /**
+         * Adds the span to the latencies of its index, only the first call is recorded.
+         */
+        public void record() {
+            if (recorded) return;
+            pause();
+            recorded = true;
+            HISTOGRAMS.computeIfAbsent(index, name -> new Histogram()).record(nanos / 1000);
+        }
+    }
+
+    public static Stream<IndexLatency> stats() {
+        return HISTOGRAMS.entrySet().stream().map(entry -> entry.getValue().stats(entry.getKey()));
+    }
+
+    public static void clear() {
+        HISTOGRAMS.clear();
+    }
+
+    static class Histogram {
+        // bucket i counts latencies up to 2^i micros
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+        private final LongAdder count = new LongAdder(), totalMicros = new LongAdder();
+        private final AtomicLong maxMicros = new AtomicLong();
+
+        void record(long micros) {
+            micros = Math.max(0, micros);
+            buckets.incrementAndGet(bucket(micros));
+            count.increment();
+            totalMicros.add(micros);
+            maxMicros.accumulateAndGet(micros, Math::max);
+        }
+
+        static int bucket(long micros) {
+            return micros <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(micros - 1);
+        }
+
+        long percentile(double percentile, long total) {
+            long rank = (long) Math.ceil(percentile * total), seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) return Math.min(1L << i, maxMicros.get());
+            }
+            return maxMicros.get();
+        }
+
+        IndexLatency stats(String index) {
+            long total = count.sum();
+            if (total == 0) return new IndexLatency(index, 0, 0, 0, 0, 0, 0);
+            return new IndexLatency(index, total, (double) totalMicros.sum() / total,
+                    percentile(0.5, total), percentile(0.9, total), percentile(0.99, total), maxMicros.get());
+        }
+    }
+}
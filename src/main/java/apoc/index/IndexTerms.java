@@ -0,0 +1,211 @@
+package apoc.index;
+
+import apoc.Pools;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.NumericUtils;
+import org.apache.lucene.util.StringHelper;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Distinct values of a schema index and the number of documents holding them, read from the terms dictionaries of its partitions.
+ * Each partition is read in chunks of terms on the default pool, the next chunk is read while the current one is consumed,
+ * so only a few chunks are held in memory and no pool thread waits for the consumer.
+ * The sorted terms of the partitions are merged and the counts of equal terms are summed.
+ * Numbers are indexed as prefix coded sortable longs of their double values, only the full precision terms are decoded,
+ * integral values that a double represents exactly are returned as longs.
+ * Counts are document frequencies, they include deleted documents until their segments are merged.
+ */
+public class IndexTerms implements Iterator<IndexTerms.TermCount>, AutoCloseable {
+    static final String[] FIELDS = {"number", "string", "bool"};
+    private static final int NUMBER = 0, STRING = 1, CHUNK = 1024;
+    // largest magnitude up to which doubles represent every long
+    private static final double MAX_EXACT_LONG = 1L << 53;
+
+    private final Partition[] partitions;
+    private final long minCount, limit;
+    private boolean started;
+    private long returned;
+    private TermCount next;
+
+    /**
+     * @param prefix only string values starting with it are returned, null for all values
+     */
+    public IndexTerms(List<IndexReader> readers, String prefix, long minCount, long limit) {
+        this.minCount = minCount;
+        this.limit = limit;
+        BytesRef prefixTerm = prefix == null ? null : new BytesRef(prefix);
+        this.partitions = new Partition[readers.size()];
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = new Partition(readers.get(i), prefixTerm);
+        }
+    }
+
+    public static class TermCount implements Comparable<TermCount> {
+        public final int field;
+        public final BytesRef term;
+        public final long count;
+
+        TermCount(int field, BytesRef term, long count) {
+            this.field = field;
+            this.term = term;
+            this.count = count;
+        }
+
+        public Object value() {
+            switch (field) {
+                case NUMBER: return number(NumericUtils.sortableLongToDouble(NumericUtils.prefixCodedToLong(term)));
+                case STRING: return term.utf8ToString();
+                default: return Boolean.valueOf(term.utf8ToString());
+            }
+        }
+
+        private static Number number(double value) {
+            return value == Math.rint(value) && Math.abs(value) <= MAX_EXACT_LONG ? (Number) (long) value : (Number) value;
+        }
+
+        @Override
+        public int compareTo(TermCount o) {
+            int result = Integer.compare(field, o.field);
+            return result != 0 ? result : term.compareTo(o.term);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && returned < limit) next = fetch();
+        return next != null;
+    }
+
+    @Override
+    public TermCount next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        TermCount result = next;
+        next = null;
+        returned++;
+        return result;
+    }
+
+    private TermCount fetch() {
+        if (!started) {
+            for (Partition partition : partitions) partition.advance();
+            started = true;
+        }
+        while (true) {
+            TermCount min = null;
+            for (Partition partition : partitions) {
+                if (partition.head != null && (min == null || partition.head.compareTo(min) < 0)) min = partition.head;
+            }
+            if (min == null) return null;
+            long count = 0;
+            for (Partition partition : partitions) {
+                if (partition.head != null && partition.head.compareTo(min) == 0) {
+                    count += partition.head.count;
+                    partition.advance();
+                }
+            }
+            if (count >= minCount) return new TermCount(min.field, min.term, count);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Partition partition : partitions) partition.close();
+    }
+
+    /**
+     * Reads the terms of one partition, a chunk is only read after the previous one was taken, so the terms enum is used by one thread at a time.
+     */
+    static class Partition {
+        private final IndexReader reader;
+        private final BytesRef prefix;
+        private int field = -1;
+        private TermsEnum terms;
+        private boolean exhausted;
+        private volatile boolean closed;
+        private Future<List<TermCount>> reading;
+        private Iterator<TermCount> chunk = Collections.emptyIterator();
+        TermCount head;
+
+        Partition(IndexReader reader, BytesRef prefix) {
+            this.reader = reader;
+            this.prefix = prefix;
+            this.reading = Pools.DEFAULT.submit(this::read);
+        }
+
+        void advance() {
+            while (!chunk.hasNext()) {
+                if (reading == null) {
+                    head = null;
+                    return;
+                }
+                List<TermCount> terms;
+                try {
+                    terms = reading.get();
+                } catch (InterruptedException | ExecutionException e) {
+                    throw new RuntimeException("Error reading index terms", e);
+                }
+                reading = exhausted ? null : Pools.DEFAULT.submit(this::read);
+                chunk = terms.iterator();
+            }
+            head = chunk.next();
+        }
+
+        void close() {
+            closed = true;
+            if (reading != null) reading.cancel(false);
+            // a read in progress holds the lock until it is done with the terms enum
+            synchronized (this) {
+                reading = null;
+            }
+        }
+
+        private synchronized List<TermCount> read() throws IOException {
+            if (closed) return Collections.emptyList();
+            List<TermCount> result = new ArrayList<>(CHUNK);
+            while (result.size() < CHUNK) {
+                BytesRef term = nextTerm();
+                if (term == null) {
+                    exhausted = true;
+                    break;
+                }
+                result.add(new TermCount(field, BytesRef.deepCopyOf(term), terms.docFreq()));
+            }
+            return result;
+        }
+
+        private BytesRef nextTerm() throws IOException {
+            while (true) {
+                BytesRef term;
+                if (terms == null) {
+                    if (++field >= FIELDS.length) return null;
+                    terms = open(field);
+                    if (terms == null) continue;
+                    term = prefix == null ? terms.next() : terms.seekCeil(prefix) == TermsEnum.SeekStatus.END ? null : terms.term();
+                } else {
+                    term = terms.next();
+                }
+                if (term == null || (prefix != null && !StringHelper.startsWith(term, prefix))) {
+                    terms = null;
+                    continue;
+                }
+                return term;
+            }
+        }
+
+        private TermsEnum open(int field) throws IOException {
+            // prefixes only apply to strings
+            if (prefix != null && field != STRING) return null;
+            Terms terms = MultiFields.getTerms(reader, FIELDS[field]);
+            if (terms == null) return null;
+            return field == NUMBER ? NumericUtils.filterPrefixCodedLongs(terms.iterator()) : terms.iterator();
+        }
+    }
+}
@@ -14,15 +14,13 @@ import org.neo4j.graphdb.index.IndexManager;
 import org.neo4j.kernel.KernelApi;
 import org.neo4j.helpers.collection.Iterables;
 import org.neo4j.kernel.internal.GraphDatabaseAPI;
-import org.neo4j.kernel.lifecycle.LifeSupport;
 import org.neo4j.logging.Log;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
@@ -33,32 +31,28 @@ import static org.neo4j.helpers.collection.Iterators.*;
 /**
  * a transaction event handler that updates manual indexes based on configuration in graph properties
  * based on configuration the updates are process synchronously via {@link #beforeCommit(TransactionData)} or async via
- * {@link #afterCommit(TransactionData, Collection<Consumer<Void>)}
+ * {@link #afterCommit(TransactionData, Collection)} which hands the {@link IndexCommand}s to an {@link AsyncIndexUpdater}
  * @author Stefan Armbruster
  */
-public class IndexUpdateTransactionEventHandler extends TransactionEventHandler.Adapter<Collection<Consumer<Void>>> {
+public class IndexUpdateTransactionEventHandler extends TransactionEventHandler.Adapter<Collection<IndexCommand>> {
 
     private final GraphDatabaseService graphDatabaseService;
-    private final boolean async;
-
-    private final BlockingQueue<Consumer<Void>> indexCommandQueue ;
+    private final AsyncIndexUpdater updater;
     private final boolean stopWatchEnabled;
     private final Log log;
     private Map<String, Map<String, Collection<Index<Node>>>> indexesByLabelAndProperty;
     private ScheduledFuture<?> configUpdateFuture = null;
 
-    public IndexUpdateTransactionEventHandler(GraphDatabaseAPI graphDatabaseService, Log log, boolean async, int queueCapacity, boolean stopWatchEnabled) {
+    /**
+     * @param updater null to update the indexes synchronously
+     */
+    public IndexUpdateTransactionEventHandler(GraphDatabaseAPI graphDatabaseService, Log log, AsyncIndexUpdater updater, boolean stopWatchEnabled) {
         this.graphDatabaseService = graphDatabaseService;
         this.log = log;
-        this.async = async;
-        this.indexCommandQueue = new LinkedBlockingQueue<>(queueCapacity);
+        this.updater = updater;
         this.stopWatchEnabled = stopWatchEnabled;
     }
 
-    public BlockingQueue<Consumer<Void>> getIndexCommandQueue() {
-        return indexCommandQueue;
-    }
-
     @FunctionalInterface
     interface IndexFunction<A, B, C, D, E> {
         void apply (A a, B b, C c, D d, E e);
@@ -81,43 +75,29 @@ public class IndexUpdateTransactionEventHandler extends TransactionEventHandler.
     }
 
     @Override
-    public Collection<Consumer<Void>> beforeCommit(TransactionData data) throws Exception {
+    public Collection<IndexCommand> beforeCommit(TransactionData data) throws Exception {
 
-        return (Collection<Consumer<Void>>) logDuration("beforeCommit", () -> {
+        return (Collection<IndexCommand>) logDuration("beforeCommit", () -> {
             getIndexesByLabelAndProperty();
-            Collection<Consumer<Void>> state = async ? new LinkedList<>() : null;
+            Collection<IndexCommand> state = updater != null ? new ArrayList<>() : null;
 
-            iterateNodePropertyChange(stream(data.assignedNodeProperties()),false, (index, node, key, value, oldValue) -> indexUpdate(state, aVoid -> {
-                if (oldValue != null) {
-                    index.remove(node, key);
-                    index.remove(node, FreeTextSearch.KEY);
-                }
-                index.add(node, key, value);
-                index.add(node, FreeTextSearch.KEY, value);
-            }));
+            iterateNodePropertyChange(stream(data.assignedNodeProperties()),false, (index, node, key, value, oldValue) ->
+                    indexUpdate(state, index, node, oldValue != null ? IndexCommand.Type.REPLACE : IndexCommand.Type.ADD, key, value));
 
             // filter out removedNodeProperties from node deletions
-            iterateNodePropertyChange(stream(data.removedNodeProperties()).filter(nodePropertyEntry -> !contains(data.deletedNodes().iterator(), nodePropertyEntry.entity())), true, (index, node, key, value, oldValue) -> indexUpdate(state, aVoid -> {
-                index.remove(node, key);
-                index.remove(node, FreeTextSearch.KEY);
-            }));
+            iterateNodePropertyChange(stream(data.removedNodeProperties()).filter(nodePropertyEntry -> !contains(data.deletedNodes().iterator(), nodePropertyEntry.entity())), true, (index, node, key, value, oldValue) ->
+                    indexUpdate(state, index, node, IndexCommand.Type.REMOVE, key, null));
 
             // performance tweak: converted create/deleted nodes to a set, so we can apply `contains` on it fast
             final Set<Node> createdNodes = Iterables.asSet(data.createdNodes());
             final Set<Node> deletedNodes = Iterables.asSet(data.deletedNodes());
             iterateLabelChanges(
                     stream(data.assignedLabels()).filter( labelEntry -> !createdNodes.contains( labelEntry.node() ) ),
-                    (index, node, key, value, ignore) -> indexUpdate(state, aVoid -> {
-                        index.add(node, key, value);
-                        index.add(node, FreeTextSearch.KEY, value);
-                    }));
+                    (index, node, key, value, ignore) -> indexUpdate(state, index, node, IndexCommand.Type.ADD, key, value));
 
             iterateLabelChanges(
                     stream(data.removedLabels()).filter( labelEntry -> !deletedNodes.contains( labelEntry.node() ) ),
-                    (index, node, key, value, ignore) -> indexUpdate(state, aVoid -> {
-                        index.remove(node, key);
-                        index.remove(node, FreeTextSearch.KEY);
-                    }));
+                    (index, node, key, value, ignore) -> indexUpdate(state, index, node, IndexCommand.Type.REMOVE, key, null));
 
             return state;
 
@@ -127,15 +107,13 @@ public class IndexUpdateTransactionEventHandler extends TransactionEventHandler.
     }
 
     @Override
-    public void afterCommit(TransactionData data, Collection<Consumer<Void>> state) {
+    public void afterCommit(TransactionData data, Collection<IndexCommand> state) {
         logDuration("afterCommit", () -> {
-            if (async) {
-                for (Consumer<Void> consumer: state) {
-                    try {
-                        indexCommandQueue.put(consumer);
-                    } catch (InterruptedException e) {
-                        throw new RuntimeException(e);
-                    }
+            if (updater != null) {
+                try {
+                    updater.submit(state);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
                 }
             }
             return null;
@@ -185,13 +163,14 @@ public class IndexUpdateTransactionEventHandler extends TransactionEventHandler.
     }
 
     /**
-     * in async mode add the index action to a collection for consumption in {@link #afterCommit(TransactionData, Collection)}, in sync mode, run it directly
+     * in async mode add the index command to a collection for consumption in {@link #afterCommit(TransactionData, Collection)}, in sync mode, apply it directly
      */
-    private Void indexUpdate(Collection<Consumer<Void>> state, Consumer<Void> indexAction) {
+    private Void indexUpdate(Collection<IndexCommand> state, Index<Node> index, Node node, IndexCommand.Type type, String key, Object value) {
+        IndexCommand command = new IndexCommand(index.getName(), node.getId(), type, key, value);
         if (state==null) {  // sync
-            indexAction.accept(null);
+            command.apply(index, node);
         } else { // async
-            state.add(indexAction);
+            state.add(command);
         }
         return null;
     }
@@ -239,6 +218,7 @@ public class IndexUpdateTransactionEventHandler extends TransactionEventHandler.
         private final GraphDatabaseAPI db;
         private final Log log;
         private IndexUpdateTransactionEventHandler indexUpdateTransactionEventHandler;
+        private AsyncIndexUpdater updater;
 
         public LifeCycle(GraphDatabaseAPI db, Log log) {
             this.db = db;
@@ -250,15 +230,25 @@ public class IndexUpdateTransactionEventHandler extends TransactionEventHandler.
             if (enabled) {
                 boolean async = ApocConfiguration.isEnabled("autoIndex.async");
                 boolean stopWatchEnabled = ApocConfiguration.isEnabled("autoIndex.tx_handler_stopwatch");
-                int queueCapacity = Integer.parseInt(ApocConfiguration.get("autoIndex.queue_capacity", "100000"));
-                indexUpdateTransactionEventHandler = new IndexUpdateTransactionEventHandler(db, log, async, queueCapacity, stopWatchEnabled);
                 if (async) {
-                    startIndexTrackingThread(db, indexUpdateTransactionEventHandler.getIndexCommandQueue(),
+                    int threads = Integer.parseInt(ApocConfiguration.get("autoIndex.async_threads", "1"));
+                    int queueCapacity = Integer.parseInt(ApocConfiguration.get("autoIndex.queue_capacity", "100000"));
+                    File journalDir = null;
+                    if (ApocConfiguration.isEnabled("autoIndex.async_journal")) {
+                        String dir = ApocConfiguration.get("autoIndex.async_journal_dir", null);
+                        journalDir = dir == null ? db.getStoreDir() : new File(dir);
+                    }
+                    updater = new AsyncIndexUpdater(db, log, threads, Math.max(1, queueCapacity / Math.max(1, threads)),
                             Long.parseLong(ApocConfiguration.get("autoIndex.async_rollover_opscount", "50000")),
                             Long.parseLong(ApocConfiguration.get("autoIndex.async_rollover_millis", "5000")),
-                            log
-                    );
+                            journalDir, ApocConfiguration.isEnabled("autoIndex.async_journal_force"));
+                    try {
+                        updater.start();
+                    } catch (IOException e) {
+                        throw new RuntimeException("Can't open the async index journal in " + journalDir, e);
+                    }
                 }
+                indexUpdateTransactionEventHandler = new IndexUpdateTransactionEventHandler(db, log, updater, stopWatchEnabled);
                 db.registerTransactionEventHandler(indexUpdateTransactionEventHandler);
                 long indexConfigUpdateInternal = Util.toLong(ApocConfiguration.get("autoIndex.configUpdateInterval",10l));
                 if (indexConfigUpdateInternal > 0) {
@@ -266,57 +256,21 @@ public class IndexUpdateTransactionEventHandler extends TransactionEventHandler.
                 }
             }
         }
-        private void startIndexTrackingThread(GraphDatabaseAPI db, BlockingQueue<Consumer<Void>> indexCommandQueue, long opsCountRollover, long millisRollover, Log log) {
-            new Thread(() -> {
-                Transaction tx = db.beginTx();
-                int opsCount = 0;
-                long lastCommit = System.currentTimeMillis();
-                try {
-                    while (true) {
-                        Consumer<Void> indexCommand = indexCommandQueue.poll(millisRollover, TimeUnit.MILLISECONDS);
-                        long now = System.currentTimeMillis();
-                        if ((opsCount>0) && ((now - lastCommit > millisRollover) || (opsCount >= opsCountRollover))) {
-                            tx.success();
-                            tx.close();
-                            tx = db.beginTx();
-                            log.info("background indexing thread doing tx rollover, opscount " + opsCount + ", millis since last rollover " + (now-lastCommit));
-                            lastCommit = now;
-                            opsCount = 0;
-                        }
-                        if (indexCommand == null) {
-                            boolean running = db.getDependencyResolver().resolveDependency(LifeSupport.class).isRunning();
-                            if (running) {
-                                // in case we couldn't get anything from queue, we'll update lastcommit to prevent too early commits
-                                if (opsCount==0) {
-                                    lastCommit = now;
-                                }
-                            } else {
-                                // check if a database shutdown is already in progress, if so, terminate this thread
-                                log.info("system shutdown detected, terminating indexing background thread");
-                                break;
-                            }
-                        } else {
-                            opsCount++;
-                            indexCommand.accept(null);
-                        }
-                    }
-                } catch (InterruptedException e) {
-                    log.error(e.getMessage(), e);
-                    throw new RuntimeException(e);
-                } finally {
-                    tx.success();
-                    tx.close();
-                    log.info("stopping background thread for async index updates");
-                }
-            }).start();
-            log.info("started background thread for async index updates");
-        }
-
         public void stop() {
             if (indexUpdateTransactionEventHandler!=null) {
                 db.unregisterTransactionEventHandler(indexUpdateTransactionEventHandler);
                 indexUpdateTransactionEventHandler.stopPeriodicIndexConfigChangeUpdates();
             }
+            if (updater!=null) {
+                updater.stop();
+            }
+        }
+
+        /**
+         * @return queue depth, lag and rollover metrics of the async index update workers, nothing if updates are synchronous
+         */
+        public Stream<AsyncIndexUpdater.WorkerStats> stats() {
+            return updater == null ? Stream.empty() : updater.stats();
         }
 
         public void resetConfiguration() {
@@ -0,0 +1,90 @@
+package apoc.index;
+
+import apoc.ApocConfiguration;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.index.IndexManager;
+import org.neo4j.kernel.KernelApi;
+import org.neo4j.kernel.api.LegacyIndexHits;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.logging.Log;
+
+import java.util.Map;
+
+/**
+ * Runs the queries configured as {@code apoc.index.warmup.<index>=<lucene query>} against the manual indexes after startup,
+ * so their searchers are opened and their files are read before the first user query.
+ * The searchers stay open in the index data source, which reopens them after commits.
+ */
+public class IndexWarmup {
+
+    public static class LifeCycle {
+        private final GraphDatabaseAPI db;
+        private final Log log;
+        private volatile boolean stopped;
+
+        public LifeCycle(GraphDatabaseAPI db, Log log) {
+            this.db = db;
+            this.log = log;
+        }
+
+        public void start() {
+            Map<String, Object> queries = ApocConfiguration.get("index.warmup");
+            if (queries.isEmpty()) return;
+            Thread thread = new Thread(() -> warmup(queries), "apoc-index-warmup");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        public void stop() {
+            stopped = true;
+        }
+
+        /**
+         * @return the number of indexes that were warmed up
+         */
+        int warmup(Map<String, Object> queries) {
+            if (!db.isAvailable(60_000)) {
+                log.warn("database not available, skipping warm-up of " + queries.size() + " manual indexes");
+                return 0;
+            }
+            int warmed = 0;
+            for (Map.Entry<String, Object> entry : queries.entrySet()) {
+                if (stopped) break;
+                String index = entry.getKey();
+                long start = System.currentTimeMillis();
+                try (Transaction tx = db.beginTx()) {
+                    IndexManager indexManager = db.index();
+                    long hits;
+                    if (indexManager.existsForNodes(index)) {
+                        hits = consume(KernelApi.nodeQueryIndex(index, entry.getValue().toString(), db));
+                    } else if (indexManager.existsForRelationships(index)) {
+                        hits = consume(KernelApi.relationshipQueryIndex(index, entry.getValue().toString(), db, null, null));
+                    } else {
+                        log.warn("no manual index named '%s' to warm up", index);
+                        continue;
+                    }
+                    tx.success();
+                    warmed++;
+                    log.info("warmed up manual index '%s' with %d hits in %d ms", index, hits, System.currentTimeMillis() - start);
+                } catch (Exception e) {
+                    log.warn("failed to warm up manual index '" + index + "'", e);
+                }
+            }
+            return warmed;
+        }
+
+        private long consume(LegacyIndexHits hits) {
+            long count = 0;
+            try {
+                while (hits.hasNext()) {
+                    hits.next();
+                    hits.currentScore();
+                    count++;
+                }
+            } finally {
+                hits.close();
+            }
+            return count;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package apoc.index;
 
+import apoc.Pools;
 import org.neo4j.graphdb.*;
 import org.neo4j.graphdb.schema.IndexDefinition;
 import org.neo4j.kernel.api.Statement;
@@ -8,29 +9,30 @@ import org.neo4j.procedure.Description;
 import apoc.result.ListResult;
 import apoc.result.NodeResult;
 import apoc.util.Util;
-import org.apache.lucene.index.Fields;
-import org.apache.lucene.index.MultiFields;
-import org.apache.lucene.index.Terms;
-import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.neo4j.collection.primitive.Primitive;
 import org.neo4j.collection.primitive.PrimitiveLongIterator;
+import org.neo4j.collection.primitive.PrimitiveLongSet;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.Node;
-import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.Label;
 import org.neo4j.kernel.api.KernelTransaction;
 import org.neo4j.kernel.api.ReadOperations;
+import org.neo4j.kernel.api.exceptions.EntityNotFoundException;
 import org.neo4j.kernel.api.exceptions.TransactionFailureException;
 import org.neo4j.kernel.api.exceptions.index.IndexNotFoundKernelException;
 import org.neo4j.kernel.api.exceptions.schema.DuplicateSchemaRuleException;
 import org.neo4j.kernel.api.exceptions.schema.SchemaRuleNotFoundException;
-import org.neo4j.kernel.api.impl.schema.reader.SimpleIndexReader;
 import org.neo4j.kernel.api.impl.schema.reader.SortedIndexReader;
 import org.neo4j.kernel.api.schema.IndexQuery;
 import org.neo4j.kernel.api.schema.LabelSchemaDescriptor;
 import org.neo4j.kernel.api.schema.index.IndexDescriptor;
+import org.neo4j.kernel.api.txstate.TxStateHolder;
 import org.neo4j.kernel.impl.api.KernelStatement;
+import org.neo4j.kernel.impl.api.store.RelationshipIterator;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
@@ -38,6 +40,8 @@ import org.neo4j.storageengine.api.schema.IndexReader;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -47,18 +51,20 @@ import java.util.stream.StreamSupport;
  */
 public class SchemaIndex {
 
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+
     @Context
-    public GraphDatabaseService db;
+    public GraphDatabaseAPI db;
     @Context
     public KernelTransaction tx;
 
     @Procedure
-    @Description("apoc.index.relatedNodes([nodes],label,key,'<TYPE'/'TYPE>'/'TYPE',limit) yield node - schema range scan which keeps index order and adds limit and checks opposite node of relationship against the given set of nodes")
+    @Description("apoc.index.relatedNodes([nodes],label,key,'<TYPE'/'TYPE>'/'TYPE',limit,{batchSize:1000,parallel:false}) yield node - schema range scan which keeps index order and adds limit and checks opposite node of relationship against the given set of nodes, optionally in parallel batches unless the transaction has changes")
     public Stream<NodeResult> related(@Name("nodes") List<Node> nodes,
                                       @Name("label") String label, @Name("key") String key,
                                       @Name("relationship") String relationship,
-                                      @Name("limit") long limit) throws SchemaRuleNotFoundException, IndexNotFoundKernelException, IOException, DuplicateSchemaRuleException, IndexNotApplicableKernelException {
-        Set<Node> nodeSet = new HashSet<>(nodes);
+                                      @Name("limit") long limit,
+                                      @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws SchemaRuleNotFoundException, IndexNotFoundKernelException, IOException, DuplicateSchemaRuleException, IndexNotApplicableKernelException {
         Direction dir = Direction.BOTH;
         if (relationship.startsWith("<")) {
             dir = Direction.INCOMING;
@@ -68,38 +74,156 @@ public class SchemaIndex {
             dir = Direction.OUTGOING;
             relationship = relationship.substring(0, relationship.length() - 1);
         }
-        RelationshipType type = RelationshipType.withName(relationship);
-        List<Node> result = new ArrayList<>((int) limit);
-        boolean reverse = false;
-//        SortField sortField = new SortField("number" /*string*/, SortField.Type.STRING, reverse);
-//        SortedIndexReader sortedIndexReader = getSortedIndexReader(label, key, Math.max(nodeSet.size(),limit), Sort.INDEXORDER); // new Sort(sortField));
-        // PrimitiveLongIterator it = getIndexReader(label, key).rangeSeekByString("",true,String.valueOf((char)0xFF),true);
+        int batchSize = Util.toInteger(config.getOrDefault("batchSize", DEFAULT_BATCH_SIZE));
+        // parallel batches run in their own transactions, they would miss the changes of this one
+        boolean parallel = Util.toBoolean(config.getOrDefault("parallel", false))
+                && !(tx instanceof TxStateHolder && ((TxStateHolder) tx).hasTxStateWithChanges());
+        long[] targets = nodes.stream().filter(Objects::nonNull).mapToLong(Node::getId).toArray();
+
         int keyId;
+        RelatedNodes related;
         try (Statement stmt = tx.acquireStatement()) {
-            keyId = stmt.readOperations().propertyKeyGetForName(key);
+            ReadOperations ops = stmt.readOperations();
+            keyId = ops.propertyKeyGetForName(key);
+            int type = ops.relationshipTypeGetForName(relationship);
+            if (type == -1 || targets.length == 0 || limit <= 0) return Stream.empty();
+            related = new RelatedNodes(ops, targets, type, dir);
+            // no target has a relationship of the type, nothing to scan for
+            if (related.targetDegree == 0) return Stream.empty();
         }
         IndexQuery.NumberRangePredicate numberRangePredicate = IndexQuery.range(keyId, Long.MIN_VALUE, true, Long.MAX_VALUE, true);
         PrimitiveLongIterator it = getIndexReader(label, key).query(numberRangePredicate);
 
-        while (it.hasNext() && result.size() < limit) {
-            Node node = db.getNodeById(it.next());
-//            System.out.println("id  " + node.getProperty("id") + " age " + node.getProperty("age"));
-            for (Relationship rel : node.getRelationships(dir, type)) {
-                Node other = rel.getOtherNode(node);
-                if (nodeSet.contains(other)) {
-                    result.add(node);
-                    break;
+        List<Node> result = new ArrayList<>((int) Math.min(limit, 1024));
+        if (parallel) {
+            relatedInBatches(it, related, batchSize, limit, result);
+        } else {
+            try (Statement stmt = tx.acquireStatement()) {
+                ReadOperations ops = stmt.readOperations();
+                while (it.hasNext() && result.size() < limit) {
+                    long id = it.next();
+                    if (related.isRelated(ops, id)) result.add(db.getNodeById(id));
                 }
             }
         }
         return result.stream().map(NodeResult::new);
     }
 
+    /**
+     * Checks rounds of candidate batches in parallel, each in its own read transaction, and takes their matches in index order
+     * until the limit is reached, the batches of the last round that are not needed anymore are cancelled.
+     */
+    private void relatedInBatches(PrimitiveLongIterator it, RelatedNodes related, int batchSize, long limit, List<Node> result) {
+        int threads = Pools.getNoThreadsInDefaultPool();
+        while (it.hasNext() && result.size() < limit) {
+            List<Future<long[]>> round = new ArrayList<>(threads);
+            for (int i = 0; i < threads && it.hasNext(); i++) {
+                long[] batch = nextBatch(it, batchSize);
+                round.add(Util.inTxFuture(Pools.DEFAULT, db, (stmt, ops) -> related.filter(ops, batch, limit)));
+            }
+            for (Future<long[]> future : round) {
+                if (result.size() >= limit) {
+                    future.cancel(false);
+                    continue;
+                }
+                try {
+                    for (long id : future.get()) {
+                        if (result.size() < limit) result.add(db.getNodeById(id));
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    round.forEach(f -> f.cancel(false));
+                    throw new RuntimeException("Error checking batch of related nodes", e);
+                }
+            }
+        }
+    }
+
+    private static long[] nextBatch(PrimitiveLongIterator it, int batchSize) {
+        long[] batch = new long[batchSize];
+        int size = 0;
+        while (size < batchSize && it.hasNext()) batch[size++] = it.next();
+        return size == batchSize ? batch : Arrays.copyOf(batch, size);
+    }
+
+    /**
+     * Checks candidates for a relationship of one type and direction to any of the target nodes.
+     * A candidate expands its own relationships unless it has more of them than all targets together, like a dense node,
+     * then the opposite nodes of the targets are collected once and this and all further candidates are looked up in them.
+     */
+    static class RelatedNodes {
+        private final PrimitiveLongSet targets = Primitive.longSet();
+        private final int[] types;
+        private final Direction direction;
+        private long targetDegree;
+        private volatile PrimitiveLongSet neighbours;
+
+        RelatedNodes(ReadOperations ops, long[] targets, int type, Direction direction) {
+            this.types = new int[]{type};
+            this.direction = direction;
+            for (long target : targets) {
+                if (!this.targets.add(target)) continue;
+                try {
+                    targetDegree += ops.nodeGetDegree(target, direction.reverse(), type);
+                } catch (EntityNotFoundException e) {
+                    // deleted target, can't be related
+                }
+            }
+        }
+
+        long[] filter(ReadOperations ops, long[] candidates, long limit) {
+            long[] matches = new long[candidates.length];
+            int size = 0;
+            for (int i = 0; i < candidates.length && size < limit; i++) {
+                if (isRelated(ops, candidates[i])) matches[size++] = candidates[i];
+            }
+            return Arrays.copyOf(matches, size);
+        }
+
+        boolean isRelated(ReadOperations ops, long node) {
+            PrimitiveLongSet neighbours = this.neighbours;
+            if (neighbours != null) return neighbours.contains(node);
+            try {
+                int degree = ops.nodeGetDegree(node, direction, types[0]);
+                if (degree == 0) return false;
+                if (degree > targetDegree) return neighbours(ops).contains(node);
+                long[] other = new long[1];
+                RelationshipIterator rels = ops.nodeGetRelationships(node, direction, types);
+                while (rels.hasNext()) {
+                    rels.relationshipVisit(rels.next(), (rel, type, start, end) -> other[0] = start == node ? end : start);
+                    if (targets.contains(other[0])) return true;
+                }
+                return false;
+            } catch (EntityNotFoundException e) {
+                return false;
+            }
+        }
+
+        private synchronized PrimitiveLongSet neighbours(ReadOperations ops) {
+            if (neighbours != null) return neighbours;
+            PrimitiveLongSet result = Primitive.longSet((int) Math.min(targetDegree, 1 << 16));
+            PrimitiveLongIterator it = targets.iterator();
+            while (it.hasNext()) {
+                long target = it.next();
+                try {
+                    RelationshipIterator rels = ops.nodeGetRelationships(target, direction.reverse(), types);
+                    while (rels.hasNext()) {
+                        rels.relationshipVisit(rels.next(), (rel, type, start, end) -> result.add(start == target ? end : start));
+                    }
+                } catch (EntityNotFoundException e) {
+                    // deleted target
+                }
+            }
+            return neighbours = result;
+        }
+    }
+
     @Procedure
-    @Description("apoc.index.orderedRange(label,key,min,max,sort-relevance,limit) yield node - schema range scan which keeps index order and adds limit, values can be null, boundaries are inclusive")
-    public Stream<NodeResult> orderedRange(@Name("label") String label, @Name("key") String key, @Name("min") Object min, @Name("max") Object max, @Name("relevance") boolean relevance, @Name("limit") long limit) throws SchemaRuleNotFoundException, IndexNotFoundKernelException, DuplicateSchemaRuleException {
+    @Description("apoc.index.orderedRange(label,key,min,max,sort-relevance,limit,{order:'ASC'/'DESC',after:node/{value,id}}) yield node - schema range scan which sorts by value and node id and adds limit, values can be null, boundaries are inclusive, pages after the given node or value and id")
+    public Stream<NodeResult> orderedRange(@Name("label") String label, @Name("key") String key, @Name("min") Object min, @Name("max") Object max, @Name("relevance") boolean relevance, @Name("limit") long limit,
+                                           @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws SchemaRuleNotFoundException, IndexNotFoundKernelException, DuplicateSchemaRuleException {
 
-        SortedIndexReader sortedIndexReader = getSortedIndexReader(label, key, limit, getSort(min, max, relevance));
+        SortedIndexReader sortedIndexReader = getSortedIndexReader(label, key, limit, getSort(min, max, relevance, isDescending(config)));
+        pageAfter(sortedIndexReader, key, config);
 
         PrimitiveLongIterator it = queryForRange(sortedIndexReader, min, max);
 //        return Util.toLongStream(it).mapToObj(id -> new NodeResult(new VirtualNode(id, db)));
@@ -107,14 +231,41 @@ public class SchemaIndex {
     }
 
     public Sort getSort(Object min, Object max, boolean relevance) {
-        return Sort.RELEVANCE;
-/*
-        return relevance ? Sort.RELEVANCE :
-                    (min instanceof Number || max instanceof  Number) ? new Sort(new SortedNumericSortField("number", SortField.Type.DOUBLE)) :
-                            (min instanceof String || max instanceof String) ? new Sort(new SortedNumericSortField("string", SortField.Type.STRING)) :
-                            (min instanceof Boolean || max instanceof Boolean) ? new Sort(new SortedNumericSortField("bool", SortField.Type.STRING)) :
-                            Sort.INDEXORDER;
-*/
+        return getSort(min, max, relevance, false);
+    }
+
+    /**
+     * Sorts by the doc values of the indexed property and then by node id, so equal values keep a stable order to page through.
+     * Numbers are indexed in the "number" field, everything else that is range searched as string in the "string" field.
+     */
+    public Sort getSort(Object min, Object max, boolean relevance, boolean descending) {
+        if (relevance) return Sort.RELEVANCE;
+        boolean numeric = (min == null || min instanceof Number) && (max == null || max instanceof Number);
+        SortField value = numeric ? new SortField("number", SortField.Type.DOUBLE, descending) : new SortField("string", SortField.Type.STRING, descending);
+        return new Sort(value, new SortField("id", SortField.Type.LONG, descending));
+    }
+
+    private boolean isDescending(Map<String, Object> config) {
+        String order = config == null ? null : (String) config.get("order");
+        if (order == null || order.equalsIgnoreCase("ASC")) return false;
+        if (order.equalsIgnoreCase("DESC")) return true;
+        throw new IllegalArgumentException("Unknown order " + order + ", expected 'ASC' or 'DESC'");
+    }
+
+    private void pageAfter(SortedIndexReader sortedIndexReader, String key, Map<String, Object> config) {
+        Object after = config == null ? null : config.get("after");
+        if (after == null) return;
+        if (after instanceof Node) {
+            Node node = (Node) after;
+            Object value = node.getProperty(key, null);
+            if (value == null) throw new IllegalArgumentException("after node " + node.getId() + " has no property " + key);
+            sortedIndexReader.after(value, node.getId());
+        } else if (after instanceof Map && ((Map) after).get("id") instanceof Number && ((Map) after).get("value") != null) {
+            Map map = (Map) after;
+            sortedIndexReader.after(map.get("value"), ((Number) map.get("id")).longValue());
+        } else {
+            throw new IllegalArgumentException("after has to be a node or a map with a value and a numeric id, got " + after);
+        }
     }
 
     private PrimitiveLongIterator queryForRange(SortedIndexReader sortedIndexReader, Object min, Object max) {
@@ -128,9 +279,11 @@ public class SchemaIndex {
     }
 
     @Procedure
-    @Description("apoc.index.orderedByText(label,key,operator,value,sort-relevance,limit) yield node - schema string search which keeps index order and adds limit, operator is 'STARTS WITH' or 'CONTAINS'")
-    public Stream<NodeResult> orderedByText(@Name("label") String label, @Name("key") String key, @Name("operator") String operator, @Name("value") String value, @Name("relevance") boolean relevance, @Name("limit") long limit) throws SchemaRuleNotFoundException, IndexNotFoundKernelException, DuplicateSchemaRuleException {
-        SortedIndexReader sortedIndexReader = getSortedIndexReader(label, key, limit, getSort(value,value,relevance));
+    @Description("apoc.index.orderedByText(label,key,operator,value,sort-relevance,limit,{order:'ASC'/'DESC',after:node/{value,id}}) yield node - schema string search which sorts by value and node id and adds limit, operator is 'STARTS WITH' or 'CONTAINS', pages after the given node or value and id")
+    public Stream<NodeResult> orderedByText(@Name("label") String label, @Name("key") String key, @Name("operator") String operator, @Name("value") String value, @Name("relevance") boolean relevance, @Name("limit") long limit,
+                                            @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws SchemaRuleNotFoundException, IndexNotFoundKernelException, DuplicateSchemaRuleException {
+        SortedIndexReader sortedIndexReader = getSortedIndexReader(label, key, limit, getSort(value, value, relevance, isDescending(config)));
+        pageAfter(sortedIndexReader, key, config);
         PrimitiveLongIterator it = queryForString(sortedIndexReader, operator, value);
 //        return Util.toLongStream(it).mapToObj(id -> new NodeResult(new VirtualNode(id, db)));
         return Util.toLongStream(it).mapToObj(id -> new NodeResult(db.getNodeById(id)));
@@ -150,9 +303,7 @@ public class SchemaIndex {
     }
 
     private SortedIndexReader getSortedIndexReader(String label, String key, long limit, Sort sort) throws SchemaRuleNotFoundException, IndexNotFoundKernelException, DuplicateSchemaRuleException {
-        // todo PartitionedIndexReader
-        SimpleIndexReader reader = (SimpleIndexReader) getIndexReader(label, key);
-        return new SortedIndexReader(reader, limit, sort);
+        return new SortedIndexReader(SortedIndexReader.getIndexSearcher(getIndexReader(label, key)), limit, sort);
     }
 
     private IndexReader getIndexReader(String label, String key) throws SchemaRuleNotFoundException, IndexNotFoundKernelException, DuplicateSchemaRuleException {
@@ -166,83 +317,81 @@ public class SchemaIndex {
     }
 
     @Procedure("apoc.schema.properties.distinct")
-    @Description("apoc.schema.properties.distinct(label, key) - quickly returns all distinct values for a given key")
-    public Stream<ListResult> distinct(@Name("label") String label, @Name("key")  String key) throws SchemaRuleNotFoundException, IndexNotFoundKernelException, IOException, DuplicateSchemaRuleException {
-        List<Object> values = distinctTerms(label, key);
+    @Description("apoc.schema.properties.distinct(label, key, {limit, prefix, minCount}) - quickly returns the distinct values of a key from its index, numbers, strings and booleans, strings can be filtered by prefix")
+    public Stream<ListResult> distinct(@Name("label") String label, @Name("key")  String key, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws SchemaRuleNotFoundException, IndexNotFoundKernelException, IOException, DuplicateSchemaRuleException {
+        List<Object> values = new ArrayList<>();
+        try (IndexTerms terms = indexTerms(label, key, config)) {
+            while (terms.hasNext()) values.add(terms.next().value());
+        }
         return Stream.of(new ListResult(values));
     }
 
-    private List<Object> distinctTerms(@Name("label") String label, @Name("key") String key) throws SchemaRuleNotFoundException, IndexNotFoundKernelException, IOException, DuplicateSchemaRuleException {
-        try (KernelStatement stmt = (KernelStatement) tx.acquireStatement()) {
-            ReadOperations reads = stmt.readOperations();
-    
-            LabelSchemaDescriptor labelSchemaDescriptor = new LabelSchemaDescriptor(reads.labelGetForName(label), reads.propertyKeyGetForName(key));
-            IndexDescriptor descriptor = reads.indexGetForSchema(labelSchemaDescriptor);
-            SimpleIndexReader reader = (SimpleIndexReader) stmt.getStoreStatement().getIndexReader(descriptor);
-            SortedIndexReader sortedIndexReader = new SortedIndexReader(reader, 0, Sort.INDEXORDER);
-            Set<Object> values = new LinkedHashSet<>(100);
-            TermsEnum termsEnum;
-
-            Fields fields = MultiFields.getFields(sortedIndexReader.getIndexSearcher().getIndexReader());
-            Terms terms = fields.terms("string");
-            if (terms != null) {
-                termsEnum = terms.iterator();
-                while ((termsEnum.next()) != null) {
-                    values.add(termsEnum.term().utf8ToString());
+    @Procedure("apoc.schema.properties.distinctCount")
+    @Description("apoc.schema.properties.distinctCount([label], [key], {limit, prefix, minCount}) YIELD label, key, value, count - quickly returns the distinct values and counts of a key from its index, limit applies per key, all indexes are read in parallel")
+    public Stream<PropertyValueCount> distinctCount(@Name(value = "label", defaultValue = "") String labelName, @Name(value = "key", defaultValue = "") String keyName,
+                                                    @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws SchemaRuleNotFoundException, IndexNotFoundKernelException, IOException {
+        Iterable<IndexDefinition> labels = (labelName.isEmpty()) ? db.schema().getIndexes() : db.schema().getIndexes(Label.label(labelName));
+        // the terms of all indexes start being read right away, each one is consumed in turn
+        List<IndexTerms> allTerms = new ArrayList<>();
+        List<String[]> names = new ArrayList<>();
+        try {
+            for (IndexDefinition index : labels) {
+                if (!keyName.isEmpty() && !isKeyIndexed(index, keyName)) continue;
+                String label = index.getLabel().name();
+                Iterable<String> keys = keyName.isEmpty() ? index.getPropertyKeys() : Collections.singletonList(keyName);
+                for (String key : keys) {
+                    IndexTerms terms;
+                    try {
+                        terms = indexTerms(label, key, config);
+                    } catch (Exception e) {
+                        throw new RuntimeException("Error collecting distinct terms of label: " + label + " and key: " + key, e);
+                    }
+                    allTerms.add(terms);
+                    names.add(new String[]{label, key});
                 }
             }
-            return new ArrayList<>(values);
+        } catch (RuntimeException e) {
+            allTerms.forEach(IndexTerms::close);
+            throw e;
         }
+        Iterator<PropertyValueCount> it = new Iterator<PropertyValueCount>() {
+            int current = 0;
+
+            @Override
+            public boolean hasNext() {
+                while (current < allTerms.size() && !allTerms.get(current).hasNext()) current++;
+                return current < allTerms.size();
+            }
+
+            @Override
+            public PropertyValueCount next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                IndexTerms.TermCount term = allTerms.get(current).next();
+                String[] name = names.get(current);
+                return new PropertyValueCount(name[0], name[1], term.value(), term.count);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, 0), false).onClose(() -> allTerms.forEach(IndexTerms::close));
     }
 
-    @Procedure("apoc.schema.properties.distinctCount")
-    @Description("apoc.schema.properties.distinctCount([label], [key]) YIELD label, key, value, count - quickly returns all distinct values and counts for a given key")
-    public Stream<PropertyValueCount> distinctCount(@Name(value = "label", defaultValue = "") String labelName, @Name(value = "key", defaultValue = "") String keyName) throws SchemaRuleNotFoundException, IndexNotFoundKernelException, IOException {
-        Iterable<IndexDefinition> labels = (labelName.isEmpty()) ? db.schema().getIndexes() : db.schema().getIndexes(Label.label(labelName));
-        return StreamSupport.stream(labels.spliterator(), false).filter(i -> keyName.isEmpty() || isKeyIndexed(i, keyName)).flatMap(
-                index -> {
-                    Iterable<String> keys = keyName.isEmpty() ? index.getPropertyKeys() : Collections.singletonList(keyName);
-                    return StreamSupport.stream(keys.spliterator(), false).flatMap(key -> {
-                        String label = index.getLabel().name();
-                        return distinctTermsCount(label, key).
-                                entrySet().stream().map(e -> new PropertyValueCount(label, key, e.getKey(), e.getValue()));
-                    });
-                }
-        );
+    private IndexTerms indexTerms(String label, String key, Map<String, Object> config) throws SchemaRuleNotFoundException, IndexNotFoundKernelException, DuplicateSchemaRuleException {
+        long limit = Util.toLong(config.getOrDefault("limit", Long.MAX_VALUE));
+        long minCount = Util.toLong(config.getOrDefault("minCount", 1L));
+        String prefix = (String) config.get("prefix");
+        return new IndexTerms(SortedIndexReader.getPartitionReaders(getIndexReader(label, key)), prefix, minCount, limit);
     }
 
     private boolean isKeyIndexed(@Name("index") IndexDefinition index, @Name("key") String key) {
         return StreamSupport.stream(index.getPropertyKeys().spliterator(), false).anyMatch(k -> k.equals(key));
     }
 
-    private Map<String, Integer> distinctTermsCount(@Name("label") String label, @Name("key") String key) {
-        try {
-            SortedIndexReader sortedIndexReader = getSortedIndexReader(label, key, 0, Sort.INDEXORDER);
-
-            Fields fields = MultiFields.getFields(sortedIndexReader.getIndexSearcher().getIndexReader());
-
-            Map<String, Integer> values = new HashMap<>();
-            TermsEnum termsEnum;
-            Terms terms = fields.terms("string");
-            if (terms != null) {
-                termsEnum = terms.iterator();
-                while ((termsEnum.next()) != null) {
-                    values.put(termsEnum.term().utf8ToString(), termsEnum.docFreq());
-                }
-            }
-            return values;
-        } catch (Exception e) {
-            throw new RuntimeException("Error collecting distinct terms of label: " + label + " and key: " + key, e);
-        }
-    }
-
     public static class PropertyValueCount {
         public String label;
         public String key;
-        public String value;
+        public Object value;
         public long count;
 
-        public PropertyValueCount(String label, String key, String value, long count) {
+        public PropertyValueCount(String label, String key, Object value, long count) {
             this.label = label;
             this.key = key;
             this.value = value;
@@ -1,6 +1,11 @@
 package apoc.nodes;
 
+import apoc.Pools;
+import apoc.path.FilterCache;
+import apoc.path.RelationshipFilter;
+import org.neo4j.collection.primitive.Primitive;
 import org.neo4j.collection.primitive.PrimitiveIntIterator;
+import org.neo4j.collection.primitive.PrimitiveLongSet;
 import org.neo4j.helpers.collection.Iterables;
 import org.neo4j.kernel.api.KernelTransaction;
 import org.neo4j.kernel.impl.api.RelationshipVisitor;
@@ -15,10 +20,13 @@ import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.helpers.collection.Iterables;
+import org.neo4j.helpers.collection.Iterators;
 import org.neo4j.helpers.collection.Pair;
 import org.neo4j.kernel.api.ReadOperations;
 import org.neo4j.kernel.api.Statement;
 import org.neo4j.kernel.api.exceptions.EntityNotFoundException;
+import org.neo4j.kernel.api.exceptions.RelationshipTypeIdNotFoundKernelException;
+import org.neo4j.kernel.api.txstate.TxStateHolder;
 import org.neo4j.kernel.impl.api.RelationshipVisitor;
 import org.neo4j.kernel.impl.api.store.RelationshipIterator;
 import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
@@ -27,13 +35,20 @@ import org.neo4j.procedure.*;
 import org.neo4j.storageengine.api.Token;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
-import static apoc.path.RelationshipTypeAndDirections.parse;
+import static apoc.path.FilterCache.relationshipPattern;
 import static apoc.util.Util.map;
 
 public class Nodes {
 
+    private static final int DEFAULT_BATCH_SIZE = 10_000;
+
     @Context public GraphDatabaseAPI db;
     @Context public KernelTransaction ktx;
 
@@ -85,7 +100,7 @@ public class Nodes {
         try (Statement stmt = ktx.acquireStatement()) {
             ReadOperations ops = stmt.readOperations();
             boolean dense = ops.nodeIsDense(id);
-            for (Pair<RelationshipType, Direction> pair : parse(types)) {
+            for (Pair<RelationshipType, Direction> pair : relationshipPattern(types)) {
             int typeId = ops.relationshipTypeGetForName(pair.first().name());
             Direction direction = pair.other();
             boolean hasRelationship = (dense) ?
@@ -106,7 +121,7 @@ public class Nodes {
 
         long startId = start.getId();
         long endId = end.getId();
-        List<Pair<RelationshipType, Direction>> pairs = (types == null || types.isEmpty()) ? null : parse(types);
+        List<Pair<RelationshipType, Direction>> pairs = (types == null || types.isEmpty()) ? null : relationshipPattern(types);
 
         try (Statement stmt = ktx.acquireStatement()) {
             ReadOperations ops = stmt.readOperations();
@@ -120,6 +135,22 @@ public class Nodes {
         }
     }
 
+    @UserFunction("apoc.nodes.connectedWithin")
+    @Description("apoc.nodes.connectedWithin(start, end, [rel-direction-pattern], maxHops) - yields true when the end node can be reached from the start node within maxHops relationships of the pattern")
+    public boolean connectedWithin(@Name("start") Node start, @Name("end") Node end, @Name("types") String types, @Name("maxHops") long maxHops) throws EntityNotFoundException {
+        if (start == null || end == null) return false;
+        if (start.equals(end)) return true;
+        if (maxHops < 1) return false;
+        if (maxHops == 1) return connected(start, end, types);
+
+        try (Statement stmt = ktx.acquireStatement()) {
+            ReadOperations ops = stmt.readOperations();
+            RelationshipFilter filter = FilterCache.of(db).relationshipFilter(ops, types == null || types.isEmpty() ? null : types);
+            if (!filter.canExpand()) return false;
+            return BidirectionalSearch.connected(ops, filter, start.getId(), end.getId(), maxHops);
+        }
+    }
+
     private boolean connected(ReadOperations ops, long start, long end, int[][] typedDirections) throws EntityNotFoundException {
         MatchingRelationshipVisitor matcher = (typedDirections == null) ?
                 new MatchingRelationshipAllVisitor(end) :
@@ -187,6 +218,83 @@ public class Nodes {
         }
     }
 
+    /**
+     * Breadth first search from both ends, each step expands the side whose frontier has fewer matching relationships.
+     * Degrees of dense nodes come from the relationship group counts, so a frontier holding a dense node is expanded last.
+     */
+    static class BidirectionalSearch implements RelationshipVisitor<RuntimeException> {
+        private final ReadOperations ops;
+        private final RelationshipFilter filter;
+        private final PrimitiveLongSet visited = Primitive.longSet();
+        private BidirectionalSearch other;
+        private long[] frontier;
+        private long[] next = new long[16];
+        private int nextSize;
+        private long cost = -1;
+        private long current;
+        private boolean lastHop, met;
+
+        private BidirectionalSearch(ReadOperations ops, RelationshipFilter filter, long node) {
+            this.ops = ops;
+            this.filter = filter;
+            this.frontier = new long[]{node};
+            this.visited.add(node);
+        }
+
+        static boolean connected(ReadOperations ops, RelationshipFilter filter, long start, long end, long maxHops) throws EntityNotFoundException {
+            BidirectionalSearch forward = new BidirectionalSearch(ops, filter, start);
+            BidirectionalSearch backward = new BidirectionalSearch(ops, filter.reverse(), end);
+            forward.other = backward;
+            backward.other = forward;
+            try {
+                for (long hops = 0; hops < maxHops; hops++) {
+                    BidirectionalSearch side = forward.cost() <= backward.cost() ? forward : backward;
+                    if (side.expand(hops == maxHops - 1)) return true;
+                    if (side.frontier.length == 0) return false;
+                }
+                return false;
+            } finally {
+                forward.visited.close();
+                backward.visited.close();
+            }
+        }
+
+        private long cost() throws EntityNotFoundException {
+            if (cost == -1) {
+                cost = 0;
+                for (long node : frontier) cost += filter.degree(ops, node);
+            }
+            return cost;
+        }
+
+        private boolean expand(boolean lastHop) throws EntityNotFoundException {
+            this.lastHop = lastHop;
+            for (long node : frontier) {
+                current = node;
+                filter.expand(ops, node, this);
+                if (met) return true;
+            }
+            frontier = Arrays.copyOf(next, nextSize);
+            nextSize = 0;
+            cost = -1;
+            return false;
+        }
+
+        @Override
+        public void visit(long relationshipId, int typeId, long startNodeId, long endNodeId) {
+            if (met) return;
+            long node = startNodeId == current ? endNodeId : startNodeId;
+            if (other.visited.contains(node)) {
+                met = true;
+                return;
+            }
+            // on the last hop only a meeting with the other side counts, the frontier isn't expanded again
+            if (lastHop || !visited.add(node)) return;
+            if (nextSize == next.length) next = Arrays.copyOf(next, nextSize * 2);
+            next[nextSize++] = node;
+        }
+    }
+
     public static boolean checkRelationships(RelationshipIterator it, MatchingRelationshipVisitor matcher) {
         long id;
         while (it.hasNext()) {
@@ -279,7 +387,7 @@ public class Nodes {
     public long degree(@Name("node") Node node, @Name(value = "types",defaultValue = "") String types) throws EntityNotFoundException {
         if (types==null || types.isEmpty()) return node.getDegree();
         long degree = 0;
-        for (Pair<RelationshipType, Direction> pair : parse(types)) {
+        for (Pair<RelationshipType, Direction> pair : relationshipPattern(types)) {
             degree += node.getDegree(pair.first(), pair.other());
         }
         return degree;
@@ -292,7 +400,7 @@ public class Nodes {
         List<String> relTypes = Iterables.asList(Iterables.map(RelationshipType::name, node.getRelationshipTypes()));
         if (types == null || types.isEmpty()) return relTypes;
         List<String> result = new ArrayList<>(relTypes.size());
-        for (Pair<RelationshipType, Direction> p : parse(types)) {
+        for (Pair<RelationshipType, Direction> p : relationshipPattern(types)) {
             String name = p.first().name();
             if (relTypes.contains(name) && node.hasRelationship(p.first(),p.other())) {
                 result.add(name);
@@ -301,6 +409,106 @@ public class Nodes {
         return result;
     }
 
+    @Procedure("apoc.nodes.degree")
+    @Description("CALL apoc.nodes.degree(nodes, [rel-direction-pattern], {batchSize:10000, parallel:false}) YIELD node, degree - degrees of a list of nodes (or ids), optionally computed in parallel batches")
+    public Stream<NodeDegreeResult> degrees(@Name("nodes") Object nodes, @Name(value = "types", defaultValue = "") String types, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        return forNodes(nodes, types, config, RelationshipFilter::degree, (node, degree) -> new NodeDegreeResult(node, degree));
+    }
+
+    @Procedure("apoc.nodes.relationship.exists")
+    @Description("CALL apoc.nodes.relationship.exists(nodes, [rel-direction-pattern], {batchSize:10000, parallel:false}) YIELD node, exists - checks a list of nodes (or ids) for relationships of the pattern, optionally in parallel batches")
+    public Stream<NodeExistsResult> relationshipsExist(@Name("nodes") Object nodes, @Name(value = "types", defaultValue = "") String types, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        return forNodes(nodes, types, config, RelationshipFilter::exists, (node, exists) -> new NodeExistsResult(node, exists));
+    }
+
+    @Procedure("apoc.nodes.relationship.types")
+    @Description("CALL apoc.nodes.relationship.types(nodes, [rel-direction-pattern], {batchSize:10000, parallel:false}) YIELD node, types - distinct relationship-types of a list of nodes (or ids), optionally computed in parallel batches")
+    public Stream<NodeTypesResult> relationshipsTypes(@Name("nodes") Object nodes, @Name(value = "types", defaultValue = "") String types, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        String[] names;
+        try (Statement stmt = ktx.acquireStatement()) {
+            names = typeNames(stmt.readOperations());
+        }
+        return forNodes(nodes, types, config, RelationshipFilter::types, (node, typeIds) -> {
+            List<String> result = new ArrayList<>(typeIds.length);
+            for (int type : typeIds) result.add(type < names.length && names[type] != null ? names[type] : typeName(type));
+            return new NodeTypesResult(node, result);
+        });
+    }
+
+    private String typeName(int type) {
+        try (Statement stmt = ktx.acquireStatement()) {
+            return stmt.readOperations().relationshipTypeGetName(type);
+        } catch (RelationshipTypeIdNotFoundKernelException e) {
+            throw new RuntimeException("Unknown relationship type id " + type, e);
+        }
+    }
+
+    private static String[] typeNames(ReadOperations ops) {
+        List<Token> tokens = Iterators.asList(ops.relationshipTypesGetAllTokens());
+        int max = -1;
+        for (Token token : tokens) max = Math.max(max, token.id());
+        String[] names = new String[max + 1];
+        for (Token token : tokens) names[token.id()] = token.name();
+        return names;
+    }
+
+    interface NodeMeasure<T> {
+        T apply(RelationshipFilter filter, ReadOperations ops, long node) throws EntityNotFoundException;
+    }
+
+    /**
+     * Resolves the pattern once and measures every node. With parallel:true inputs larger than one batch are split into
+     * batches that are computed in parallel, each in its own read transaction, unless the current transaction has changes,
+     * which those wouldn't see. A batchSize below 1 is treated as 1. Results are returned in input order, ids of missing nodes are skipped.
+     */
+    @SuppressWarnings("unchecked")
+    private <T, R> Stream<R> forNodes(Object nodes, String types, Map<String, Object> config, NodeMeasure<T> measure, BiFunction<Node, T, R> result) {
+        long[] ids = Util.stream(nodes).mapToLong(n -> n instanceof Node ? ((Node) n).getId() : ((Number) n).longValue()).toArray();
+        // batches have at least one node, so the loop over them ends
+        int batchSize = Math.max(1, Util.toInteger(config.getOrDefault("batchSize", DEFAULT_BATCH_SIZE)));
+        boolean parallel = Util.toBoolean(config.getOrDefault("parallel", false))
+                && !(ktx instanceof TxStateHolder && ((TxStateHolder) ktx).hasTxStateWithChanges());
+        RelationshipFilter filter;
+        try (Statement stmt = ktx.acquireStatement()) {
+            filter = FilterCache.of(db).relationshipFilter(stmt.readOperations(), types);
+        }
+        List<Future<Object[]>> batches = new ArrayList<>();
+        if (!parallel || ids.length <= batchSize) {
+            try (Statement stmt = ktx.acquireStatement()) {
+                batches.add(CompletableFuture.completedFuture(measure(filter, stmt.readOperations(), ids, 0, ids.length, measure)));
+            }
+        } else {
+            for (int from = 0; from < ids.length; from += batchSize) {
+                int start = from, end = Math.min(ids.length, from + batchSize);
+                batches.add(Util.inTxFuture(Pools.DEFAULT, db, (stmt, ops) -> measure(filter, ops, ids, start, end, measure)));
+            }
+        }
+        return IntStream.range(0, batches.size()).boxed().flatMap(batch -> {
+            Object[] values;
+            try {
+                values = batches.get(batch).get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new RuntimeException("Error computing batch of nodes", e);
+            }
+            int offset = batch * batchSize;
+            return IntStream.range(0, values.length)
+                    .filter(i -> values[i] != null)
+                    .mapToObj(i -> result.apply(db.getNodeById(ids[offset + i]), (T) values[i]));
+        });
+    }
+
+    private static <T> Object[] measure(RelationshipFilter filter, ReadOperations ops, long[] ids, int start, int end, NodeMeasure<T> measure) {
+        Object[] values = new Object[end - start];
+        for (int i = start; i < end; i++) {
+            try {
+                values[i - start] = measure.apply(filter, ops, ids[i]);
+            } catch (EntityNotFoundException e) {
+                // deleted or unknown node, skipped
+            }
+        }
+        return values;
+    }
+
     @UserFunction
     @Description("apoc.nodes.isDense(node) - returns true if it is a dense node")
     public boolean isDense(@Name("node") Node node) {
@@ -317,6 +525,36 @@ public class Nodes {
         }
     }
 
+    public static class NodeDegreeResult {
+        public final Node node;
+        public final long degree;
+
+        public NodeDegreeResult(Node node, long degree) {
+            this.node = node;
+            this.degree = degree;
+        }
+    }
+
+    public static class NodeExistsResult {
+        public final Node node;
+        public final boolean exists;
+
+        public NodeExistsResult(Node node, boolean exists) {
+            this.node = node;
+            this.exists = exists;
+        }
+    }
+
+    public static class NodeTypesResult {
+        public final Node node;
+        public final List<String> types;
+
+        public NodeTypesResult(Node node, List<String> types) {
+            this.node = node;
+            this.types = types;
+        }
+    }
+
     public static class DenseNodeResult {
         public final Node node;
         public final boolean dense;
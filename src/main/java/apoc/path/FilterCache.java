@@ -0,0 +1,95 @@
+package apoc.path;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.helpers.collection.Pair;
+import org.neo4j.kernel.api.ReadOperations;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.function.Function;
+
+/**
+ * Bounded LRU caches of relationship and label filters keyed by the filter string, so repeated calls with the same
+ * filter neither re-parse it nor resolve its type and label names again.
+ * Parsed patterns only contain names and are shared by all databases, compiled filters hold token ids and are kept
+ * per database. Filters referring to a type or label that doesn't exist yet are not cached, as the token may be created later.
+ */
+public class FilterCache {
+    public static final int MAX_SIZE = 1000;
+
+    private static final Map<String, List<Pair<RelationshipType, Direction>>> RELATIONSHIP_PATTERNS = lru();
+    private static final Map<String, Map<Character, Set<String>>> LABEL_PATTERNS = lru();
+    private static final Map<GraphDatabaseService, FilterCache> DATABASES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Map<String, RelationshipFilter> relationshipFilters = lru();
+    private final Map<String, LabelFilter> labelFilters = lru();
+
+    public static FilterCache of(GraphDatabaseService db) {
+        return DATABASES.computeIfAbsent(db, key -> new FilterCache());
+    }
+
+    /**
+     * @return the cached result of {@link RelationshipTypeAndDirections#parse(String)}, must not be modified
+     */
+    public static List<Pair<RelationshipType, Direction>> relationshipPattern(String filter) {
+        return get(RELATIONSHIP_PATTERNS, filter, key -> Collections.unmodifiableList(RelationshipTypeAndDirections.parse(key)));
+    }
+
+    /**
+     * @return the cached result of {@link PathExplorer.LabelEvaluator#parse(String)}, must not be modified
+     */
+    public static Map<Character, Set<String>> labelPattern(String filter) {
+        return get(LABEL_PATTERNS, filter, key -> {
+            Map<Character, Set<String>> labels = new HashMap<>(4);
+            PathExplorer.LabelEvaluator.parse(key).forEach((operator, names) -> labels.put(operator, Collections.unmodifiableSet(names)));
+            return Collections.unmodifiableMap(labels);
+        });
+    }
+
+    public RelationshipFilter relationshipFilter(ReadOperations ops, String filter) {
+        RelationshipFilter compiled = relationshipFilters.get(filter);
+        if (compiled == null) {
+            compiled = RelationshipFilter.compile(ops, filter);
+            if (compiled.resolved()) relationshipFilters.put(filter, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * @return null if the filter is empty
+     */
+    public LabelFilter labelFilter(ReadOperations ops, String filter) {
+        if (filter == null || filter.trim().isEmpty()) return null;
+        LabelFilter compiled = labelFilters.get(filter);
+        if (compiled == null) {
+            compiled = LabelFilter.compile(ops, filter);
+            if (compiled.resolved()) labelFilters.put(filter, compiled);
+        }
+        return compiled;
+    }
+
+    private static <V> V get(Map<String, V> cache, String key, Function<String, V> compute) {
+        V value = cache.get(key);
+        if (value == null) {
+            value = compute.apply(key);
+            cache.put(key, value);
+        }
+        return value;
+    }
+
+    private static <V> Map<String, V> lru() {
+        return Collections.synchronizedMap(new LinkedHashMap<String, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > MAX_SIZE;
+            }
+        });
+    }
+}
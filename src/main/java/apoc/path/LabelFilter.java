@@ -0,0 +1,108 @@
+package apoc.path;
+
+import org.neo4j.collection.primitive.PrimitiveIntIterator;
+import org.neo4j.kernel.api.ReadOperations;
+import org.neo4j.kernel.api.exceptions.EntityNotFoundException;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Label filter of the path expanders ('+Whitelist|-Blacklist|/Termination|>EndNode') resolved to bit sets of label ids,
+ * nodes are checked by looking up their label ids instead of loading label names.
+ * Labels that don't exist in the database are dropped, a whitelist consisting only of those matches no node.
+ */
+public class LabelFilter {
+    private final BitSet whitelist;
+    private final BitSet blacklist;
+    private final BitSet termination;
+    private final BitSet endNode;
+    private final boolean hasWhitelist;
+    private final boolean endNodesOnly;
+    private final boolean resolved;
+
+    private LabelFilter(BitSet whitelist, BitSet blacklist, BitSet termination, BitSet endNode, boolean hasWhitelist, boolean endNodesOnly, boolean resolved) {
+        this.whitelist = whitelist;
+        this.blacklist = blacklist;
+        this.termination = termination;
+        this.endNode = endNode;
+        this.hasWhitelist = hasWhitelist;
+        this.endNodesOnly = endNodesOnly;
+        this.resolved = resolved;
+    }
+
+    /**
+     * @return null if the filter is empty
+     */
+    public static LabelFilter compile(ReadOperations ops, String labelFilter) {
+        if (labelFilter == null || labelFilter.trim().isEmpty()) return null;
+        Map<Character, Set<String>> labelMap = FilterCache.labelPattern(labelFilter);
+        Set<String> whitelist = labelMap.get('+');
+        Set<String> blacklist = labelMap.get('-');
+        Set<String> termination = labelMap.get('/');
+        Set<String> endNode = labelMap.get('>');
+        BitSet whitelistIds = labelIds(ops, whitelist), blacklistIds = labelIds(ops, blacklist),
+                terminationIds = labelIds(ops, termination), endNodeIds = labelIds(ops, endNode);
+        boolean resolved = whitelistIds.cardinality() == whitelist.size() && blacklistIds.cardinality() == blacklist.size()
+                && terminationIds.cardinality() == termination.size() && endNodeIds.cardinality() == endNode.size();
+        return new LabelFilter(whitelistIds, blacklistIds, terminationIds, endNodeIds,
+                !whitelist.isEmpty(), !termination.isEmpty() || !endNode.isEmpty(), resolved);
+    }
+
+    private static BitSet labelIds(ReadOperations ops, Set<String> labels) {
+        BitSet ids = new BitSet();
+        for (String label : labels) {
+            int id = ops.labelGetForName(label);
+            if (id != -1) ids.set(id);
+        }
+        return ids;
+    }
+
+    /**
+     * @return false if a label of the filter didn't exist when it was compiled
+     */
+    boolean resolved() {
+        return resolved;
+    }
+
+    public int[] labels(ReadOperations ops, long node) throws EntityNotFoundException {
+        PrimitiveIntIterator it = ops.nodeGetLabels(node);
+        int[] labels = new int[4];
+        int size = 0;
+        while (it.hasNext()) {
+            if (size == labels.length) labels = Arrays.copyOf(labels, size * 2);
+            labels[size++] = it.next();
+        }
+        return size == labels.length ? labels : Arrays.copyOf(labels, size);
+    }
+
+    public boolean endNodesOnly() {
+        return endNodesOnly;
+    }
+
+    public boolean blacklisted(int[] labels) {
+        return any(labels, blacklist);
+    }
+
+    public boolean whitelisted(int[] labels) {
+        return !hasWhitelist || any(labels, whitelist);
+    }
+
+    public boolean terminationNode(int[] labels) {
+        return any(labels, termination);
+    }
+
+    public boolean endNode(int[] labels) {
+        return any(labels, endNode);
+    }
+
+    private static boolean any(int[] labels, BitSet filter) {
+        if (filter.isEmpty()) return false;
+        for (int label : labels) {
+            if (filter.get(label)) return true;
+        }
+        return false;
+    }
+}
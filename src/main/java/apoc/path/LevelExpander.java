@@ -0,0 +1,387 @@
+package apoc.path;
+
+import apoc.util.AtomicBitSet;
+import apoc.util.Util;
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongCollections;
+import org.neo4j.collection.primitive.PrimitiveLongIterator;
+import org.neo4j.collection.primitive.PrimitiveLongLongMap;
+import org.neo4j.collection.primitive.PrimitiveLongSet;
+import org.neo4j.graphalgo.impl.util.PathImpl;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.api.ReadOperations;
+import org.neo4j.kernel.api.Statement;
+import org.neo4j.kernel.api.exceptions.EntityNotFoundException;
+import org.neo4j.kernel.impl.api.RelationshipVisitor;
+import org.neo4j.kernel.impl.store.id.IdGeneratorFactory;
+import org.neo4j.kernel.impl.store.id.IdType;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Level synchronous breadth first expansion with global node uniqueness on kernel relationship iterators.
+ * Equivalent to a breadth first traversal with {@code NODE_GLOBAL} uniqueness and the {@link PathExplorer.LabelEvaluator},
+ * but the frontier is a long[] of node ids and visited nodes are kept in a primitive set.
+ * Results are produced lazily, paths are only materialized from the recorded parent relationships when requested.
+ */
+public class LevelExpander {
+    static final int INCLUDE = 1;
+    static final int CONTINUE = 2;
+
+    private final KernelTransaction ktx;
+    private final RelationshipFilter relationshipFilter;
+    private final LabelFilter labelFilter;
+    private final long minLevel;
+    private final long maxLevel;
+    private final boolean filterStartNode;
+    private final long limit;
+    private final AtomicLong resultCount = new AtomicLong();
+
+    private final PrimitiveLongSet visited = Primitive.longSet();
+    // parent relationship of each reached node, only tracked if paths are needed
+    private final PrimitiveLongLongMap parents;
+
+    /**
+     * @param labelFilter null to accept all nodes
+     */
+    public LevelExpander(KernelTransaction ktx, RelationshipFilter relationshipFilter, LabelFilter labelFilter, long minLevel, long maxLevel, boolean filterStartNode, long limit, boolean trackPaths) {
+        this.ktx = ktx;
+        this.relationshipFilter = relationshipFilter;
+        this.labelFilter = labelFilter;
+        this.minLevel = minLevel;
+        this.maxLevel = maxLevel;
+        this.filterStartNode = filterStartNode;
+        this.limit = limit;
+        this.parents = trackPaths ? Primitive.longLongMap() : null;
+    }
+
+    /**
+     * @return the node ids of the result nodes in breadth first order
+     */
+    public PrimitiveLongIterator expand(long[] startNodes) {
+        return new LevelIterator(startNodes);
+    }
+
+    public Stream<Node> nodes(GraphDatabaseService db, long[] startNodes) {
+        return nodes(db, expand(startNodes));
+    }
+
+    /**
+     * Expands the frontier of each level in parallel batches on the pool, every batch in its own read transaction,
+     * so the workers only see committed data. Visited nodes are marked in a concurrent bitmap over the node id range at the start,
+     * the few ids above it of nodes created since then are kept in a shared primitive set.
+     * The next level is expanded when all results of the current level have been consumed.
+     */
+    public Stream<Node> parallelNodes(GraphDatabaseAPI db, ExecutorService pool, long[] startNodes, int batchSize) {
+        return nodes(db, new ParallelLevelIterator(db, pool, startNodes, batchSize));
+    }
+
+    private Stream<Node> nodes(GraphDatabaseService db, PrimitiveLongIterator it) {
+        return stream(new Iterator<Node>() {
+            public boolean hasNext() { return it.hasNext(); }
+            public Node next() { return db.getNodeById(it.next()); }
+        });
+    }
+
+    public Stream<Path> paths(GraphDatabaseService db, long[] startNodes) {
+        if (parents == null) throw new IllegalStateException("Paths are not tracked by this expander");
+        PrimitiveLongIterator it = expand(startNodes);
+        return stream(new Iterator<Path>() {
+            public boolean hasNext() { return it.hasNext(); }
+            public Path next() { return path(db, it.next()); }
+        });
+    }
+
+    private <T> Stream<T> stream(Iterator<T> it) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(this::close);
+    }
+
+    /**
+     * walks the parent relationships back to the start node
+     */
+    Path path(GraphDatabaseService db, long nodeId) {
+        List<Relationship> rels = new ArrayList<>();
+        Node node = db.getNodeById(nodeId);
+        long parent;
+        while ((parent = parents.get(nodeId)) != -1) {
+            Relationship rel = db.getRelationshipById(parent);
+            rels.add(rel);
+            node = rel.getOtherNode(node);
+            nodeId = node.getId();
+        }
+        PathImpl.Builder builder = new PathImpl.Builder(node);
+        for (int i = rels.size() - 1; i >= 0; i--) {
+            builder = builder.push(rels.get(i));
+        }
+        return builder.build();
+    }
+
+    int evaluate(ReadOperations ops, long node, int depth) throws EntityNotFoundException {
+        int result = INCLUDE | CONTINUE;
+        if (maxLevel != -1 && depth >= maxLevel) result &= ~CONTINUE;
+        if (minLevel != -1 && depth < minLevel) result &= ~INCLUDE;
+        if (labelFilter != null) result &= evaluateLabels(ops, node, depth);
+        return result;
+    }
+
+    // same decisions as PathExplorer.LabelEvaluator
+    private int evaluateLabels(ReadOperations ops, long node, int depth) throws EntityNotFoundException {
+        if (depth == 0 && !filterStartNode) {
+            return labelFilter.endNodesOnly() ? CONTINUE : INCLUDE | CONTINUE;
+        }
+        int[] labels = labelFilter.labels(ops, node);
+        if (depth < minLevel) {
+            return labelFilter.blacklisted(labels) || !labelFilter.whitelisted(labels) ? 0 : CONTINUE;
+        }
+        if (limit != -1 && resultCount.get() >= limit) return 0;
+        if (labelFilter.blacklisted(labels)) return 0;
+        if (labelFilter.terminationNode(labels)) {
+            return countResult() ? INCLUDE : 0;
+        }
+        if (labelFilter.endNode(labels)) {
+            if (!countResult()) return 0;
+            return labelFilter.whitelisted(labels) ? INCLUDE | CONTINUE : INCLUDE;
+        }
+        if (!labelFilter.whitelisted(labels)) return 0;
+        return labelFilter.endNodesOnly() ? CONTINUE : INCLUDE | CONTINUE;
+    }
+
+    // concurrent workers can pass the limit check together, only the ones within the limit count
+    private boolean countResult() {
+        long count = resultCount.incrementAndGet();
+        return limit == -1 || count <= limit;
+    }
+
+    private class LevelIterator extends PrimitiveLongCollections.PrimitiveLongBaseIterator implements RelationshipVisitor<EntityNotFoundException> {
+        private final long[] startNodes;
+        private int startIndex;
+
+        private long[] frontier = new long[0];
+        private int frontierIndex;
+        private long[] nextLevel = new long[16];
+        private int nextSize;
+        // depth of the nodes in the frontier
+        private int depth = -1;
+
+        // results found while expanding the current node, handed out before the next node is expanded
+        private long[] ready = new long[16];
+        private int readyIndex, readySize;
+
+        private ReadOperations ops;
+        private long current;
+
+        LevelIterator(long[] startNodes) {
+            this.startNodes = startNodes;
+        }
+
+        @Override
+        protected boolean fetchNext() {
+            if (readyIndex < readySize) return next(ready[readyIndex++]);
+            readyIndex = readySize = 0;
+            try (Statement stmt = ktx.acquireStatement()) {
+                ops = stmt.readOperations();
+                while (readySize == 0) {
+                    if (startIndex < startNodes.length) {
+                        long node = startNodes[startIndex++];
+                        if (visited.add(node)) reached(node, -1);
+                    } else if (frontierIndex < frontier.length) {
+                        current = frontier[frontierIndex++];
+                        relationshipFilter.expand(ops, current, this);
+                    } else if (nextSize > 0) {
+                        frontier = Arrays.copyOf(nextLevel, nextSize);
+                        frontierIndex = 0;
+                        nextSize = 0;
+                        depth++;
+                    } else {
+                        return false;
+                    }
+                }
+            } catch (EntityNotFoundException e) {
+                throw new RuntimeException("Node was deleted during expansion", e);
+            } finally {
+                ops = null;
+            }
+            return next(ready[readyIndex++]);
+        }
+
+        @Override
+        public void visit(long relId, int type, long startNode, long endNode) throws EntityNotFoundException {
+            long other = startNode == current ? endNode : startNode;
+            if (visited.add(other)) reached(other, relId);
+        }
+
+        private void reached(long node, long relId) throws EntityNotFoundException {
+            int nodeDepth = relId == -1 ? 0 : depth + 1;
+            int evaluation = evaluate(ops, node, nodeDepth);
+            if (evaluation == 0) return;
+            if (parents != null && relId != -1) parents.put(node, relId);
+            if ((evaluation & INCLUDE) != 0) {
+                if (readySize == ready.length) ready = Arrays.copyOf(ready, readySize * 2);
+                ready[readySize++] = node;
+            }
+            if ((evaluation & CONTINUE) != 0 && relationshipFilter.canExpand()) {
+                if (nextSize == nextLevel.length) nextLevel = Arrays.copyOf(nextLevel, nextSize * 2);
+                nextLevel[nextSize++] = node;
+            }
+        }
+    }
+
+    private class ParallelLevelIterator extends PrimitiveLongCollections.PrimitiveLongBaseIterator {
+        private final GraphDatabaseAPI db;
+        private final ExecutorService pool;
+        private final int batchSize;
+        private final AtomicBitSet visited;
+        // visited ids beyond the bitmap, guarded by itself
+        private final PrimitiveLongSet visitedBeyond = Primitive.longSet();
+
+        private long[] frontier;
+        // depth of the nodes in the frontier
+        private int depth;
+        private long[] results;
+        private int resultIndex;
+
+        ParallelLevelIterator(GraphDatabaseAPI db, ExecutorService pool, long[] startNodes, int batchSize) {
+            this.db = db;
+            this.pool = pool;
+            this.batchSize = Math.max(1, batchSize);
+            this.visited = new AtomicBitSet(db.getDependencyResolver().resolveDependency(IdGeneratorFactory.class).get(IdType.NODE).getHighId());
+            // start nodes are evaluated in the calling transaction, they might have been created in it
+            LongBuffer results = new LongBuffer(), next = new LongBuffer();
+            try (Statement stmt = ktx.acquireStatement()) {
+                ReadOperations ops = stmt.readOperations();
+                for (long node : startNodes) {
+                    if (visit(node)) reached(ops, node, 0, results, next);
+                }
+            } catch (EntityNotFoundException e) {
+                throw new RuntimeException("Start node was deleted", e);
+            }
+            this.results = results.toArray();
+            this.frontier = next.toArray();
+        }
+
+        @Override
+        protected boolean fetchNext() {
+            while (resultIndex == results.length) {
+                if (frontier.length == 0) return false;
+                expandLevel();
+            }
+            return next(results[resultIndex++]);
+        }
+
+        private void expandLevel() {
+            long[] current = frontier;
+            int childDepth = depth + 1;
+            List<Future<LongBuffer[]>> futures = new ArrayList<>(current.length / batchSize + 1);
+            for (int from = 0; from < current.length; from += batchSize) {
+                int batchStart = from;
+                int batchEnd = Math.min(current.length, from + batchSize);
+                futures.add(Util.inTxFuture(pool, db, (stmt, ops) -> expandBatch(ops, current, batchStart, batchEnd, childDepth)));
+            }
+            LongBuffer results = new LongBuffer(), next = new LongBuffer();
+            for (Future<LongBuffer[]> future : futures) {
+                try {
+                    LongBuffer[] batch = future.get();
+                    results.addAll(batch[0]);
+                    next.addAll(batch[1]);
+                } catch (InterruptedException | ExecutionException e) {
+                    throw new RuntimeException("Error expanding level " + childDepth, e);
+                }
+            }
+            this.results = results.toArray();
+            this.resultIndex = 0;
+            this.frontier = next.toArray();
+            this.depth = childDepth;
+        }
+
+        private LongBuffer[] expandBatch(ReadOperations ops, long[] nodes, int from, int to, int depth) {
+            LongBuffer results = new LongBuffer(), next = new LongBuffer();
+            BatchVisitor visitor = new BatchVisitor(ops, depth, results, next);
+            for (int i = from; i < to; i++) {
+                visitor.current = nodes[i];
+                try {
+                    relationshipFilter.expand(ops, visitor.current, visitor);
+                } catch (EntityNotFoundException e) {
+                    // deleted by a concurrent transaction after it was reached
+                }
+            }
+            return new LongBuffer[]{results, next};
+        }
+
+        private class BatchVisitor implements RelationshipVisitor<EntityNotFoundException> {
+            private final ReadOperations ops;
+            private final int depth;
+            private final LongBuffer results, next;
+            long current;
+
+            BatchVisitor(ReadOperations ops, int depth, LongBuffer results, LongBuffer next) {
+                this.ops = ops;
+                this.depth = depth;
+                this.results = results;
+                this.next = next;
+            }
+
+            @Override
+            public void visit(long relId, int type, long startNode, long endNode) throws EntityNotFoundException {
+                long other = startNode == current ? endNode : startNode;
+                if (visit(other)) reached(ops, other, depth, results, next);
+            }
+        }
+
+        /**
+         * @return true if the node was not visited before, only one of several concurrent callers for the same node succeeds
+         */
+        private boolean visit(long node) {
+            if (node < visited.size()) return visited.add(node);
+            synchronized (visitedBeyond) {
+                return visitedBeyond.add(node);
+            }
+        }
+
+        private void reached(ReadOperations ops, long node, int depth, LongBuffer results, LongBuffer next) throws EntityNotFoundException {
+            int evaluation = evaluate(ops, node, depth);
+            if ((evaluation & INCLUDE) != 0) results.add(node);
+            if ((evaluation & CONTINUE) != 0 && relationshipFilter.canExpand()) next.add(node);
+        }
+    }
+
+    private static class LongBuffer {
+        private long[] values = new long[16];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        void addAll(LongBuffer other) {
+            if (size + other.size > values.length) values = Arrays.copyOf(values, Math.max(size + other.size, size * 2));
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    public void close() {
+        visited.close();
+        if (parents != null) parents.close();
+    }
+}
@@ -1,15 +1,22 @@
 package apoc.path;
 
+import apoc.Pools;
 import apoc.algo.Cover;
 import apoc.result.GraphResult;
 import apoc.result.NodeResult;
 import org.neo4j.procedure.Description;
 import apoc.result.PathResult;
+import apoc.util.QueueStream;
 import apoc.util.Util;
 import org.neo4j.graphdb.*;
 import org.neo4j.graphdb.traversal.Evaluation;
 import org.neo4j.graphdb.traversal.*;
 import org.neo4j.helpers.collection.Pair;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.api.Statement;
+import org.neo4j.kernel.api.exceptions.EntityNotFoundException;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Name;
@@ -27,9 +34,19 @@ public class PathExplorer {
 	private static final String VERSION = "0.5";
 	public static final Uniqueness UNIQUENESS = Uniqueness.RELATIONSHIP_PATH;
 	public static final boolean BFS = true;
+	// 'kernel' expands level by level on kernel relationship iterators with primitive visited sets, 'traversal' uses the traversal framework
+	public static final String ENGINE_KERNEL = "kernel";
+	public static final String ENGINE_TRAVERSAL = "traversal";
+	// frontier nodes expanded per worker transaction with parallel:true
+	public static final int PARALLEL_BATCH_SIZE = 1000;
+	// paths buffered between parallel expandConfig traversals and the caller
+	public static final int PARALLEL_QUEUE_SIZE = 1000;
 	@Context
     public GraphDatabaseService db;
 
+	@Context
+	public KernelTransaction ktx;
+
 	@Context
     public Log log;
 
@@ -46,42 +63,53 @@ public class PathExplorer {
 
 	//
 	@Procedure("apoc.path.expandConfig")
-	@Description("apoc.path.expandConfig(startNode <id>|Node|list, {minLevel,maxLevel,uniqueness,relationshipFilter,labelFilter,uniqueness:'RELATIONSHIP_PATH',bfs:true, filterStartNode:false}) yield path expand from start node following the given relationships from min to max-level adhering to the label filters")
+	@Description("apoc.path.expandConfig(startNode <id>|Node|list, {minLevel,maxLevel,uniqueness,relationshipFilter,labelFilter,uniqueness:'RELATIONSHIP_PATH',bfs:true, filterStartNode:false, engine:'traversal', parallel:false, batchSize:1}) yield path expand from start node following the given relationships from min to max-level adhering to the label filters")
 	public Stream<PathResult> expandConfig(@Name("start") Object start, @Name("config") Map<String,Object> config) throws Exception {
+		if (Util.toBoolean(config.getOrDefault("parallel", false)) && !useLevelExpander(config, ENGINE_TRAVERSAL)) {
+			return optional(config, parallelExpand(startToNodes(start), config)).map( PathResult::new );
+		}
 		return expandConfigPrivate(start, config).map( PathResult::new );
 	}
 
 	@Procedure("apoc.path.subgraphNodes")
-	@Description("apoc.path.subgraphNodes(startNode <id>|Node|list, {maxLevel,relationshipFilter,labelFilter,bfs:true, filterStartNode:false}) yield node expand the subgraph nodes reachable from start node following relationships to max-level adhering to the label filters")
+	@Description("apoc.path.subgraphNodes(startNode <id>|Node|list, {maxLevel,relationshipFilter,labelFilter,bfs:true, filterStartNode:false, engine:'kernel', parallel:false, batchSize:1000}) yield node expand the subgraph nodes reachable from start node following relationships to max-level adhering to the label filters")
 	public Stream<NodeResult> subgraphNodes(@Name("start") Object start, @Name("config") Map<String,Object> config) throws Exception {
 		Map<String, Object> configMap = new HashMap<>(config);
 		configMap.remove("minLevel");
 		configMap.put("uniqueness", "NODE_GLOBAL");
 
+		if (useLevelExpander(configMap, ENGINE_KERNEL)) {
+			return optional(configMap, expandSubgraphNodes(start, configMap)).map( NodeResult::new );
+		}
 		return expandConfigPrivate(start, configMap).map( path -> path == null ? new NodeResult(null) : new NodeResult(path.endNode()) );
 	}
 
 	@Procedure("apoc.path.subgraphAll")
-	@Description("apoc.path.subgraphAll(startNode <id>|Node|list, {maxLevel,relationshipFilter,labelFilter,bfs:true, filterStartNode:false}) yield nodes, relationships expand the subgraph reachable from start node following relationships to max-level adhering to the label filters, and also return all relationships within the subgraph")
+	@Description("apoc.path.subgraphAll(startNode <id>|Node|list, {maxLevel,relationshipFilter,labelFilter,bfs:true, filterStartNode:false, engine:'kernel', parallel:false, batchSize:1000}) yield nodes, relationships expand the subgraph reachable from start node following relationships to max-level adhering to the label filters, and also return all relationships within the subgraph")
 	public Stream<GraphResult> subgraphAll(@Name("start") Object start, @Name("config") Map<String,Object> config) throws Exception {
 		Map<String, Object> configMap = new HashMap<>(config);
 		configMap.remove("minLevel");
 		configMap.remove("optional"); // not needed, will return empty collections anyway if no results
 		configMap.put("uniqueness", "NODE_GLOBAL");
 
-		List<Node> subgraphNodes = expandConfigPrivate(start, configMap).map( Path::endNode ).collect(Collectors.toList());
+		List<Node> subgraphNodes = useLevelExpander(configMap, ENGINE_KERNEL) ?
+				expandSubgraphNodes(start, configMap).collect(Collectors.toList()) :
+				expandConfigPrivate(start, configMap).map( Path::endNode ).collect(Collectors.toList());
 		List<Relationship> subgraphRels = Cover.coverNodes(subgraphNodes).collect(Collectors.toList());
 
 		return Stream.of(new GraphResult(subgraphNodes, subgraphRels));
 	}
 
 	@Procedure("apoc.path.spanningTree")
-	@Description("apoc.path.spanningTree(startNode <id>|Node|list, {maxLevel,relationshipFilter,labelFilter,bfs:true, filterStartNode:false}) yield path expand a spanning tree reachable from start node following relationships to max-level adhering to the label filters")
+	@Description("apoc.path.spanningTree(startNode <id>|Node|list, {maxLevel,relationshipFilter,labelFilter,bfs:true, filterStartNode:false, engine:'kernel'}) yield path expand a spanning tree reachable from start node following relationships to max-level adhering to the label filters")
 	public Stream<PathResult> spanningTree(@Name("start") Object start, @Name("config") Map<String,Object> config) throws Exception {
 		Map<String, Object> configMap = new HashMap<>(config);
 		configMap.remove("minLevel");
 		configMap.put("uniqueness", "NODE_GLOBAL");
 
+		if (useLevelExpander(configMap, ENGINE_KERNEL)) {
+			return optional(configMap, levelExpander(configMap, true).paths(db, startToNodeIds(start))).map( PathResult::new );
+		}
 		return expandConfigPrivate(start, configMap).map( PathResult::new );
 	}
 
@@ -122,7 +150,57 @@ public class PathExplorer {
 		throw new Exception("Unsupported data type for start parameter a Node or an Identifier (long) of a Node must be given!");
 	}
 
+	/**
+	 * The level expander produces the same results as a breadth first traversal with global node uniqueness,
+	 * other traversals always use the traversal framework.
+	 */
+	private boolean useLevelExpander(Map<String,Object> config, String defaultEngine) {
+		String engine = (String) config.getOrDefault("engine", defaultEngine);
+		return ENGINE_KERNEL.equalsIgnoreCase(engine)
+				&& Util.toBoolean(config.getOrDefault("bfs", true))
+				&& getUniqueness((String) config.getOrDefault("uniqueness", UNIQUENESS.name())) == Uniqueness.NODE_GLOBAL;
+	}
+
+	private LevelExpander levelExpander(Map<String,Object> config, boolean trackPaths) {
+		FilterCache filters = FilterCache.of(db);
+		RelationshipFilter relationshipFilter;
+		LabelFilter labelFilter;
+		try (Statement stmt = ktx.acquireStatement()) {
+			relationshipFilter = filters.relationshipFilter(stmt.readOperations(), (String) config.getOrDefault("relationshipFilter", null));
+			labelFilter = filters.labelFilter(stmt.readOperations(), (String) config.getOrDefault("labelFilter", null));
+		}
+		return new LevelExpander(ktx, relationshipFilter, labelFilter,
+				Util.toLong(config.getOrDefault("minLevel", "-1")),
+				Util.toLong(config.getOrDefault("maxLevel", "-1")),
+				Util.toBoolean(config.getOrDefault("filterStartNode", false)),
+				Util.toLong(config.getOrDefault("limit", "-1")),
+				trackPaths);
+	}
+
+	private Stream<Node> expandSubgraphNodes(Object start, Map<String,Object> config) throws Exception {
+		LevelExpander expander = levelExpander(config, false);
+		if (Util.toBoolean(config.getOrDefault("parallel", false))) {
+			int batchSize = Util.toLong(config.getOrDefault("batchSize", PARALLEL_BATCH_SIZE)).intValue();
+			return expander.parallelNodes((GraphDatabaseAPI) db, Pools.DEFAULT, startToNodeIds(start), batchSize);
+		}
+		return expander.nodes(db, startToNodeIds(start));
+	}
+
+	private long[] startToNodeIds(Object start) throws Exception {
+		List<Node> nodes = startToNodes(start);
+		long[] ids = new long[nodes.size()];
+		for (int i = 0; i < ids.length; i++) ids[i] = nodes.get(i).getId();
+		return ids;
+	}
+
+	private <T> Stream<T> optional(Map<String,Object> config, Stream<T> results) {
+		return Util.toBoolean(config.getOrDefault("optional", false)) ? optionalStream(results).onClose(results::close) : results;
+	}
+
 	private Stream<Path> expandConfigPrivate(@Name("start") Object start, @Name("config") Map<String,Object> config) throws Exception {
+		if (useLevelExpander(config, ENGINE_TRAVERSAL)) {
+			return optional(config, levelExpander(config, true).paths(db, startToNodeIds(start)));
+		}
 		List<Node> nodes = startToNodes(start);
 
 		String uniqueness = (String) config.getOrDefault("uniqueness", UNIQUENESS.name());
@@ -144,6 +222,43 @@ public class PathExplorer {
 		}
 	}
 
+	/**
+	 * Runs a separate traversal for every batch of start nodes on the default pool, each in its own read transaction,
+	 * so the limit applies per traversal. Paths are handed over through a bounded queue as soon as they are found,
+	 * workers wait while the queue is full and stop when the stream is closed. Paths of different batches interleave.
+	 */
+	private Stream<Path> parallelExpand(List<Node> startNodes, Map<String,Object> config) {
+		String relationshipFilter = (String) config.getOrDefault("relationshipFilter", null);
+		String labelFilter = (String) config.getOrDefault("labelFilter", null);
+		long minLevel = Util.toLong(config.getOrDefault("minLevel", "-1"));
+		long maxLevel = Util.toLong(config.getOrDefault("maxLevel", "-1"));
+		boolean bfs = Util.toBoolean(config.getOrDefault("bfs",true));
+		boolean filterStartNode = Util.toBoolean(config.getOrDefault("filterStartNode", false));
+		long limit = Util.toLong(config.getOrDefault("limit", "-1"));
+		Uniqueness uniqueness = getUniqueness((String) config.getOrDefault("uniqueness", UNIQUENESS.name()));
+		int batchSize = Math.max(1, Util.toLong(config.getOrDefault("batchSize", 1)).intValue());
+		int queueSize = Math.max(1, Util.toLong(config.getOrDefault("queueSize", PARALLEL_QUEUE_SIZE)).intValue());
+
+		List<List<Node>> batches = new ArrayList<>();
+		for (int from = 0; from < startNodes.size(); from += batchSize) {
+			batches.add(startNodes.subList(from, Math.min(startNodes.size(), from + batchSize)));
+		}
+		ThreadToStatementContextBridge bridge = ((GraphDatabaseAPI) db).getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class);
+		FilterCache filters = FilterCache.of(db);
+
+		return QueueStream.<List<Node>, Path>parallel(ktx, Pools.DEFAULT, Pools.getNoThreadsInDefaultPool(), queueSize, batches, (batch, sink) -> {
+			try (Transaction tx = db.beginTx()) {
+				KernelTransaction workerTx = bridge.getKernelTransactionBoundToThisThread(true);
+				Iterator<Path> paths = traverse(db.traversalDescription(), workerTx, filters, batch, relationshipFilter, labelFilter,
+						minLevel, maxLevel, uniqueness, bfs, filterStartNode, limit).iterator();
+				for (long count = 0; paths.hasNext() && (limit == -1 || count < limit); count++) {
+					if (!sink.accept(paths.next())) break;
+				}
+				tx.success();
+			}
+		});
+	}
+
 	private Stream<Path> explorePathPrivate(Iterable<Node> startNodes
 			, String pathFilter
 			, String labelFilter
@@ -153,7 +268,7 @@ public class PathExplorer {
 		// -|Label|:Label|:Label excluded label list
 		// +:Label or :Label include labels
 
-		Traverser traverser = traverse(db.traversalDescription(), startNodes, pathFilter, labelFilter, minLevel, maxLevel, uniqueness,bfs,filterStartNode,limit);
+		Traverser traverser = traverse(db.traversalDescription(), ktx, FilterCache.of(db), startNodes, pathFilter, labelFilter, minLevel, maxLevel, uniqueness,bfs,filterStartNode,limit);
 		return traverser.stream();
 	}
 
@@ -162,13 +277,13 @@ public class PathExplorer {
 	 * @param stream the input stream
 	 * @return a stream of a single null value if the input stream is empty, otherwise returns the equivalent of the input stream
 	 */
-	private Stream<Path> optionalStream(Stream<Path> stream) {
-		Stream<Path> optionalStream;
-		Iterator<Path> itr = stream.iterator();
+	private <T> Stream<T> optionalStream(Stream<T> stream) {
+		Stream<T> optionalStream;
+		Iterator<T> itr = stream.iterator();
 		if (itr.hasNext()) {
 			optionalStream = StreamSupport.stream(Spliterators.spliteratorUnknownSize(itr, 0), false);
 		} else {
-			List<Path> listOfNull = new ArrayList<>();
+			List<T> listOfNull = new ArrayList<>();
 			listOfNull.add(null);
 			optionalStream = listOfNull.stream();
 		}
@@ -176,13 +291,13 @@ public class PathExplorer {
 		return optionalStream;
 	}
 
-	public static Traverser traverse(TraversalDescription traversalDescription, Iterable<Node> startNodes, String pathFilter, String labelFilter, long minLevel, long maxLevel, Uniqueness uniqueness, boolean bfs, boolean filterStartNode, long limit) {
+	public static Traverser traverse(TraversalDescription traversalDescription, KernelTransaction ktx, FilterCache filters, Iterable<Node> startNodes, String pathFilter, String labelFilter, long minLevel, long maxLevel, Uniqueness uniqueness, boolean bfs, boolean filterStartNode, long limit) {
 		TraversalDescription td = traversalDescription;
 		// based on the pathFilter definition now the possible relationships and directions must be shown
 
 		td = bfs ? td.breadthFirst() : td.depthFirst();
 
-		Iterable<Pair<RelationshipType, Direction>> relDirIterable = RelationshipTypeAndDirections.parse(pathFilter);
+		Iterable<Pair<RelationshipType, Direction>> relDirIterable = FilterCache.relationshipPattern(pathFilter);
 
 		for (Pair<RelationshipType, Direction> pair: relDirIterable) {
 			if (pair.first() == null) {
@@ -196,7 +311,11 @@ public class PathExplorer {
 		if (maxLevel != -1) td = td.evaluator(Evaluators.toDepth((int) maxLevel));
 
 		if (labelFilter != null && !labelFilter.trim().isEmpty()) {
-			td = td.evaluator(new LabelEvaluator(labelFilter, filterStartNode, limit, (int) minLevel));
+			LabelFilter filter;
+			try (Statement stmt = ktx.acquireStatement()) {
+				filter = filters.labelFilter(stmt.readOperations(), labelFilter);
+			}
+			td = td.evaluator(new LabelEvaluator(ktx, filter, filterStartNode, limit, (int) minLevel));
 		}
 
 		td = td.uniqueness(uniqueness); // this is how Cypher works !! Uniqueness.RELATIONSHIP_PATH
@@ -205,21 +324,27 @@ public class PathExplorer {
 	}
 
 	public static class LabelEvaluator implements Evaluator {
-		private Set<String> whitelistLabels;
-		private Set<String> blacklistLabels;
-		private Set<String> terminationLabels;
-		private Set<String> endNodeLabels;
+		private final KernelTransaction ktx;
+		private final LabelFilter labelFilter;
 		private Evaluation whitelistAllowedEvaluation;
-		private boolean endNodesOnly;
 		private boolean filterStartNode;
 		private long limit = -1;
 		private long minLevel = -1;
 		private long resultCount = 0;
 
-		public LabelEvaluator(String labelFilter, boolean filterStartNode, long limit, int minLevel) {
+		public LabelEvaluator(KernelTransaction ktx, LabelFilter labelFilter, boolean filterStartNode, long limit, int minLevel) {
+			this.ktx = ktx;
+			this.labelFilter = labelFilter;
 			this.filterStartNode = filterStartNode;
 			this.limit = limit;
 			this.minLevel = minLevel;
+			whitelistAllowedEvaluation = labelFilter.endNodesOnly() ? EXCLUDE_AND_CONTINUE : INCLUDE_AND_CONTINUE;
+		}
+
+		/**
+		 * @return label names per operator '+', '-', '/' and '>', empty sets for operators not used
+		 */
+		public static Map<Character, Set<String>> parse(String labelFilter) {
 			Map<Character, Set<String>> labelMap = new HashMap<>(4);
 
 			if (labelFilter !=  null && !labelFilter.isEmpty()) {
@@ -250,18 +375,15 @@ public class PathExplorer {
 				}
 			}
 
-			whitelistLabels = labelMap.computeIfAbsent('+', character -> Collections.emptySet());
-			blacklistLabels = labelMap.computeIfAbsent('-', character -> Collections.emptySet());
-			terminationLabels = labelMap.computeIfAbsent('/', character -> Collections.emptySet());
-			endNodeLabels = labelMap.computeIfAbsent('>', character -> Collections.emptySet());
-			endNodesOnly = !terminationLabels.isEmpty() || !endNodeLabels.isEmpty();
-			whitelistAllowedEvaluation = endNodesOnly ? EXCLUDE_AND_CONTINUE : INCLUDE_AND_CONTINUE;
+			for (char operator : new char[] {'+', '-', '/', '>'}) {
+				labelMap.computeIfAbsent(operator, character -> Collections.emptySet());
+			}
+			return labelMap;
 		}
 
 		@Override
 		public Evaluation evaluate(Path path) {
 			int depth = path.length();
-			Node check = path.endNode();
 
 			// if start node shouldn't be filtered, exclude/include based on if using termination/endnode filter or not
 			// minLevel evaluator will separately enforce exclusion if we're below minLevel
@@ -269,9 +391,11 @@ public class PathExplorer {
 				return whitelistAllowedEvaluation;
 			}
 
+			int[] labels = labels(path.endNode());
+
 			// below minLevel always exclude; continue if blacklist and whitelist allow it
 			if (depth < minLevel) {
-				return labelExists(check, blacklistLabels) || !whitelistAllowed(check) ? EXCLUDE_AND_PRUNE : EXCLUDE_AND_CONTINUE;
+				return labelFilter.blacklisted(labels) || !labelFilter.whitelisted(labels) ? EXCLUDE_AND_PRUNE : EXCLUDE_AND_CONTINUE;
 			}
 
 			// cut off expansion when we reach the limit
@@ -279,34 +403,25 @@ public class PathExplorer {
 				return EXCLUDE_AND_PRUNE;
 			}
 
-			Evaluation result = labelExists(check, blacklistLabels) ? EXCLUDE_AND_PRUNE :
-					labelExists(check, terminationLabels) ? filterEndNode(check, true) :
-					labelExists(check, endNodeLabels) ? filterEndNode(check, false) :
-					whitelistAllowed(check) ? whitelistAllowedEvaluation : EXCLUDE_AND_PRUNE;
+			Evaluation result = labelFilter.blacklisted(labels) ? EXCLUDE_AND_PRUNE :
+					labelFilter.terminationNode(labels) ? filterEndNode(labels, true) :
+					labelFilter.endNode(labels) ? filterEndNode(labels, false) :
+					labelFilter.whitelisted(labels) ? whitelistAllowedEvaluation : EXCLUDE_AND_PRUNE;
 
 			return result;
 		}
 
-		private boolean labelExists(Node node, Set<String> labels) {
-			if (labels.isEmpty()) {
-				return false;
+		private int[] labels(Node node) {
+			try (Statement stmt = ktx.acquireStatement()) {
+				return labelFilter.labels(stmt.readOperations(), node.getId());
+			} catch (EntityNotFoundException e) {
+				throw new NotFoundException("Node " + node.getId() + " not found", e);
 			}
-
-			for ( Label lab : node.getLabels() ) {
-				if (labels.contains(lab.name())) {
-					return true;
-				}
-			}
-			return false;
-		}
-
-		private boolean whitelistAllowed(Node node) {
-			return whitelistLabels.isEmpty() || labelExists(node, whitelistLabels);
 		}
 
-		private Evaluation filterEndNode(Node node, boolean isTerminationFilter) {
+		private Evaluation filterEndNode(int[] labels, boolean isTerminationFilter) {
 			resultCount++;
-			return isTerminationFilter || !whitelistAllowed(node) ? INCLUDE_AND_PRUNE : INCLUDE_AND_CONTINUE;
+			return isTerminationFilter || !labelFilter.whitelisted(labels) ? INCLUDE_AND_PRUNE : INCLUDE_AND_CONTINUE;
 		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,256 @@
+package apoc.path;
+
+import org.neo4j.collection.primitive.PrimitiveIntIterator;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.helpers.collection.Pair;
+import org.neo4j.kernel.api.ReadOperations;
+import org.neo4j.kernel.api.exceptions.EntityNotFoundException;
+import org.neo4j.kernel.impl.api.RelationshipVisitor;
+import org.neo4j.kernel.impl.api.store.RelationshipIterator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Relationship filter of the path expanders ('TYPE|TYPE_OUT>|<TYPE_IN') resolved to relationship type ids and
+ * grouped by direction, so that each node is expanded with at most three kernel relationship iterators.
+ * Types that appear in both directions are read once with {@link Direction#BOTH}.
+ */
+public class RelationshipFilter {
+    private final Direction[] directions;
+    // per direction the type ids, null for all types
+    private final int[][] types;
+    // sorted type ids per side of the relationship for single pass checks, all types if the flag is set
+    private final int[] outTypes, inTypes;
+    private final boolean allOut, allIn;
+    private final boolean resolved;
+
+    private RelationshipFilter(Direction[] directions, int[][] types, int[] outTypes, int[] inTypes, boolean allOut, boolean allIn, boolean resolved) {
+        this.directions = directions;
+        this.types = types;
+        this.outTypes = outTypes;
+        this.inTypes = inTypes;
+        this.allOut = allOut;
+        this.allIn = allIn;
+        this.resolved = resolved;
+    }
+
+    public static RelationshipFilter compile(ReadOperations ops, String pathFilter) {
+        boolean allOut = false, allIn = false, resolved = true;
+        Set<Integer> out = new LinkedHashSet<>(), in = new LinkedHashSet<>();
+        for (Pair<RelationshipType, Direction> pair : FilterCache.relationshipPattern(pathFilter)) {
+            Direction direction = pair.other();
+            if (pair.first() == null) {
+                allOut |= direction != Direction.INCOMING;
+                allIn |= direction != Direction.OUTGOING;
+                continue;
+            }
+            int type = ops.relationshipTypeGetForName(pair.first().name());
+            if (type == -1) {
+                resolved = false;
+                continue;
+            }
+            if (direction != Direction.INCOMING) out.add(type);
+            if (direction != Direction.OUTGOING) in.add(type);
+        }
+        int[] outTypes = toArray(out), inTypes = toArray(in);
+
+        List<Direction> directions = new ArrayList<>(3);
+        List<int[]> types = new ArrayList<>(3);
+        if (allOut && allIn) {
+            directions.add(Direction.BOTH);
+            types.add(null);
+        } else if (allOut || allIn) {
+            directions.add(allOut ? Direction.OUTGOING : Direction.INCOMING);
+            types.add(null);
+            Set<Integer> other = allOut ? in : out;
+            if (!other.isEmpty()) {
+                directions.add(allOut ? Direction.INCOMING : Direction.OUTGOING);
+                types.add(toArray(other));
+            }
+        } else {
+            Set<Integer> both = new LinkedHashSet<>(out);
+            both.retainAll(in);
+            out.removeAll(both);
+            in.removeAll(both);
+            if (!both.isEmpty()) {
+                directions.add(Direction.BOTH);
+                types.add(toArray(both));
+            }
+            if (!out.isEmpty()) {
+                directions.add(Direction.OUTGOING);
+                types.add(toArray(out));
+            }
+            if (!in.isEmpty()) {
+                directions.add(Direction.INCOMING);
+                types.add(toArray(in));
+            }
+        }
+        return new RelationshipFilter(directions.toArray(new Direction[directions.size()]), types.toArray(new int[types.size()][]),
+                outTypes, inTypes, allOut, allIn, resolved);
+    }
+
+    private static int[] toArray(Set<Integer> values) {
+        int[] result = new int[values.size()];
+        int i = 0;
+        for (Integer value : values) result[i++] = value;
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * @return the same filter with incoming and outgoing swapped, to expand from the end node of a path
+     */
+    public RelationshipFilter reverse() {
+        Direction[] reversed = new Direction[directions.length];
+        for (int i = 0; i < directions.length; i++) {
+            reversed[i] = directions[i].reverse();
+        }
+        return new RelationshipFilter(reversed, types, inTypes, outTypes, allIn, allOut, resolved);
+    }
+
+    /**
+     * @return false if a relationship type of the filter didn't exist when it was compiled
+     */
+    boolean resolved() {
+        return resolved;
+    }
+
+    /**
+     * @return false if no relationship type of the filter exists, then nothing can be expanded
+     */
+    public boolean canExpand() {
+        return directions.length > 0;
+    }
+
+    public <E extends Exception> void expand(ReadOperations ops, long node, RelationshipVisitor<E> visitor) throws EntityNotFoundException, E {
+        for (int i = 0; i < directions.length; i++) {
+            RelationshipIterator rels = types[i] == null ?
+                    ops.nodeGetRelationships(node, directions[i]) :
+                    ops.nodeGetRelationships(node, directions[i], types[i]);
+            while (rels.hasNext()) {
+                rels.relationshipVisit(rels.next(), visitor);
+            }
+        }
+    }
+
+    /**
+     * @return true if the relationship, seen from the given node, matches the filter
+     */
+    public boolean matches(long node, int type, long startNode, long endNode) {
+        return (startNode == node && (allOut || Arrays.binarySearch(outTypes, type) >= 0))
+                || (endNode == node && (allIn || Arrays.binarySearch(inTypes, type) >= 0));
+    }
+
+    /**
+     * @return the relationship count of the node matching the filter, read from the degree store for dense nodes,
+     * sparse nodes are counted in a single pass over their relationship chain instead of one pass per type and direction
+     */
+    public int degree(ReadOperations ops, long node) throws EntityNotFoundException {
+        if (directions.length == 1 && types[0] == null) return ops.nodeGetDegree(node, directions[0]);
+        if (!ops.nodeIsDense(node)) {
+            MatchVisitor visitor = new MatchVisitor(node);
+            int degree = 0;
+            RelationshipIterator rels = ops.nodeGetRelationships(node, Direction.BOTH);
+            while (rels.hasNext()) {
+                rels.relationshipVisit(rels.next(), visitor);
+                if (visitor.matched) degree++;
+            }
+            return degree;
+        }
+        int degree = 0;
+        for (int i = 0; i < directions.length; i++) {
+            if (types[i] == null) {
+                degree += ops.nodeGetDegree(node, directions[i]);
+            } else {
+                for (int type : types[i]) degree += ops.nodeGetDegree(node, directions[i], type);
+            }
+        }
+        return degree;
+    }
+
+    /**
+     * @return true if the node has at least one relationship matching the filter, stops at the first one
+     */
+    public boolean exists(ReadOperations ops, long node) throws EntityNotFoundException {
+        if (!ops.nodeIsDense(node)) {
+            MatchVisitor visitor = new MatchVisitor(node);
+            RelationshipIterator rels = ops.nodeGetRelationships(node, Direction.BOTH);
+            while (rels.hasNext()) {
+                rels.relationshipVisit(rels.next(), visitor);
+                if (visitor.matched) return true;
+            }
+            return false;
+        }
+        for (int i = 0; i < directions.length; i++) {
+            if (types[i] == null) {
+                if (ops.nodeGetDegree(node, directions[i]) > 0) return true;
+            } else {
+                for (int type : types[i]) {
+                    if (ops.nodeGetDegree(node, directions[i], type) > 0) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the distinct type ids of the relationships of the node matching the filter, dense nodes only check
+     * the types of their relationship groups
+     */
+    public int[] types(ReadOperations ops, long node) throws EntityNotFoundException {
+        int[] result = new int[4];
+        int size = 0;
+        if (!ops.nodeIsDense(node)) {
+            MatchVisitor visitor = new MatchVisitor(node);
+            RelationshipIterator rels = ops.nodeGetRelationships(node, Direction.BOTH);
+            while (rels.hasNext()) {
+                rels.relationshipVisit(rels.next(), visitor);
+                if (visitor.matched && !contains(result, size, visitor.type)) {
+                    if (size == result.length) result = Arrays.copyOf(result, size * 2);
+                    result[size++] = visitor.type;
+                }
+            }
+        } else {
+            PrimitiveIntIterator it = ops.nodeGetRelationshipTypes(node);
+            while (it.hasNext()) {
+                int type = it.next();
+                boolean out = allOut || Arrays.binarySearch(outTypes, type) >= 0;
+                boolean in = allIn || Arrays.binarySearch(inTypes, type) >= 0;
+                Direction direction = out && in ? Direction.BOTH : out ? Direction.OUTGOING : in ? Direction.INCOMING : null;
+                if (direction != null && ops.nodeGetDegree(node, direction, type) > 0) {
+                    if (size == result.length) result = Arrays.copyOf(result, size * 2);
+                    result[size++] = type;
+                }
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static boolean contains(int[] values, int size, int value) {
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value) return true;
+        }
+        return false;
+    }
+
+    private class MatchVisitor implements RelationshipVisitor<RuntimeException> {
+        private final long node;
+        boolean matched;
+        int type;
+
+        MatchVisitor(long node) {
+            this.node = node;
+        }
+
+        @Override
+        public void visit(long relationshipId, int typeId, long startNodeId, long endNodeId) {
+            type = typeId;
+            matched = matches(node, typeId, startNodeId, endNodeId);
+        }
+    }
+}
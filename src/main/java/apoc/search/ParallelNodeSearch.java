@@ -1,11 +1,26 @@
 package apoc.search;
 
+import apoc.Pools;
+import apoc.util.QueueStream;
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongIterator;
+import org.neo4j.collection.primitive.PrimitiveLongSet;
+import org.neo4j.kernel.api.ReadOperations;
+import org.neo4j.kernel.api.Statement;
+import org.neo4j.kernel.api.exceptions.EntityNotFoundException;
+import org.neo4j.kernel.api.exceptions.index.IndexNotApplicableKernelException;
+import org.neo4j.kernel.api.exceptions.index.IndexNotFoundKernelException;
+import org.neo4j.kernel.api.exceptions.schema.SchemaRuleNotFoundException;
+import org.neo4j.kernel.api.index.InternalIndexState;
+import org.neo4j.kernel.api.schema.IndexQuery;
+import org.neo4j.kernel.api.schema.LabelSchemaDescriptor;
+import org.neo4j.kernel.api.schema.index.IndexDescriptor;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
 import org.neo4j.procedure.Description;
 import apoc.result.NodeResult;
 import apoc.util.Util;
-import org.neo4j.graphdb.Node;
-import org.neo4j.graphdb.Result;
 import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.api.KernelTransaction;
 import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.Context;
@@ -13,19 +28,21 @@ import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
 
 import java.util.*;
-import java.util.function.Function;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static java.lang.String.format;
 import static java.lang.System.currentTimeMillis;
 import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
-import static java.util.Collections.singletonMap;
 import static java.util.stream.Collectors.groupingBy;
 
 public class ParallelNodeSearch {
 
+    // results buffered between the workers and the caller
+    private final static int QUEUE_SIZE = 1000;
     private final static Set<String> OPERATORS = new HashSet<>(asList("exact","starts with", "ends with", "contains", "<", ">", "=", "<>", "<=", ">=", "=~"));
 
     @Context
@@ -34,14 +51,20 @@ public class ParallelNodeSearch {
     @Context
     public Log log;
 
+    @Context
+    public KernelTransaction ktx;
+
 
     @Procedure("apoc.search.nodeAllReduced")
-    @Description("Do a parallel search over multiple indexes returning a reduced representation of the nodes found: node id, labels and the searched property. apoc.search.nodeShortAll( map of label and properties which will be searched upon, operator: EXACT / CONTAINS / STARTS WITH | ENDS WITH / = / <> / < / > ..., value ). All 'hits' are returned.")
-    public Stream<NodeReducedResult> multiSearchAll(@Name("LabelPropertyMap") final Object labelProperties, @Name("operator") final String operator, @Name("value") final Object value) throws Exception {
-        return createWorkersFromValidInput(labelProperties, operator, value).flatMap(QueryWorker::queryForData);
+    @Description("Do a parallel search over multiple indexes returning a reduced representation of the nodes found: node id, labels and the searched property. apoc.search.nodeShortAll( map of label and properties which will be searched upon, operator: EXACT / CONTAINS / STARTS WITH | ENDS WITH / = / <> / < / > ..., value, {limit:-1, orderBy:'value|id [ASC|DESC]'} ). All 'hits' are returned.")
+    public Stream<NodeReducedResult> multiSearchAll(@Name("LabelPropertyMap") final Object labelProperties, @Name("operator") final String operator, @Name("value") final Object value,
+                                                    @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws Exception {
+        long limit = limit(config);
+        if (limit == 0) return Stream.empty();
+        Stream<NodeReducedResult> results = records(createWorkersFromValidInput(labelProperties, operator, value), limit, ordering(config));
+        return limit == -1 ? results : results.limit(limit);
     }
 
-
     private NodeReducedResult merge(NodeReducedResult a, NodeReducedResult b) {
         a.values.putAll(b.values);
         for (String label : b.labels)
@@ -53,39 +76,174 @@ public class ParallelNodeSearch {
     @Procedure("apoc.search.nodeReduced")
     @Description("Do a parallel search over multiple indexes returning a reduced representation of the nodes found: node id, labels and the searched properties. apoc.search.nodeReduced( map of label and properties which will be searched upon, operator: EXACT | CONTAINS | STARTS WITH | ENDS WITH, searchValue ). Multiple search results for the same node are merged into one record.")
     public Stream<NodeReducedResult> multiSearch(@Name("LabelPropertyMap") final Object labelProperties, @Name("operator") final String operator, @Name("value") final String value) throws Exception {
-        return createWorkersFromValidInput(labelProperties, operator, value)
-                    .flatMap(QueryWorker::queryForData)
-                    .collect(groupingBy(res -> res.id,Collectors.reducing(this::merge)))
+        try (Stream<NodeReducedResult> results = search(createWorkersFromValidInput(labelProperties, operator, value), QueryWorker::queryForData)) {
+            return results.collect(groupingBy(res -> res.id, Collectors.reducing(this::merge)))
                     .values().stream().filter(Optional::isPresent).map(Optional::get);
+        }
     }
 
     @Procedure("apoc.search.multiSearchReduced")
-    @Description("Do a parallel search over multiple indexes returning a reduced representation of the nodes found: node id, labels and the searched properties. apoc.search.multiSearchReduced( map of label and properties which will be searched upon, operator: EXACT | CONTAINS | STARTS WITH | ENDS WITH, searchValue ). Multiple search results for the same node are merged into one record.")
-    public Stream<NodeReducedResult> multiSearchOld(@Name("LabelPropertyMap") final Object labelProperties, @Name("operator") final String operator, @Name("value") final String value) throws Exception {
-            return createWorkersFromValidInput(labelProperties, operator, value)
-                    .flatMap(QueryWorker::queryForData)
-                    .collect(groupingBy(res -> res.id))
-                    .values().stream().map( list -> list.stream().reduce( this::merge ))
-                    .filter(Optional::isPresent).map(Optional::get);
+    @Description("Do a parallel search over multiple indexes returning a reduced representation of the nodes found: node id, labels and the searched properties. apoc.search.multiSearchReduced( map of label and properties which will be searched upon, operator: EXACT | CONTAINS | STARTS WITH | ENDS WITH, searchValue, {limit:-1, orderBy:'value|id [ASC|DESC]'} ). Multiple search results for the same node are merged into one record.")
+    public Stream<NodeReducedResult> multiSearchOld(@Name("LabelPropertyMap") final Object labelProperties, @Name("operator") final String operator, @Name("value") final String value,
+                                                    @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws Exception {
+        long limit = limit(config);
+        if (limit == 0) return Stream.empty();
+        Comparator<NodeReducedResult> order = ordering(config);
+        List<QueryWorker> workers = createWorkersFromValidInput(labelProperties, operator, value);
+        if (limit == -1 && order == null) {
+            try (Stream<NodeReducedResult> results = search(workers, QueryWorker::queryForData)) {
+                return results.collect(groupingBy(res -> res.id))
+                        .values().stream().map( list -> list.stream().reduce( this::merge ))
+                        .filter(Optional::isPresent).map(Optional::get);
+            }
+        }
+        Map<Long, NodeReducedResult> merged = new LinkedHashMap<>();
+        try (Stream<NodeReducedResult> results = records(workers, limit, order)) {
+            Iterator<NodeReducedResult> it = results.iterator();
+            while (it.hasNext()) {
+                NodeReducedResult result = it.next();
+                NodeReducedResult existing = merged.get(result.id);
+                if (existing != null) {
+                    merge(existing, result);
+                } else if (limit == -1 || merged.size() < limit) {
+                    merged.put(result.id, result);
+                } else if (order != null) {
+                    break; // all following nodes rank lower
+                }
+            }
+        }
+        if (limit != -1) complete(merged.values(), workers);
+        return merged.values().stream();
+    }
+
+    /**
+     * @return the limit of the config, -1 if there is none or it is negative
+     */
+    private static long limit(Map<String, Object> config) {
+        Long limit = Util.toLong(config.get("limit"));
+        return limit == null || limit < 0 ? -1 : limit;
+    }
+
+    /**
+     * With a limit the workers stop early, so the values of other label/property searches can be missing
+     * from the selected nodes, they are checked directly on these nodes.
+     */
+    private void complete(Collection<NodeReducedResult> results, List<QueryWorker> workers) {
+        try (Statement stmt = api.getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class).get()) {
+            ReadOperations ops = stmt.readOperations();
+            for (NodeReducedResult result : results) {
+                for (QueryWorker worker : workers) {
+                    if (result.labels.contains(worker.label) && result.values.containsKey(worker.prop)) continue;
+                    NodeReducedResult match = worker.match(ops, result.id);
+                    if (match != null) merge(result, match);
+                }
+            }
+        }
+    }
+
+    /**
+     * Records of all workers, in the given order or as they are found. With a limit every worker only keeps
+     * its first or, if ordered, best {@code limit} records.
+     */
+    private Stream<NodeReducedResult> records(List<QueryWorker> workers, long limit, Comparator<NodeReducedResult> order) {
+        if (order != null) {
+            int k = limit == -1 ? Integer.MAX_VALUE : (int) Math.min(limit, Integer.MAX_VALUE);
+            List<List<NodeReducedResult>> ranked;
+            try (Stream<List<NodeReducedResult>> results = search(workers, (worker, sink) -> sink.accept(worker.topK(k, order)))) {
+                ranked = results.collect(Collectors.toList());
+            }
+            return mergeRanked(ranked, order);
+        }
+        if (limit == -1) return search(workers, QueryWorker::queryForData);
+        return search(workers, (worker, sink) -> {
+            long[] count = {0};
+            worker.queryForData(result -> sink.accept(result) && ++count[0] < limit);
+        });
+    }
+
+    /**
+     * k-way merge of the sorted record lists of the workers
+     */
+    private static Stream<NodeReducedResult> mergeRanked(List<List<NodeReducedResult>> ranked, Comparator<NodeReducedResult> order) {
+        List<NodeReducedResult> current = new ArrayList<>(ranked.size());
+        PriorityQueue<Integer> queue = new PriorityQueue<>(Math.max(1, ranked.size()), (a, b) -> order.compare(current.get(a), current.get(b)));
+        List<Iterator<NodeReducedResult>> iterators = new ArrayList<>(ranked.size());
+        for (List<NodeReducedResult> list : ranked) {
+            Iterator<NodeReducedResult> it = list.iterator();
+            if (!it.hasNext()) continue;
+            iterators.add(it);
+            current.add(it.next());
+            queue.add(current.size() - 1);
+        }
+        Iterator<NodeReducedResult> merged = new Iterator<NodeReducedResult>() {
+            public boolean hasNext() {
+                return !queue.isEmpty();
+            }
+
+            public NodeReducedResult next() {
+                int index = queue.poll();
+                NodeReducedResult result = current.get(index);
+                Iterator<NodeReducedResult> it = iterators.get(index);
+                if (it.hasNext()) {
+                    current.set(index, it.next());
+                    queue.add(index);
+                }
+                return result;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * @return null if the records are returned in the order they are found, orderBy is 'value' or 'id', optionally followed by ASC or DESC
+     */
+    static Comparator<NodeReducedResult> ordering(Map<String, Object> config) {
+        String orderBy = (String) config.get("orderBy");
+        if (orderBy == null || orderBy.trim().isEmpty()) return null;
+        String[] parts = orderBy.trim().split("\\s+");
+        Comparator<NodeReducedResult> byId = (a, b) -> Long.compare(a.id, b.id);
+        Comparator<NodeReducedResult> order;
+        switch (parts[0].toLowerCase()) {
+            case "id":
+                order = byId;
+                break;
+            case "value":
+                order = (a, b) -> QueryWorker.order(a.value(), b.value());
+                order = order.thenComparing(byId);
+                break;
+            default:
+                throw new IllegalArgumentException("orderBy must be 'value' or 'id', optionally followed by ASC or DESC: " + orderBy);
+        }
+        return parts.length > 1 && parts[1].equalsIgnoreCase("DESC") ? order.reversed() : order;
     }
 
     @Procedure("apoc.search.nodeAll")
     @Description("Do a parallel search over multiple indexes returning nodes. usage apoc.search.nodeAll( map of label and properties which will be searched upon, operator: EXACT | CONTAINS | STARTS WITH | ENDS WITH, searchValue ) returns all the Nodes found in the different searches.")
     public Stream<NodeResult> multiSearchNodeAll(@Name("LabelPropertyMap") final Object labelProperties, @Name("operator") final String operator, @Name("value") final String value) throws Exception {
-        return createWorkersFromValidInput(labelProperties, operator, value).flatMap(QueryWorker::queryForNode);
+        return search(createWorkersFromValidInput(labelProperties, operator, value), QueryWorker::queryForNode);
     }
 
 
     @Procedure("apoc.search.node")
     @Description("Do a parallel search over multiple indexes returning nodes. usage apoc.search.node( map of label and properties which will be searched upon, operator: EXACT | CONTAINS | STARTS WITH | ENDS WITH, searchValue ) returns all the DISTINCT Nodes found in the different searches.")
     public Stream<NodeResult> multiSearchNode(@Name("LabelPropertyMap") final Object labelProperties, @Name("operator") final String operator, @Name("value") final String value) throws Exception {
-        return createWorkersFromValidInput(labelProperties, operator, value)
-                .flatMap(QueryWorker::queryForNode)
-                .distinct();
+        PrimitiveLongSet seen = Primitive.longSet();
+        return search(createWorkersFromValidInput(labelProperties, operator, value), (worker, sink) -> worker.queryForNode(node -> {
+            synchronized (seen) {
+                if (!seen.add(node.node.getId())) return true;
+            }
+            return sink.accept(node);
+        }));
     }
 
+    /**
+     * Runs the workers on the default pool and streams their results back through a bounded queue as they are found.
+     */
+    private <T> Stream<T> search(List<QueryWorker> workers, QueueStream.Task<QueryWorker, T> task) {
+        return QueueStream.parallel(ktx, Pools.DEFAULT, Pools.getNoThreadsInDefaultPool(), QUEUE_SIZE, workers, task);
+    }
 
-    private Stream<QueryWorker> createWorkersFromValidInput(final Object labelPropertiesInput, String operatorInput, final Object value) throws Exception {
+    private List<QueryWorker> createWorkersFromValidInput(final Object labelPropertiesInput, String operatorInput, final Object value) throws Exception {
         String operatorNormalized = operatorInput.trim().toLowerCase();
         if (operatorInput == null || !OPERATORS.contains(operatorNormalized)) {
             throw new Exception(format("operator `%s` invalid, it must have one of the following values (case insensitive): %s.", operatorInput, OPERATORS));
@@ -97,7 +255,7 @@ public class ParallelNodeSearch {
         }
         Map<String, Object> labelProperties = labelPropertiesInput instanceof Map ? (Map<String, Object>) labelPropertiesInput : Util.readMap(labelPropertiesInput.toString());
 
-        return labelProperties.entrySet().parallelStream().flatMap(e -> {
+        return labelProperties.entrySet().stream().flatMap(e -> {
             String label = e.getKey();
             Object properties = e.getValue();
             if (properties instanceof String) {
@@ -106,14 +264,19 @@ public class ParallelNodeSearch {
                 return ((List<String>) properties).stream().map(prop -> new QueryWorker(api, label, prop, operator, value, log));
             }
             throw new RuntimeException("Invalid type for properties " + properties + ": " + (properties == null ? "null" : properties.getClass()));
-        });
+        }).collect(Collectors.toList());
     }
 
+    /**
+     * Searches one label and property in its own transaction. Seeks the schema index if there is an online one
+     * and it supports the operator, otherwise scans the label and compares the property values like Cypher does.
+     */
     public static class QueryWorker {
         private GraphDatabaseAPI db;
         private String label, prop, operator;
         Object value;
         private Log log;
+        private Pattern pattern;
 
         public QueryWorker(GraphDatabaseAPI db, String label, String prop, String operator, Object value, Log log) {
             this.db = db;
@@ -122,32 +285,205 @@ public class ParallelNodeSearch {
             this.value = value;
             this.operator = operator;
             this.log = log;
+            if (operator.equals("=~") && value instanceof String) this.pattern = Pattern.compile((String) value);
+        }
+
+        public void queryForData(QueueStream.Sink<NodeReducedResult> sink) {
+            search(true, (node, propertyValue) -> sink.accept(record(node, propertyValue)));
+        }
+
+        /**
+         * @return the best k records in the given order, kept in a bounded heap while searching
+         */
+        public List<NodeReducedResult> topK(int k, Comparator<NodeReducedResult> order) {
+            PriorityQueue<NodeReducedResult> heap = new PriorityQueue<>(Math.min(k, 1024) + 1, order.reversed());
+            search(true, (node, propertyValue) -> {
+                NodeReducedResult result = record(node, propertyValue);
+                if (heap.size() < k) {
+                    heap.add(result);
+                } else if (order.compare(result, heap.peek()) < 0) {
+                    heap.poll();
+                    heap.add(result);
+                }
+                return true;
+            });
+            List<NodeReducedResult> results = new ArrayList<>(heap);
+            results.sort(order);
+            return results;
+        }
+
+        /**
+         * @return the record of the node if it matches this search, null otherwise
+         */
+        NodeReducedResult match(ReadOperations ops, long node) {
+            int labelId = ops.labelGetForName(label);
+            int keyId = ops.propertyKeyGetForName(prop);
+            if (labelId == -1 || keyId == -1) return null;
+            try {
+                if (!ops.nodeHasLabel(node, labelId)) return null;
+                Object propertyValue = ops.nodeGetProperty(node, keyId);
+                return matches(propertyValue) ? record(node, propertyValue) : null;
+            } catch (EntityNotFoundException e) {
+                return null;
+            }
         }
 
-        public Stream<NodeReducedResult> queryForData() {
-            List<String> labels = singletonList(label);
-            String query = format("match (n:`%s`) where n.`%s` %s {value} return id(n) as id,  n.`%s` as value", label, prop, operator, prop);
-            return queryForNode(query, (row) -> new NodeReducedResult((long) row.get("id"), labels, singletonMap(prop, row.get("value")))).stream();
+        private NodeReducedResult record(long node, Object propertyValue) {
+            Map<String, Object> values = new HashMap<>(2);
+            values.put(prop, propertyValue);
+            return new NodeReducedResult(node, new ArrayList<>(singletonList(label)), values);
         }
 
-        public Stream<NodeResult> queryForNode() {
-            String query = format("match (n:`%s`) where n.`%s` %s {value} return n", label, prop, operator);
-            return queryForNode(query, (row) -> new NodeResult((Node) row.get("n"))).stream();
+        public void queryForNode(QueueStream.Sink<NodeResult> sink) {
+            search(false, (node, propertyValue) -> sink.accept(new NodeResult(db.getNodeById(node))));
         }
 
-        public <T> List<T> queryForNode(String query, Function<Map<String, Object>, T> transformer) {
+        interface Match {
+            boolean accept(long node, Object value);
+        }
+
+        private void search(boolean needsValue, Match match) {
             long start = currentTimeMillis();
-            try (Transaction tx = db.beginTx()) {
-                try (Result nodes = db.execute(query, singletonMap("value", value))) {
-                    return nodes.stream().map(transformer).collect(Collectors.toList());
-                } finally {
-                    tx.success();
-                    if (log.isDebugEnabled())
-                        log.debug(format("(%s) search on label:%s and prop:%s took %d",
-                                Thread.currentThread(), label, prop, currentTimeMillis() - start));
+            try (Transaction tx = db.beginTx();
+                 Statement stmt = db.getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class).get()) {
+                ReadOperations ops = stmt.readOperations();
+                int labelId = ops.labelGetForName(label);
+                int keyId = ops.propertyKeyGetForName(prop);
+                if (labelId != -1 && keyId != -1) {
+                    PrimitiveLongIterator it = indexSeek(ops, labelId, keyId);
+                    boolean filter = it == null;
+                    if (filter) it = ops.nodesGetForLabel(labelId);
+                    while (it.hasNext()) {
+                        long node = it.next();
+                        Object propertyValue = null;
+                        if (filter || needsValue) {
+                            try {
+                                propertyValue = ops.nodeGetProperty(node, keyId);
+                            } catch (EntityNotFoundException e) {
+                                continue;
+                            }
+                            if (filter && !matches(propertyValue)) continue;
+                        }
+                        if (!match.accept(node, propertyValue)) break;
+                    }
                 }
+                tx.success();
+            } finally {
+                if (log.isDebugEnabled())
+                    log.debug(format("(%s) search on label:%s and prop:%s took %d",
+                            Thread.currentThread(), label, prop, currentTimeMillis() - start));
+            }
+        }
+
+        /**
+         * @return null if there is no online index or it can't answer the operator
+         */
+        private PrimitiveLongIterator indexSeek(ReadOperations ops, int labelId, int keyId) {
+            IndexQuery query = indexQuery(keyId);
+            if (query == null) return null;
+            try {
+                IndexDescriptor index = ops.indexGetForSchema(new LabelSchemaDescriptor(labelId, keyId));
+                if (ops.indexGetState(index) != InternalIndexState.ONLINE) return null;
+                return ops.indexQuery(index, query);
+            } catch (SchemaRuleNotFoundException | IndexNotFoundKernelException | IndexNotApplicableKernelException e) {
+                return null;
+            }
+        }
+
+        private IndexQuery indexQuery(int keyId) {
+            switch (operator) {
+                case "=":
+                    return value == null ? null : IndexQuery.exact(keyId, value);
+                case "starts with":
+                    return value instanceof String ? IndexQuery.stringPrefix(keyId, (String) value) : null;
+                case "ends with":
+                    return value instanceof String ? IndexQuery.stringSuffix(keyId, (String) value) : null;
+                case "contains":
+                    return value instanceof String ? IndexQuery.stringContains(keyId, (String) value) : null;
+                case "<":
+                case "<=":
+                case ">":
+                case ">=":
+                    boolean upper = operator.startsWith("<"), inclusive = operator.endsWith("=");
+                    if (value instanceof Number) {
+                        Number number = (Number) value;
+                        return upper ? IndexQuery.range(keyId, (Number) null, false, number, inclusive) : IndexQuery.range(keyId, number, inclusive, (Number) null, false);
+                    }
+                    if (value instanceof String) {
+                        String string = (String) value;
+                        return upper ? IndexQuery.range(keyId, (String) null, false, string, inclusive) : IndexQuery.range(keyId, string, inclusive, (String) null, false);
+                    }
+                    return null;
+                default:
+                    return null;
             }
         }
+
+        boolean matches(Object propertyValue) {
+            if (propertyValue == null || value == null) return false;
+            switch (operator) {
+                case "=":
+                    return equal(propertyValue, value);
+                case "<>":
+                    return !equal(propertyValue, value);
+                case "starts with":
+                    return propertyValue instanceof String && value instanceof String && ((String) propertyValue).startsWith((String) value);
+                case "ends with":
+                    return propertyValue instanceof String && value instanceof String && ((String) propertyValue).endsWith((String) value);
+                case "contains":
+                    return propertyValue instanceof String && value instanceof String && ((String) propertyValue).contains((String) value);
+                case "=~":
+                    return pattern != null && propertyValue instanceof String && pattern.matcher((String) propertyValue).matches();
+                default:
+                    Integer comparison = compare(propertyValue, value);
+                    if (comparison == null) return false;
+                    switch (operator) {
+                        case "<": return comparison < 0;
+                        case "<=": return comparison <= 0;
+                        case ">": return comparison > 0;
+                        case ">=": return comparison >= 0;
+                        default: return false;
+                    }
+            }
+        }
+
+        private static boolean equal(Object a, Object b) {
+            if (a instanceof Number && b instanceof Number) return compare(a, b) == 0;
+            return Objects.deepEquals(a, b);
+        }
+
+        /**
+         * @return null if the values are not comparable, like numbers and strings in Cypher
+         */
+        private static Integer compare(Object a, Object b) {
+            if (a instanceof Number && b instanceof Number) {
+                if (isIntegral(a) && isIntegral(b)) return Long.compare(((Number) a).longValue(), ((Number) b).longValue());
+                return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+            }
+            if (a instanceof String && b instanceof String) return ((String) a).compareTo((String) b);
+            return null;
+        }
+
+        /**
+         * Total order for sorting by value: numbers, strings, booleans, other values by their string form, null last
+         */
+        static int order(Object a, Object b) {
+            int rankA = rank(a), rankB = rank(b);
+            if (rankA != rankB) return Integer.compare(rankA, rankB);
+            if (a == null) return 0;
+            Integer comparison = compare(a, b);
+            if (comparison != null) return comparison;
+            if (a instanceof Boolean) return Boolean.compare((Boolean) a, (Boolean) b);
+            return String.valueOf(a).compareTo(String.valueOf(b));
+        }
+
+        private static int rank(Object value) {
+            return value instanceof Number ? 0 : value instanceof String ? 1 : value instanceof Boolean ? 2 : value == null ? 4 : 3;
+        }
+
+        private static boolean isIntegral(Object number) {
+            return number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte;
+        }
     }
 
     public static class NodeReducedResult {
@@ -161,5 +497,10 @@ public class ParallelNodeSearch {
             this.values = val;
         }
 
+        // the searched value of a record of a single worker
+        Object value() {
+            return values.isEmpty() ? null : values.values().iterator().next();
+        }
+
     }
 }
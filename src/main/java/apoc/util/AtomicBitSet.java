@@ -0,0 +1,40 @@
+package apoc.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size bit set that can be updated concurrently, e.g. to mark visited node ids from multiple threads.
+ */
+public class AtomicBitSet {
+    private final AtomicLongArray words;
+    private final long size;
+
+    public AtomicBitSet(long size) {
+        long words = (size + 63) >>> 6;
+        if (words > Integer.MAX_VALUE) throw new IllegalArgumentException("Bit set too large: " + size);
+        this.words = new AtomicLongArray((int) Math.max(1, words));
+        this.size = size;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return true if the bit was not set before, only one of several concurrent callers for the same index succeeds
+     */
+    public boolean add(long index) {
+        int word = (int) (index >>> 6);
+        long mask = 1L << index;
+        long current;
+        do {
+            current = words.get(word);
+            if ((current & mask) != 0) return false;
+        } while (!words.compareAndSet(word, current, current | mask));
+        return true;
+    }
+
+    public boolean contains(long index) {
+        return (words.get((int) (index >>> 6)) & (1L << index)) != 0;
+    }
+}
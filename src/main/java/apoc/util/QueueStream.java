@@ -0,0 +1,143 @@
+package apoc.util;
+
+import org.neo4j.kernel.api.KernelTransaction;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Streams the results of tasks running in parallel through a bounded queue, as soon as they are produced.
+ * At most {@code concurrency} runners are submitted to the pool, they take the next task from a shared counter,
+ * so a pool that blocks its callers when saturated can't deadlock with the consumer.
+ * Producers wait while the queue is full and are told to stop once the stream is closed,
+ * the first error of a task is rethrown to the consumer after the other results.
+ * Neither side waits forever: both give up when the transaction of the caller is closed or terminated, or when they
+ * couldn't hand over or receive a result for the timeout, e.g. when the stream is abandoned without being closed or the
+ * runners are queued behind the caller in a saturated pool. The consumer then fails and the producers stop.
+ */
+public class QueueStream {
+    private static final Object TOMBSTONE = new Object();
+    private static final long POLL_MILLIS = 100;
+    public static final long DEFAULT_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    public interface Sink<T> {
+        /**
+         * @return false if the stream was closed, the task should stop producing
+         */
+        boolean accept(T value);
+    }
+
+    public interface Task<W, T> {
+        void run(W work, Sink<T> sink) throws Exception;
+    }
+
+    public static <W, T> Stream<T> parallel(KernelTransaction ktx, ExecutorService pool, int concurrency, int capacity, List<W> work, Task<W, T> task) {
+        return parallel(ktx, DEFAULT_TIMEOUT_MILLIS, pool, concurrency, capacity, work, task);
+    }
+
+    /**
+     * @param ktx transaction of the caller, null if the stream doesn't depend on one
+     * @param timeoutMillis longest time without handing over a result
+     */
+    public static <W, T> Stream<T> parallel(KernelTransaction ktx, long timeoutMillis, ExecutorService pool, int concurrency, int capacity, List<W> work, Task<W, T> task) {
+        int runners = Math.min(Math.max(1, concurrency), work.size());
+        if (runners == 0) return Stream.empty();
+
+        BlockingQueue<Object> queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        AtomicInteger next = new AtomicInteger(), running = new AtomicInteger(runners);
+        AtomicBoolean closed = new AtomicBoolean();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Sink<T> sink = value -> offer(queue, value, closed, ktx, timeoutMillis);
+
+        for (int i = 0; i < runners; i++) {
+            pool.execute(() -> {
+                try {
+                    int index;
+                    while (!closed.get() && (index = next.getAndIncrement()) < work.size()) {
+                        task.run(work.get(index), sink);
+                    }
+                } catch (Throwable t) {
+                    error.compareAndSet(null, t);
+                } finally {
+                    if (running.decrementAndGet() == 0) offer(queue, TOMBSTONE, closed, ktx, timeoutMillis);
+                }
+            });
+        }
+
+        Iterator<T> results = new Iterator<T>() {
+            private Object next;
+
+            public boolean hasNext() {
+                long deadline = System.currentTimeMillis() + timeoutMillis;
+                while (next == null) {
+                    if (isTerminated(ktx)) {
+                        closed.set(true);
+                        throw new RuntimeException("Transaction was closed or terminated while waiting for results");
+                    }
+                    if (System.currentTimeMillis() > deadline) {
+                        closed.set(true);
+                        throw new RuntimeException("No results of the parallel tasks for " + timeoutMillis + " ms, they may not have been started by a saturated pool");
+                    }
+                    try {
+                        next = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                        if (next == null && closed.get()) {
+                            throw new RuntimeException("The parallel tasks stopped, their results were not consumed for " + timeoutMillis + " ms");
+                        }
+                    } catch (InterruptedException e) {
+                        closed.set(true);
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException("Interrupted while waiting for results", e);
+                    }
+                }
+                if (next != TOMBSTONE) return true;
+                if (error.get() != null) throw new RuntimeException("Error in parallel task", error.get());
+                return false;
+            }
+
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                T value = (T) next;
+                next = null;
+                return value;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(results, Spliterator.NONNULL), false).onClose(() -> closed.set(true));
+    }
+
+    /**
+     * @return false if the result was not handed over, as the stream was closed, the transaction terminated, or nothing was consumed for the timeout
+     */
+    private static boolean offer(BlockingQueue<Object> queue, Object value, AtomicBoolean closed, KernelTransaction ktx, long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        try {
+            while (!closed.get()) {
+                if (queue.offer(value, POLL_MILLIS, TimeUnit.MILLISECONDS)) return true;
+                if (isTerminated(ktx) || System.currentTimeMillis() > deadline) {
+                    closed.set(true);
+                    return false;
+                }
+            }
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static boolean isTerminated(KernelTransaction ktx) {
+        return ktx != null && (!ktx.isOpen() || ktx.getReasonIfTerminated().isPresent());
+    }
+}
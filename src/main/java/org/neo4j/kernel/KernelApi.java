@@ -37,6 +37,11 @@ public class KernelApi {
         return rel.getEndNode();
     }
 
+    public static Node getStartNode(GraphDatabaseService db, long id) {
+        Relationship rel = db.getRelationshipById(id);
+        return rel.getStartNode();
+    }
+
     public static Map<String, String> getIndexConfiguration(String indexName, GraphDatabaseService db) {
         Map<String, String> stringStringMap = null;
         try {
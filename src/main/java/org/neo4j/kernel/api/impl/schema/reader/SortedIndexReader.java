@@ -4,6 +4,7 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.index.*;
 import org.apache.lucene.search.*;
 import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.DocIdSetBuilder;
 import org.neo4j.collection.primitive.PrimitiveLongCollections;
 import org.neo4j.collection.primitive.PrimitiveLongIterator;
@@ -14,6 +15,7 @@ import org.neo4j.index.impl.lucene.legacy.AbstractIndexHits;
 import org.neo4j.index.impl.lucene.legacy.EmptyIndexHits;
 import org.neo4j.kernel.api.impl.index.collector.DocValuesAccess;
 import org.neo4j.kernel.api.impl.schema.LuceneDocumentStructure;
+import org.neo4j.storageengine.api.schema.IndexReader;
 
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
@@ -27,17 +29,74 @@ import java.util.*;
  */
 public class SortedIndexReader {
     private final SimpleIndexReader reader;
+    private IndexSearcher searcher;
+    private FieldDoc after;
     private Method method;
     private Sort sort;
     private int topN;
 
     public SortedIndexReader(SimpleIndexReader reader, long topN, Sort sort) {
-        this.topN = (int) topN;
+        this.topN = (int) Math.min(topN, Integer.MAX_VALUE);
         this.method = getIndexReaderMethod();
         this.reader = reader;
         this.sort = sort;
     }
 
+    /**
+     * @param searcher e.g. over all partitions of a partitioned index
+     */
+    public SortedIndexReader(IndexSearcher searcher, long topN, Sort sort) {
+        this.topN = (int) Math.min(topN, Integer.MAX_VALUE);
+        this.reader = null;
+        this.searcher = searcher;
+        this.sort = sort;
+    }
+
+    /**
+     * @return a searcher over the segments of all partitions of the index reader
+     */
+    public static IndexSearcher getIndexSearcher(IndexReader reader) {
+        if (reader instanceof SimpleIndexReader) {
+            return new SortedIndexReader((SimpleIndexReader) reader, 0, Sort.INDEXORDER).getIndexSearcher();
+        }
+        List<org.apache.lucene.index.IndexReader> readers = getPartitionReaders(reader);
+        if (readers.size() == 1) return new IndexSearcher(readers.get(0));
+        try {
+            // closing sub readers means they are not ref counted by the multi reader, it is never closed, the partitions own them
+            return new IndexSearcher(new MultiReader(readers.toArray(new org.apache.lucene.index.IndexReader[readers.size()]), true));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return the lucene readers of the partitions of the index reader, they are owned by the partitions and must not be closed
+     */
+    public static List<org.apache.lucene.index.IndexReader> getPartitionReaders(IndexReader reader) {
+        if (reader instanceof SimpleIndexReader) {
+            return Collections.singletonList(new SortedIndexReader((SimpleIndexReader) reader, 0, Sort.INDEXORDER).getIndexSearcher().getIndexReader());
+        }
+        if (reader instanceof PartitionedIndexReader) {
+            List<org.apache.lucene.index.IndexReader> readers = new ArrayList<>();
+            for (SimpleIndexReader partition : getPartitions((PartitionedIndexReader) reader)) {
+                readers.addAll(getPartitionReaders(partition));
+            }
+            return readers;
+        }
+        throw new IllegalArgumentException("Unsupported index reader " + reader.getClass().getName());
+    }
+
+    @SuppressWarnings("unchecked")
+    public static List<SimpleIndexReader> getPartitions(PartitionedIndexReader reader) {
+        try {
+            java.lang.reflect.Field field = PartitionedIndexReader.class.getDeclaredField("indexReaders");
+            field.setAccessible(true);
+            return (List<SimpleIndexReader>) field.get(reader);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private Method getIndexReaderMethod() {
         try {
             Method method = SimpleIndexReader.class.getDeclaredMethod("getIndexSearcher");
@@ -49,6 +108,9 @@ public class SortedIndexReader {
     }
 
     public PrimitiveLongIterator query(Query query) {
+        if (isFieldSort()) {
+            return sorted(query);
+        }
         try {
             DocValuesCollector e = new DocValuesCollector(sort == Sort.RELEVANCE);
             this.getIndexSearcher().search(query, e);
@@ -58,7 +120,70 @@ public class SortedIndexReader {
         }
     }
 
+    private boolean isFieldSort() {
+        return sort != null && sort != Sort.RELEVANCE && sort != Sort.INDEXORDER;
+    }
+
+    /**
+     * Continues the sorted queries after the last result of a previous page.
+     * The sort has to end with the {@code id} field, so every result has a unique position.
+     *
+     * @param values the sort values of the last result, the property value as number or string and the node id
+     */
+    public SortedIndexReader after(Object... values) {
+        if (!isFieldSort()) throw new IllegalStateException("Paging needs a sort by property value and id, not " + sort);
+        SortField[] fields = sort.getSort();
+        if (values.length != fields.length) throw new IllegalArgumentException("Expected " + fields.length + " values to page after, got " + values.length);
+        Object[] after = new Object[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            Object value = values[i];
+            if (value == null) throw new IllegalArgumentException("Expected " + fields.length + " non null values to page after, got " + Arrays.toString(values));
+            switch (fields[i].getType()) {
+                case DOUBLE:
+                    if (!(value instanceof Number)) throw new IllegalArgumentException("Expected a number to page after, got " + value);
+                    after[i] = ((Number) value).doubleValue();
+                    break;
+                case LONG:
+                    after[i] = ((Number) value).longValue();
+                    break;
+                default:
+                    after[i] = new BytesRef(String.valueOf(value));
+            }
+        }
+        // the doc only breaks ties of equal sort values, which can't happen with the id as last sort field,
+        // but search after rejects docs beyond the reader, it is set when searching
+        this.after = new FieldDoc(0, Float.NaN, after);
+        return this;
+    }
+
+    /**
+     * Collects the top n hits by the doc values of the sort fields, the last sort field has to be the {@code id}.
+     */
+    private PrimitiveLongIterator sorted(Query query) {
+        try {
+            IndexSearcher searcher = getIndexSearcher();
+            int maxDoc = searcher.getIndexReader().maxDoc();
+            if (maxDoc == 0) return PrimitiveLongCollections.emptyIterator();
+            int n = topN > 0 ? topN : maxDoc;
+            if (after != null) after.doc = maxDoc - 1;
+            TopFieldDocs topDocs = after == null ? searcher.search(query, n, sort) : searcher.searchAfter(after, query, n, sort);
+            ScoreDoc[] hits = topDocs.scoreDocs;
+            int idField = sort.getSort().length - 1;
+            return new PrimitiveLongCollections.PrimitiveLongBaseIterator() {
+                int index = 0;
+
+                @Override
+                protected boolean fetchNext() {
+                    return index < hits.length && next((Long) ((FieldDoc) hits[index++]).fields[idField]);
+                }
+            };
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     public IndexSearcher getIndexSearcher() {
+        if (searcher != null) return searcher;
         try {
             return (IndexSearcher) method.invoke(reader);
         } catch (IllegalAccessException | InvocationTargetException e) {
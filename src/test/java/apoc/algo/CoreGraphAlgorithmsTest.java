@@ -98,6 +98,21 @@ public class CoreGraphAlgorithmsTest {
         assertEquals(idB,rels[0]);
     }
 
+    @Test
+    public void testInitLabelMapsSparseIds() throws Exception {
+        CoreGraphAlgorithms algos = new CoreGraphAlgorithms(stmt).init("C", null);
+        assertEquals(1,algos.getNodeCount());
+        assertEquals(0,algos.getRelCount());
+        assertEquals(idC,algos.getNodeId(0));
+    }
+
+    @Test
+    public void testInitUnknownLabel() throws Exception {
+        CoreGraphAlgorithms algos = new CoreGraphAlgorithms(stmt).init("Unknown", null);
+        assertEquals(0,algos.getNodeCount());
+        assertEquals(0,algos.getRelCount());
+    }
+
     @Test
     public void pageRank() throws Exception {
         CoreGraphAlgorithms algos = new CoreGraphAlgorithms(stmt).init();
@@ -177,4 +192,32 @@ public class CoreGraphAlgorithmsTest {
         assertEquals(0,degrees[idD]);
     }
 
+    @Test
+    public void testDegreeOrdered() throws Exception {
+        CoreGraphAlgorithms algos = new CoreGraphAlgorithms(stmt).init();
+        CoreGraphAlgorithms.DegreeOrderedGraph graph = algos.degreeOrdered();
+        assertEquals(2,graph.getRelCount());
+        assertEquals(1,graph.degrees[idA]);
+        assertEquals(2,graph.degrees[idB]);
+        assertEquals(1,graph.degrees[idC]);
+        assertEquals(0,graph.degrees[idD]);
+        // both relationships point towards the higher degree node b
+        assertEquals(idB,graph.targets[graph.offsets[idA]]);
+        assertEquals(idB,graph.targets[graph.offsets[idC]]);
+        assertEquals(graph.offsets[idB],graph.offsets[idB+1]);
+    }
+
+    @Test
+    public void testAdjacency() throws Exception {
+        CoreGraphAlgorithms algos = new CoreGraphAlgorithms(stmt).init();
+        CoreGraphAlgorithms.Adjacency out = algos.adjacency(false);
+        CoreGraphAlgorithms.Adjacency in = algos.adjacency(true);
+        assertEquals(2,out.getRelCount());
+        assertEquals(1,out.degree(idA));
+        assertEquals(idB,out.targets[out.offsets[idA]]);
+        assertEquals(idC,out.targets[out.offsets[idB]]);
+        assertEquals(0,in.degree(idA));
+        assertEquals(idA,in.targets[in.offsets[idB]]);
+        assertEquals(idB,in.targets[in.offsets[idC]]);
+    }
 }
@@ -0,0 +1,87 @@
+package apoc.algo;
+
+import apoc.util.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class KCoreTest {
+
+    private GraphDatabaseService db;
+
+    // clique a,b,c,d (3-core), e attached to a and b (2-core), f attached to e (1-core), self-loop on f
+    private static final String GRAPH = "CREATE (a:Node {name:'a'}), (b:Node {name:'b'}), (c:Node {name:'c'}), (d:Node {name:'d'}), (e:Node {name:'e'}), (f:Node {name:'f'})" +
+            " CREATE (a)-[:R]->(b), (a)-[:R]->(c), (a)-[:R]->(d), (b)-[:R]->(c), (b)-[:R]->(d), (d)-[:R]->(c)," +
+            " (e)-[:R]->(a), (b)-[:R]->(e), (f)-[:R]->(e), (f)-[:R]->(f)";
+
+    @Before
+    public void setUp() throws Exception {
+        db = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        TestUtil.registerProcedure(db, KCore.class);
+        db.execute(GRAPH).close();
+    }
+
+    @After
+    public void tearDown() {
+        db.shutdown();
+    }
+
+    @Test
+    public void testKCore() throws Exception {
+        Map<String, Long> coreness = new HashMap<>();
+        TestUtil.testResult(db, "CALL apoc.algo.kcore({})", r -> r.forEachRemaining(row ->
+                coreness.put((String) ((Node) row.get("node")).getProperty("name"), (Long) row.get("coreness"))));
+        assertEquals(6, coreness.size());
+        assertEquals(3L, (long) coreness.get("a"));
+        assertEquals(3L, (long) coreness.get("d"));
+        assertEquals(2L, (long) coreness.get("e"));
+        assertEquals(1L, (long) coreness.get("f"));
+    }
+
+    @Test
+    public void testKCoreMinCore() throws Exception {
+        TestUtil.testCallCount(db, "CALL apoc.algo.kcore({minCore:3})", null, 4);
+    }
+
+    @Test
+    public void testKCoreCountsReciprocalRelationshipsOnce() throws Exception {
+        // a triangle with reciprocal and parallel relationships is still a 2-core, g only has one neighbour
+        db.execute("CREATE (x:Other {name:'x'}), (y:Other {name:'y'}), (z:Other {name:'z'}), (g:Other {name:'g'})" +
+                " CREATE (x)-[:S]->(y), (y)-[:S]->(x), (y)-[:S]->(z), (y)-[:S]->(z), (z)-[:S]->(x), (g)-[:S]->(x), (x)-[:S]->(g)").close();
+        Map<String, Long> coreness = new HashMap<>();
+        TestUtil.testResult(db, "CALL apoc.algo.kcore({label:'Other', relationship:'S'})", r -> r.forEachRemaining(row ->
+                coreness.put((String) ((Node) row.get("node")).getProperty("name"), (Long) row.get("coreness"))));
+        assertEquals(4, coreness.size());
+        assertEquals(2L, (long) coreness.get("x"));
+        assertEquals(2L, (long) coreness.get("z"));
+        assertEquals(1L, (long) coreness.get("g"));
+        TestUtil.testCall(db, "CALL apoc.algo.kcoreStats({label:'Other', relationship:'S'})", row -> {
+            assertEquals(4L, row.get("relationships"));
+            assertEquals(2L, row.get("maxCore"));
+        });
+    }
+
+    @Test
+    public void testKCoreStatsWrite() throws Exception {
+        TestUtil.testCall(db, "CALL apoc.algo.kcoreStats({write:true, batchSize:2, concurrency:2})", row -> {
+            // the self-loop is ignored
+            assertEquals(9L, row.get("relationships"));
+            assertEquals(3L, row.get("maxCore"));
+            assertEquals(true, row.get("write"));
+        });
+        try (Transaction tx = db.beginTx()) {
+            TestUtil.testCall(db, "MATCH (e:Node {name:'e'}) RETURN e.coreness AS coreness", row ->
+                    assertEquals(2, ((Number) row.get("coreness")).intValue()));
+            tx.success();
+        }
+    }
+}
@@ -16,6 +16,7 @@ import java.util.Map;
 import static apoc.util.TestUtil.testCall;
 import static apoc.util.TestUtil.testResult;
 import static org.hamcrest.core.IsEqual.equalTo;
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 
@@ -55,6 +56,29 @@ public class PathFindingTest {
    		db.shutdown();
    	}
 
+    @Test
+    public void testKShortestPaths() throws Exception {
+        db.execute(SETUP_SIMPLE).close();
+        testResult(db,
+                "MATCH (from:Loc{name:'A'}), (to:Loc{name:'D'}) " +
+                        "CALL apoc.algo.kShortestPaths(from, to, 'ROAD>|RAIL>', 3, {weight:'d', default:1}) yield path, weight " +
+                        "RETURN [n IN nodes(path) | n.name] AS names, weight",
+                r -> {
+                    assertEquals(asList("A", "D"), r.next().get("names"));
+                    Map<String, Object> row = r.next();
+                    assertEquals(asList("A", "C", "D"), row.get("names"));
+                    assertEquals(21.0, (double) row.get("weight"), 0.01);
+                    row = r.next();
+                    assertEquals(asList("A", "B", "C", "D"), row.get("names"));
+                    assertEquals(31.0, (double) row.get("weight"), 0.01);
+                    assertEquals(false, r.hasNext());
+                });
+        testCall(db,
+                "MATCH (from:Loc{name:'A'}), (to:Loc{name:'D'}) " +
+                        "CALL apoc.algo.kShortestPaths(from, to, 'ROAD>|RAIL>', 10) yield weight RETURN collect(weight) AS weights",
+                row -> assertEquals(asList(1.0, 1.0, 2.0, 3.0), row.get("weights")));
+    }
+
     @Test
     public void testAStar() throws Exception {
         db.execute(SETUP).close();
@@ -0,0 +1,112 @@
+package apoc.algo;
+
+import apoc.util.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class StronglyConnectedTest {
+
+    private GraphDatabaseService db;
+
+    // cycle c,d,e, pair f<->g reached from the cycle, chain a->b->c, h without relationships
+    private static final String GRAPH = "CREATE (a:Node {name:'a'}), (b:Node {name:'b'}), (c:Node {name:'c'}), (d:Node {name:'d'})," +
+            " (e:Node {name:'e'}), (f:Node {name:'f'}), (g:Node {name:'g'}), (h:Node {name:'h'})" +
+            " CREATE (a)-[:R]->(b), (b)-[:R]->(c), (c)-[:R]->(d), (d)-[:R]->(e), (e)-[:R]->(c), (e)-[:R]->(f), (f)-[:R]->(g), (g)-[:R]->(f)";
+
+    @Before
+    public void setUp() throws Exception {
+        db = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        TestUtil.registerProcedure(db, StronglyConnected.class);
+        db.execute(GRAPH).close();
+    }
+
+    @After
+    public void tearDown() {
+        db.shutdown();
+    }
+
+    @Test
+    public void testTarjan() throws Exception {
+        assertComponents(components("tarjan"));
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        assertComponents(components("parallel"));
+    }
+
+    @Test
+    public void testMinSize() throws Exception {
+        TestUtil.testResult(db, "CALL apoc.algo.scc({minSize:3})", r -> {
+            assertEquals(3L, r.next().get("size"));
+            assertEquals(false, r.hasNext());
+        });
+    }
+
+    @Test
+    public void testSccOfLabelWithHigherIds() throws Exception {
+        // the labelled nodes are created after the other nodes, r also has a relationship leaving the label
+        db.execute("MATCH (a:Node {name:'a'}) CREATE (p:Scc {name:'p'}), (q:Scc {name:'q'}), (r:Scc {name:'r'})" +
+                " CREATE (p)-[:R]->(q), (q)-[:R]->(p), (q)-[:R]->(r), (r)-[:R]->(a)").close();
+        Map<Long, String> names = new HashMap<>();
+        TestUtil.testResult(db, "MATCH (n:Scc) RETURN id(n) AS id, n.name AS name", r -> r.forEachRemaining(row -> names.put((Long) row.get("id"), (String) row.get("name"))));
+        for (String algorithm : Arrays.asList("tarjan", "parallel")) {
+            Set<Set<String>> components = new HashSet<>();
+            TestUtil.testResult(db, "CALL apoc.algo.scc({label:'Scc', algorithm:{algorithm}})", Collections.singletonMap("algorithm", algorithm), r -> r.forEachRemaining(row -> {
+                Set<String> component = new HashSet<>();
+                ((List<Long>) row.get("nodeIds")).forEach(id -> component.add(names.get(id)));
+                components.add(component);
+            }));
+            assertEquals(new HashSet<>(Arrays.asList(new HashSet<>(Arrays.asList("p", "q")), Collections.singleton("r"))), components);
+        }
+    }
+
+    @Test
+    public void testSccStatsWrite() throws Exception {
+        TestUtil.testCall(db, "CALL apoc.algo.sccStats({write:true, batchSize:2})", row -> {
+            assertEquals(8L, row.get("relationships"));
+            assertEquals(4L, row.get("components"));
+            assertEquals(3L, row.get("maxSize"));
+            assertEquals(true, row.get("write"));
+        });
+        try (Transaction tx = db.beginTx()) {
+            TestUtil.testCall(db, "MATCH (c:Node {name:'c'}), (d:Node {name:'d'}), (e:Node {name:'e'}), (f:Node {name:'f'}) " +
+                    "RETURN c.scc = id(c) AS root, c.scc = d.scc AND d.scc = e.scc AS cycle, c.scc <> f.scc AS separate", row -> {
+                assertEquals(true, row.get("root"));
+                assertEquals(true, row.get("cycle"));
+                assertEquals(true, row.get("separate"));
+            });
+            tx.success();
+        }
+    }
+
+    private Set<Set<String>> components(String algorithm) {
+        Map<Long, String> names = new HashMap<>();
+        TestUtil.testResult(db, "MATCH (n:Node) RETURN id(n) AS id, n.name AS name", r -> r.forEachRemaining(row -> names.put((Long) row.get("id"), (String) row.get("name"))));
+        Set<Set<String>> result = new HashSet<>();
+        TestUtil.testResult(db, "CALL apoc.algo.scc({algorithm:{algorithm}})", Collections.singletonMap("algorithm", algorithm), r -> r.forEachRemaining(row -> {
+            List<Long> nodeIds = (List<Long>) row.get("nodeIds");
+            assertEquals(row.get("size"), (long) nodeIds.size());
+            assertEquals(true, nodeIds.contains(row.get("componentId")));
+            Set<String> component = new HashSet<>();
+            nodeIds.forEach(id -> component.add(names.get(id)));
+            result.add(component);
+        }));
+        return result;
+    }
+
+    private void assertComponents(Set<Set<String>> components) {
+        Set<Set<String>> expected = new HashSet<>(Arrays.asList(
+                Collections.singleton("a"), Collections.singleton("b"),
+                new HashSet<>(Arrays.asList("c", "d", "e")), new HashSet<>(Arrays.asList("f", "g"))));
+        assertEquals(expected, components);
+    }
+}
@@ -0,0 +1,97 @@
+package apoc.algo;
+
+import apoc.util.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class TrianglesTest {
+
+    private GraphDatabaseService db;
+
+    // triangle a,b,c with a parallel relationship and a self-loop, d only attached to c
+    private static final String GRAPH = "CREATE (a:Node {name:'a'}), (b:Node {name:'b'}), (c:Node {name:'c'}), (d:Node {name:'d'})" +
+            " CREATE (a)-[:R]->(b), (b)-[:R]->(a), (b)-[:R]->(c), (c)-[:R]->(a), (c)-[:R]->(c), (d)-[:R]->(c)";
+
+    @Before
+    public void setUp() throws Exception {
+        db = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        TestUtil.registerProcedure(db, Triangles.class);
+        db.execute(GRAPH).close();
+    }
+
+    @After
+    public void tearDown() {
+        db.shutdown();
+    }
+
+    @Test
+    public void testTriangles() throws Exception {
+        Map<String, Long> triangles = new HashMap<>();
+        Map<String, Double> coefficients = new HashMap<>();
+        TestUtil.testResult(db, "CALL apoc.algo.triangles({})", r -> r.forEachRemaining(row -> {
+            String name = (String) ((Node) row.get("node")).getProperty("name");
+            triangles.put(name, (Long) row.get("triangles"));
+            coefficients.put(name, (Double) row.get("coefficient"));
+        }));
+        assertEquals(4, triangles.size());
+        assertEquals(1L, (long) triangles.get("a"));
+        assertEquals(1L, (long) triangles.get("b"));
+        assertEquals(1L, (long) triangles.get("c"));
+        assertEquals(0L, (long) triangles.get("d"));
+        assertEquals(1.0, coefficients.get("a"), 0.0001);
+        assertEquals(1.0 / 3, coefficients.get("c"), 0.0001);
+        assertEquals(0.0, coefficients.get("d"), 0.0001);
+    }
+
+    @Test
+    public void testTrianglesOfLabelWithHigherIds() throws Exception {
+        // the labelled nodes are created after the other nodes, x also has a relationship leaving the label
+        db.execute("MATCH (a:Node {name:'a'}) CREATE (x:Tri {name:'x'}), (y:Tri {name:'y'}), (z:Tri {name:'z'})" +
+                " CREATE (x)-[:R]->(y), (y)-[:R]->(z), (z)-[:R]->(x), (x)-[:R]->(a)").close();
+        Map<String, Long> triangles = new HashMap<>();
+        Map<String, Double> coefficients = new HashMap<>();
+        TestUtil.testResult(db, "CALL apoc.algo.triangles({label:'Tri'})", r -> r.forEachRemaining(row -> {
+            String name = (String) ((Node) row.get("node")).getProperty("name");
+            triangles.put(name, (Long) row.get("triangles"));
+            coefficients.put(name, (Double) row.get("coefficient"));
+        }));
+        assertEquals(3, triangles.size());
+        assertEquals(1L, (long) triangles.get("x"));
+        assertEquals(1L, (long) triangles.get("z"));
+        assertEquals(1.0, coefficients.get("x"), 0.0001);
+        TestUtil.testCall(db, "CALL apoc.algo.trianglesStats({label:'Tri'})", row -> {
+            assertEquals(3L, row.get("nodes"));
+            assertEquals(3L, row.get("relationships"));
+            assertEquals(1L, row.get("triangles"));
+        });
+    }
+
+    @Test
+    public void testTrianglesStatsWrite() throws Exception {
+        TestUtil.testCall(db, "CALL apoc.algo.trianglesStats({write:true, batchSize:2})", row -> {
+            assertEquals(4L, row.get("nodes"));
+            assertEquals(4L, row.get("relationships"));
+            assertEquals(1L, row.get("triangles"));
+            assertEquals(0.6, (double) row.get("transitivity"), 0.0001);
+            assertEquals((1 + 1 + 1.0 / 3) / 4, (double) row.get("averageCoefficient"), 0.0001);
+            assertEquals(true, row.get("write"));
+        });
+        try (Transaction tx = db.beginTx()) {
+            TestUtil.testCall(db, "MATCH (n:Node {name:'c'}) RETURN n.triangles AS triangles, n.coefficient AS coefficient", row -> {
+                assertEquals(1, ((Number) row.get("triangles")).intValue());
+                assertEquals(1.0 / 3, (double) row.get("coefficient"), 0.0001);
+            });
+            tx.success();
+        }
+    }
+}
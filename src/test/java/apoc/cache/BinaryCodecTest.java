@@ -0,0 +1,57 @@
+package apoc.cache;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static apoc.util.MapUtil.map;
+import static org.junit.Assert.*;
+
+public class BinaryCodecTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Map<String, Object> value = map("name", "Grüße 😀", "count", -42L, "score", 1.5D, "flag", true, "none", null,
+                "list", Arrays.asList(1L, "two", Collections.singletonMap("three", 3L)), "empty", Collections.emptyList());
+        ByteBuffer buffer = BinaryCodec.encodeDirect(value);
+        assertTrue(buffer.isDirect());
+        assertEquals(BinaryCodec.size(value), buffer.remaining());
+        assertEquals(value, BinaryCodec.decode(buffer));
+        // decoding doesn't move the shared buffer
+        assertEquals(value, BinaryCodec.decode(buffer));
+    }
+
+    @Test
+    public void testPrimitiveArrays() throws Exception {
+        long[] longs = {Long.MIN_VALUE, -1, 0, 1, Long.MAX_VALUE};
+        double[] doubles = {0.25, Double.NaN, -1e300};
+        int[] ints = {1, 2, 3};
+        List<Object> value = Arrays.asList(longs, doubles, ints, new byte[]{1, 2});
+        List<?> decoded = (List<?>) BinaryCodec.decode(BinaryCodec.encodeDirect(value));
+        assertArrayEquals(longs, (long[]) decoded.get(0));
+        assertArrayEquals(doubles, (double[]) decoded.get(1), 0);
+        assertArrayEquals(ints, (int[]) decoded.get(2));
+        assertArrayEquals(new byte[]{1, 2}, (byte[]) decoded.get(3));
+        // raw elements plus tag and length
+        assertEquals(1 + 2 + 8 * 1000, BinaryCodec.size(new long[1000]));
+    }
+
+    @Test
+    public void testIntegersAreCompact() throws Exception {
+        assertEquals(2, BinaryCodec.size(1));
+        assertEquals(2, BinaryCodec.size(-64L));
+        assertEquals(11, BinaryCodec.size(Long.MIN_VALUE));
+        assertEquals(Long.MIN_VALUE, BinaryCodec.decode(BinaryCodec.encodeDirect(Long.MIN_VALUE)));
+    }
+
+    @Test
+    public void testSupports() throws Exception {
+        assertTrue(BinaryCodec.supports(map("a", Arrays.asList(1, 2.0, "x"))));
+        assertFalse(BinaryCodec.supports(new Object()));
+        assertFalse(BinaryCodec.supports(Collections.singletonMap(1, "a")));
+    }
+}
@@ -0,0 +1,80 @@
+package apoc.cache;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentCacheTest {
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        ConcurrentCache<String, Integer> cache = new ConcurrentCache<>(1, 2, -1, null);
+        cache.put("a", 1, ConcurrentCache.NO_TTL);
+        cache.put("b", 2, ConcurrentCache.NO_TTL);
+        assertEquals(1, (int) cache.get("a"));
+        cache.put("c", 3, ConcurrentCache.NO_TTL);
+        assertNull(cache.get("b"));
+        assertEquals(1, (int) cache.get("a"));
+        assertEquals(3, (int) cache.get("c"));
+        ConcurrentCache.Stats stats = cache.stats();
+        assertEquals(2, stats.size);
+        assertEquals(1, stats.evictions);
+        assertEquals(3, stats.hits);
+        assertEquals(1, stats.misses);
+    }
+
+    @Test
+    public void testBoundedByWeight() throws Exception {
+        ConcurrentCache<String, String> cache = new ConcurrentCache<>(1, -1, 10, String::length);
+        cache.put("a", "12345", ConcurrentCache.NO_TTL);
+        cache.put("b", "12345", ConcurrentCache.NO_TTL);
+        cache.put("c", "1", ConcurrentCache.NO_TTL);
+        assertNull(cache.get("a"));
+        assertEquals(6, cache.stats().weight);
+        assertFalse(cache.accepts("12345678901"));
+        try {
+            cache.put("c", "12345678901", ConcurrentCache.NO_TTL);
+            fail("value heavier than the cache was stored");
+        } catch (IllegalArgumentException e) {
+            // rejected
+        }
+        assertEquals("1", cache.get("c"));
+        assertEquals(1, cache.stats().evictions);
+    }
+
+    @Test
+    public void testExpires() throws Exception {
+        AtomicLong now = new AtomicLong();
+        ConcurrentCache<String, Integer> cache = new ConcurrentCache<>(4, 100, -1, null, now::get);
+        cache.put("a", 1, 20);
+        cache.put("b", 2, ConcurrentCache.NO_TTL);
+        now.set(19);
+        assertEquals(1, (int) cache.get("a"));
+        now.set(20);
+        assertNull(cache.get("a"));
+        assertEquals(2, (int) cache.get("b"));
+        assertEquals(1, cache.stats().expirations);
+        assertFalse(cache.snapshot().containsKey("a"));
+    }
+
+    @Test
+    public void testConcurrentCompute() throws Exception {
+        ConcurrentCache<String, Long> cache = new ConcurrentCache<>(16, 1000, -1, null);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            pool.submit(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    cache.compute("counter" + (j % 4), (key, value) -> value == null ? 1L : value + 1, ConcurrentCache.NO_TTL);
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 4; i++) assertEquals(2000L, (long) cache.get("counter" + i));
+    }
+}
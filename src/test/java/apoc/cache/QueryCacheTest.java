@@ -0,0 +1,77 @@
+package apoc.cache;
+
+import apoc.util.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import static org.junit.Assert.*;
+
+public class QueryCacheTest {
+    private static final String COUNT_PEOPLE = "call apoc.cache.query('people','MATCH (p:Person) RETURN count(*) AS c',{},-1,{labels:['Person']}) yield value return value.c as c";
+
+    private GraphDatabaseService db;
+
+    @Before
+    public void setUp() throws Exception {
+        db = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        TestUtil.registerProcedure(db, QueryCache.class);
+        db.execute("CREATE (:Person {name:'Alice'}), (:Movie {title:'Up'})").close();
+    }
+
+    @After
+    public void tearDown() {
+        db.shutdown();
+    }
+
+    @Test
+    public void testCachedUntilRegisteredLabelChanges() throws Exception {
+        TestUtil.testCall(db, COUNT_PEOPLE, r -> assertEquals(1L, r.get("c")));
+        db.execute("CREATE (:Movie {title:'Heat'})").close();
+        db.execute("MATCH (m:Movie {title:'Up'}) SET m.year = 2009").close();
+        // not invalidated by unrelated changes, the cached row is returned
+        db.execute("CREATE (:Movie)").close();
+        TestUtil.testCall(db, COUNT_PEOPLE, r -> assertEquals(1L, r.get("c")));
+        db.execute("CREATE (:Person {name:'Bob'})").close();
+        TestUtil.testCall(db, COUNT_PEOPLE, r -> assertEquals(2L, r.get("c")));
+        db.execute("MATCH (p:Person {name:'Bob'}) SET p.age = 42").close();
+        db.execute("MATCH (p:Person {name:'Bob'}) DELETE p").close();
+        TestUtil.testCall(db, COUNT_PEOPLE, r -> assertEquals(1L, r.get("c")));
+    }
+
+    @Test
+    public void testUnregisteredEntriesAreDroppedByAnyChange() throws Exception {
+        String query = "call apoc.cache.query('all','MATCH (n) RETURN count(*) AS c') yield value return value.c as c";
+        TestUtil.testCall(db, query, r -> assertEquals(2L, r.get("c")));
+        db.execute("CREATE ()").close();
+        TestUtil.testCall(db, query, r -> assertEquals(3L, r.get("c")));
+    }
+
+    @Test
+    public void testCachedUntilRegisteredTypeChanges() throws Exception {
+        String query = "call apoc.cache.query('knows','MATCH ()-[r:KNOWS]->() RETURN count(*) AS c',{},-1,{types:['KNOWS']}) yield value return value.c as c";
+        TestUtil.testCall(db, query, r -> assertEquals(0L, r.get("c")));
+        db.execute("MATCH (p:Person), (m:Movie) CREATE (p)-[:LIKES]->(m)").close();
+        db.execute("MATCH (p:Person) SET p.age = 42").close();
+        TestUtil.testCall(db, query, r -> assertEquals(0L, r.get("c")));
+        db.execute("MATCH (p:Person) CREATE (p)-[:KNOWS]->(p)").close();
+        TestUtil.testCall(db, query, r -> assertEquals(1L, r.get("c")));
+    }
+
+    @Test
+    public void testExpires() throws Exception {
+        String query = "call apoc.cache.query('expiring','MATCH (p:Person) RETURN count(*) AS c',{},50,{labels:['Movie']}) yield value return value.c as c";
+        TestUtil.testCall(db, query, r -> assertEquals(1L, r.get("c")));
+        db.execute("CREATE (:Person)").close();
+        TestUtil.testCall(db, query, r -> assertEquals(1L, r.get("c")));
+        Thread.sleep(100);
+        TestUtil.testCall(db, query, r -> assertEquals(2L, r.get("c")));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testRejectsWrites() throws Exception {
+        TestUtil.testCall(db, "call apoc.cache.query('write','CREATE (n) RETURN n') yield value return value", r -> {});
+    }
+}
@@ -5,6 +5,8 @@ import apoc.cypher.Cypher;
 import apoc.util.TestUtil;
 import org.junit.*;
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.factory.GraphDatabaseBuilder;
 import org.neo4j.graphdb.factory.GraphDatabaseSettings;
 import org.neo4j.test.TestGraphDatabaseFactory;
 
@@ -23,12 +25,29 @@ public class StaticTest {
 
     @Before
     public  void setUp() throws Exception {
-        db = new TestGraphDatabaseFactory()
-                .newImpermanentDatabaseBuilder()
+        db = newDb(new TestGraphDatabaseFactory().newImpermanentDatabaseBuilder());
+    }
+
+    private GraphDatabaseService newDb(GraphDatabaseBuilder builder) throws Exception {
+        GraphDatabaseService db = builder
                 .setConfig("apoc.static.test",VALUE)
                 .setConfig("apoc.static.all.test",VALUE)
                 .newGraphDatabase();
         TestUtil.registerProcedure(db, Static.class);
+        return db;
+    }
+
+    private Object get(String key) {
+        try (Result result = db.execute("call apoc.static.get({key})", map("key", key))) {
+            return result.next().get("value");
+        }
+    }
+
+    private void useOffHeap(String maxBytes) throws Exception {
+        db.shutdown();
+        db = newDb(new TestGraphDatabaseFactory().newImpermanentDatabaseBuilder()
+                .setConfig("apoc.cache.offheap.max_bytes",maxBytes)
+                .setConfig("apoc.cache.offheap.threshold","1000"));
     }
 
     @After
@@ -76,4 +95,68 @@ public class StaticTest {
         TestUtil.testCall(db, "call apoc.static.set('test2',null)", r -> assertEquals(42L,r.get("value")));
         TestUtil.testCall(db, "call apoc.static.get('test2')", r -> assertEquals(null,r.get("value")));
     }
+
+    @Test
+    public void testIncrement() throws Exception {
+        TestUtil.testCall(db, "call apoc.static.increment('counter')", r -> assertEquals(1L,r.get("value")));
+        TestUtil.testCall(db, "call apoc.static.increment('counter',41)", r -> assertEquals(42L,r.get("value")));
+        TestUtil.testCall(db, "call apoc.static.increment('counter',0.5)", r -> assertEquals(42.5D,r.get("value")));
+        TestUtil.testCall(db, "call apoc.static.set('counter',null)", r -> assertEquals(42.5D,r.get("value")));
+    }
+
+    @Test
+    public void testSetIfAbsent() throws Exception {
+        TestUtil.testCall(db, "call apoc.static.setIfAbsent('absent',1)", r -> assertEquals(1L,r.get("value")));
+        TestUtil.testCall(db, "call apoc.static.setIfAbsent('absent',2)", r -> assertEquals(1L,r.get("value")));
+        TestUtil.testCall(db, "call apoc.static.get('absent')", r -> assertEquals(1L,r.get("value")));
+    }
+
+    @Test
+    public void testTtl() throws Exception {
+        TestUtil.testCall(db, "call apoc.static.set('expiring',42,50)", r -> assertEquals(null,r.get("value")));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (get("expiring") != null) {
+            assertTrue("value did not expire", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        TestUtil.testCall(db, "call apoc.static.stats()", r -> assertEquals(1L,r.get("expirations")));
+    }
+
+    @Test
+    public void testLargeValuesOffHeap() throws Exception {
+        useOffHeap("100000");
+        TestUtil.testCall(db, "call apoc.static.set('large',range(1,1000))", r -> assertEquals(null,r.get("value")));
+        TestUtil.testCall(db, "call apoc.static.offHeapStats()", r -> assertEquals(1L,r.get("size")));
+        TestUtil.testCall(db, "call apoc.static.get('large') yield value return size(value) as size, value[999] as last", r -> {
+            assertEquals(1000L,r.get("size"));
+            assertEquals(1000L,r.get("last"));
+        });
+        TestUtil.testCall(db, "call apoc.static.setIfAbsent('large',1) yield value return size(value) as size", r -> assertEquals(1000L,r.get("size")));
+        TestUtil.testCall(db, "call apoc.static.set('large','small') yield value return size(value) as size", r -> assertEquals(1000L,r.get("size")));
+        TestUtil.testCall(db, "call apoc.static.offHeapStats()", r -> assertEquals(0L,r.get("size")));
+        TestUtil.testCall(db, "call apoc.static.get('large')", r -> assertEquals("small",r.get("value")));
+    }
+
+    @Test
+    public void testValuesLargerThanOffHeapStayOnHeap() throws Exception {
+        // the encoded list takes about 3000 bytes
+        useOffHeap("2000");
+        TestUtil.testCall(db, "call apoc.static.set('large',range(1,1000))", r -> assertEquals(null,r.get("value")));
+        TestUtil.testCall(db, "call apoc.static.offHeapStats()", r -> assertEquals(0L,r.get("size")));
+        TestUtil.testCall(db, "call apoc.static.get('large') yield value return size(value) as size", r -> assertEquals(1000L,r.get("size")));
+        TestUtil.testCall(db, "call apoc.static.stats()", r -> {
+            assertEquals(1L,r.get("size"));
+            assertEquals(1L,r.get("hits"));
+            assertEquals(0L,r.get("misses"));
+        });
+    }
+
+    @Test
+    public void testOffHeapHitsAreNoHeapMisses() throws Exception {
+        useOffHeap("100000");
+        TestUtil.testCall(db, "call apoc.static.set('large',range(1,1000))", r -> assertEquals(null,r.get("value")));
+        TestUtil.testCall(db, "call apoc.static.get('large') yield value return size(value) as size", r -> assertEquals(1000L,r.get("size")));
+        TestUtil.testCall(db, "call apoc.static.stats()", r -> assertEquals(0L,r.get("misses")));
+        TestUtil.testCall(db, "call apoc.static.offHeapStats()", r -> assertEquals(1L,r.get("hits")));
+    }
 }
@@ -0,0 +1,67 @@
+package apoc.index;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.logging.NullLog;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.io.File;
+import java.util.List;
+
+import static apoc.index.IndexCommand.Type.ADD;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncIndexUpdaterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private GraphDatabaseAPI db;
+
+    @Before
+    public void setUp() throws Exception {
+        db = (GraphDatabaseAPI) new TestGraphDatabaseFactory().newImpermanentDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        db.shutdown();
+    }
+
+    @Test(timeout = 10000)
+    public void testCheckpointWhileQueueIsFull() throws Exception {
+        AsyncIndexUpdater updater = new AsyncIndexUpdater(db, NullLog.getInstance(), 1, 1, 100, 100, folder.getRoot(), false);
+        // no worker threads, so the queue stays full
+        updater.openJournals();
+        AsyncIndexUpdater.Worker worker = updater.workers[0];
+        File file = IndexJournal.file(folder.getRoot(), 0);
+
+        updater.submit(singletonList(new IndexCommand("people", 1, ADD, "Person.name", "a")));
+        Thread producer = new Thread(() -> {
+            try {
+                updater.submit(singletonList(new IndexCommand("people", 2, ADD, "Person.name", "b")));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        producer.start();
+        while (IndexJournal.read(file).size() < 2) Thread.sleep(10);
+
+        worker.journal.checkpoint(worker.queue.peek().journalEnd);
+        assertTrue(producer.isAlive());
+        List<IndexCommand> commands = IndexJournal.read(file);
+        assertEquals(1, commands.size());
+        assertEquals(2, commands.get(0).node);
+
+        worker.queue.take();
+        producer.join();
+        assertEquals(2, worker.queue.take().commands.get(0).node);
+        worker.journal.close();
+    }
+}
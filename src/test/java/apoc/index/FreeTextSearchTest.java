@@ -453,6 +453,80 @@ public class FreeTextSearchTest {
         };
     }
 
+    @Test
+    public void shouldPageThroughResultsWithCursor() throws Exception {
+        // given
+        execute("UNWIND range(1,10) AS id CREATE (:Thing{name:'apple ' + id, description: CASE WHEN id % 3 = 0 THEN 'apple pie' ELSE 'pear' END})");
+        execute("CALL apoc.index.addAllNodes('things', {Thing:['name','description']})");
+
+        // when
+        Set<Long> seen = new HashSet<>();
+        Map<String, Object> after = null;
+        double lastWeight = Double.MAX_VALUE;
+        for (int page = 0; page < 4; page++) {
+            List<Map<String, Object>> rows = new ArrayList<>();
+            TestUtil.testResult(db, "CALL apoc.index.search('things', 'apple', 3, {config}) YIELD node, weight RETURN id(node) AS id, weight",
+                    map("config", after == null ? map() : map("after", after)), result -> result.forEachRemaining(rows::add));
+            assertEquals(page < 3 ? 3 : 1, rows.size());
+            for (Map<String, Object> row : rows) {
+                assertTrue("no duplicates across pages", seen.add((Long) row.get("id")));
+                double weight = (double) row.get("weight");
+                assertTrue("ordered by weight", weight <= lastWeight);
+                lastWeight = weight;
+            }
+            Map<String, Object> last = rows.get(rows.size() - 1);
+            after = map("weight", last.get("weight"), "id", last.get("id"));
+        }
+
+        // then
+        assertEquals(10, seen.size());
+    }
+
+    @Test
+    public void shouldPopulateInParallelBatches() throws Exception {
+        // given
+        execute("UNWIND range(1,1000) AS id CREATE (:Person{name:'Person ' + id}), (:Place{name:'Place ' + id})");
+
+        // when
+        TestUtil.testCall(db, "CALL apoc.index.addAllNodes('people', {Person:['name']}, {workers:4, rangeSize:100, batchSize:50})", row -> {
+            assertEquals("Person", row.get("label"));
+            assertEquals(1000L, row.get("nodeCount"));
+            assertEquals(1.0, row.get("progress"));
+        });
+
+        // then
+        assertSingleNode("people", termQuery("999"), hasProperty("name", "Person 999"));
+        assertSingleNode("people", termQuery("1"), hasProperty("name", "Person 1"));
+        try (Transaction tx = db.beginTx()) {
+            assertNone(nodeIndex("people").query(termQuery("place")));
+            assertFalse(db.index().getConfiguration(nodeIndex("people")).containsKey("batchSize"));
+            tx.success();
+        }
+    }
+
+    @Test
+    public void shouldReportMissingAndStaleEntries() throws Exception {
+        // given
+        execute("CREATE (:Person{name:'George', age:42}), (:Person{name:'Cyrus', age:103})");
+        execute("CALL apoc.index.addAllNodes('people', {Person:['name','age']})");
+
+        // when
+        execute("MATCH (p:Person{name:'Cyrus'}) REMOVE p:Person");
+        execute("CREATE (:Person{name:'Joe', age:7})");
+
+        // then
+        for (String property : asList("name", "age")) {
+            TestUtil.testCall(db, "CALL apoc.index.check('people', 'Person', {property})", map("property", property), row -> {
+                assertEquals(2L, row.get("nodesChecked"));
+                assertEquals(2L, row.get("entriesChecked"));
+                assertEquals(1L, row.get("missing"));
+                assertEquals(1L, row.get("stale"));
+                assertEquals(1, ((List) row.get("missingNodes")).size());
+                assertEquals(1, ((List) row.get("staleNodes")).size());
+            });
+        }
+    }
+
     private Index<Node> nodeIndex(String name) {
         assertTrue(db.index().existsForNodes(name));
         return db.index().forNodes(name);
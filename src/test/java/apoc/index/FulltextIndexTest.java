@@ -7,10 +7,14 @@ import org.junit.Before;
 import org.junit.Test;
 import org.neo4j.graphdb.*;
 import org.neo4j.graphdb.index.IndexManager;
+import org.neo4j.helpers.collection.Iterators;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.logging.NullLog;
 import org.neo4j.test.TestGraphDatabaseFactory;
 
 import static apoc.util.MapUtil.map;
 import static apoc.util.TestUtil.testCall;
+import static apoc.util.TestUtil.testResult;
 import static org.junit.Assert.*;
 
 /**
@@ -52,6 +56,53 @@ public class FulltextIndexTest {
         db.shutdown();
     }
 
+    @Test
+    public void testLatency() throws Exception {
+        createData();
+        IndexMetrics.clear();
+        db.execute("CALL apoc.index.nodes('Person', 'name:Jo*')").close();
+        db.execute("CALL apoc.index.nodes('Person', 'name:Ja*')").close();
+        testCall(db, "CALL apoc.index.latency()", (row) -> {
+            assertEquals(PERSON, row.get("index"));
+            assertEquals(2L, row.get("count"));
+            long p50 = (long) row.get("p50Micros"), p99 = (long) row.get("p99Micros");
+            assertTrue(p50 <= p99);
+            assertTrue(p99 <= (long) row.get("maxMicros"));
+        });
+    }
+
+    @Test
+    public void testLatencyOfStreamedHits() throws Exception {
+        createData();
+        IndexMetrics.clear();
+        testCall(db, "MATCH (joe:Person) CALL apoc.index.out(joe, 'CHECKIN', 'on:2015-*') YIELD node RETURN node", (row) -> { });
+        testCall(db, "CALL apoc.index.latency()", (row) -> {
+            assertEquals(TYPE, row.get("index"));
+            assertEquals(1L, row.get("count"));
+        });
+    }
+
+    @Test
+    public void testWarmup() throws Exception {
+        createData();
+        IndexWarmup.LifeCycle warmup = new IndexWarmup.LifeCycle((GraphDatabaseAPI) db, NullLog.getInstance());
+        assertEquals(2, warmup.warmup(map(PERSON, "name:*", TYPE, "on:2015-*", "Missing", "name:*")));
+    }
+
+    @Test
+    public void testLatencyHistogramBuckets() throws Exception {
+        IndexMetrics.Histogram histogram = new IndexMetrics.Histogram();
+        for (int i = 0; i < 98; i++) histogram.record(100);
+        histogram.record(5000);
+        histogram.record(9000);
+        IndexMetrics.IndexLatency latency = histogram.stats("test");
+        assertEquals(100, latency.count);
+        assertEquals(128, latency.p50Micros);
+        assertEquals(128, latency.p90Micros);
+        assertEquals(8192, latency.p99Micros);
+        assertEquals(9000, latency.maxMicros);
+    }
+
     @Test
     public void testNodes() throws Exception {
         createData();
@@ -116,6 +167,28 @@ public class FulltextIndexTest {
                 });
     }
 
+    @Test
+    public void testOutAndInOfHubWithLimit() throws Exception {
+        createData();
+        try (Transaction tx = db.beginTx()) {
+            Node joe = db.findNode(Label.label(PERSON), NAME, JOE);
+            for (int i = 0; i < 10; i++) {
+                Node place = db.createNode(Label.label(PLACE));
+                place.setProperty(NAME, "Place " + i);
+                Relationship checkin = joe.createRelationshipTo(place, RelationshipType.withName(TYPE));
+                checkin.setProperty("on", DATE);
+                db.index().forRelationships(TYPE).add(checkin, "on", DATE);
+            }
+            tx.success();
+        }
+        testResult(db, "MATCH (joe:Person {name:'Joe'}) CALL apoc.index.out(joe, 'CHECKIN', 'on:2015-*', {limit:3}) YIELD node RETURN node",
+                result -> assertEquals(3, Iterators.count(result)));
+        testResult(db, "MATCH (joe:Person {name:'Joe'}) CALL apoc.index.between(joe, 'CHECKIN', null, 'on:2015-*') YIELD rel RETURN rel",
+                result -> assertEquals(11, Iterators.count(result)));
+        testCall(db, "MATCH (p:Place {name:'Place 7'}) CALL apoc.index.in(p, 'CHECKIN', 'on:2015-*') YIELD node RETURN node",
+                (row) -> assertEquals(JOE, ((Node) row.get("node")).getProperty(NAME)));
+    }
+
     private void createData() {
         testCall(db, "CREATE "+CHECKIN_PATTERN+" RETURN *",(row)->{
             Node joe = (Node) row.get("joe");
@@ -0,0 +1,82 @@
+package apoc.index;
+
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.index.Index;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static apoc.index.IndexCommand.Type.*;
+import static org.junit.Assert.assertEquals;
+
+public class IndexCommandTest {
+
+    @Test
+    public void testCoalesceDropsRemovedCommands() throws Exception {
+        List<IndexCommand> commands = IndexCommand.coalesce(Arrays.asList(
+                new IndexCommand("people", 1, ADD, "Person.name", "a"),
+                new IndexCommand("people", 1, REPLACE, "Person.name", "b"),
+                new IndexCommand("people", 2, ADD, "Person.name", "x"),
+                new IndexCommand("people", 1, REPLACE, "Person.name", "c"),
+                new IndexCommand("people", 2, REMOVE, "Person.name", null),
+                new IndexCommand("places", 1, ADD, "City.name", "y")));
+        assertEquals(3, commands.size());
+        assertCommand(commands.get(0), 1, REPLACE, "c");
+        assertCommand(commands.get(1), 2, REMOVE, null);
+        assertCommand(commands.get(2), 1, ADD, "y");
+        assertEquals("places", commands.get(2).index);
+    }
+
+    @Test
+    public void testCoalesceKeepsConsecutiveAdds() throws Exception {
+        List<IndexCommand> commands = IndexCommand.coalesce(Arrays.asList(
+                new IndexCommand("people", 3, ADD, "Person.name", "a"),
+                new IndexCommand("people", 3, ADD, "Person.name", "b")));
+        assertEquals(2, commands.size());
+        assertCommand(commands.get(0), 3, ADD, "a");
+        assertCommand(commands.get(1), 3, ADD, "b");
+    }
+
+    @Test
+    public void testCoalesceKeepsOrderOfKeysOfANode() throws Exception {
+        List<IndexCommand> commands = IndexCommand.coalesce(Arrays.asList(
+                new IndexCommand("people", 1, REMOVE, "Person.name", null),
+                new IndexCommand("people", 1, ADD, "Person.email", "b"),
+                new IndexCommand("people", 1, ADD, "Person.name", "a")));
+        assertEquals(3, commands.size());
+        assertCommand(commands.get(0), 1, REMOVE, null);
+        assertCommand(commands.get(1), 1, ADD, "b");
+        assertCommand(commands.get(2), 1, ADD, "a");
+    }
+
+    @Test
+    public void testCoalescedCommandsKeepFullTextEntriesOfAllKeys() throws Exception {
+        GraphDatabaseService db = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        try (Transaction tx = db.beginTx()) {
+            Index<Node> index = db.index().forNodes("people");
+            Node node = db.createNode();
+            for (IndexCommand command : IndexCommand.coalesce(Arrays.asList(
+                    new IndexCommand("people", node.getId(), REMOVE, "Person.name", null),
+                    new IndexCommand("people", node.getId(), ADD, "Person.email", "b"),
+                    new IndexCommand("people", node.getId(), ADD, "Person.name", "a")))) {
+                command.apply(index, node);
+            }
+            assertEquals(node, index.get(FreeTextSearch.KEY, "a").getSingle());
+            assertEquals(node, index.get(FreeTextSearch.KEY, "b").getSingle());
+            assertEquals(node, index.get("Person.email", "b").getSingle());
+            tx.success();
+        } finally {
+            db.shutdown();
+        }
+    }
+
+    private void assertCommand(IndexCommand command, long node, IndexCommand.Type type, Object value) {
+        assertEquals(node, command.node);
+        assertEquals(type, command.type);
+        assertEquals(value, command.value);
+    }
+}
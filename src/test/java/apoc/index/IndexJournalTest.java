@@ -0,0 +1,77 @@
+package apoc.index;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static apoc.index.IndexCommand.Type.*;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class IndexJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCheckpointDropsAppliedRecords() throws Exception {
+        File file = IndexJournal.file(folder.getRoot(), 0);
+        try (IndexJournal journal = new IndexJournal(file, false)) {
+            long first = journal.append(asList(new IndexCommand("people", 1, ADD, "Person.name", "a")));
+            long second = journal.append(asList(new IndexCommand("people", 2, REPLACE, "Person.name", "b"),
+                    new IndexCommand("places", 3, REMOVE, "City.name", null)));
+            assertEquals(3, IndexJournal.read(file).size());
+
+            journal.checkpoint(first);
+            List<IndexCommand> commands = IndexJournal.read(file);
+            assertEquals(2, commands.size());
+            assertEquals(2, commands.get(0).node);
+            assertEquals(REPLACE, commands.get(0).type);
+            assertEquals("Person.name", commands.get(0).key);
+            assertNull(commands.get(0).value);
+            assertEquals("places", commands.get(1).index);
+
+            long third = journal.append(asList(new IndexCommand("people", 4, ADD, "Person.name", "c")));
+            journal.checkpoint(second);
+            assertEquals(4, IndexJournal.read(file).get(0).node);
+
+            journal.checkpoint(third);
+            assertEquals(0, file.length());
+        }
+    }
+
+    @Test
+    public void testCheckpointKeepsRecordsBeforeUncommittedOnes() throws Exception {
+        File file = IndexJournal.file(folder.getRoot(), 2);
+        try (IndexJournal journal = new IndexJournal(file, false)) {
+            long first = journal.append(asList(new IndexCommand("people", 1, ADD, "Person.name", "a")));
+            long second = journal.append(asList(new IndexCommand("people", 2, ADD, "Person.name", "b")));
+
+            journal.checkpoint(second);
+            assertEquals(2, IndexJournal.read(file).size());
+
+            journal.checkpoint(first);
+            assertEquals(0, file.length());
+        }
+    }
+
+    @Test
+    public void testTornRecordEndsJournal() throws Exception {
+        File file = IndexJournal.file(folder.getRoot(), 1);
+        try (IndexJournal journal = new IndexJournal(file, true)) {
+            journal.append(asList(new IndexCommand("people", 1, ADD, "Person.name", "a")));
+            journal.append(asList(new IndexCommand("people", 2, ADD, "Person.name", "b")));
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+        List<IndexCommand> commands = IndexJournal.read(file);
+        assertEquals(1, commands.size());
+        assertEquals(1, commands.get(0).node);
+    }
+}
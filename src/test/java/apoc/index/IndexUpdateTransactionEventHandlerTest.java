@@ -5,6 +5,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.helpers.collection.Iterators;
 import org.neo4j.test.TestGraphDatabaseFactory;
 
 import static apoc.util.TestUtil.*;
@@ -70,4 +71,32 @@ public class IndexUpdateTransactionEventHandlerTest {
         testCallCount(db, "match (s:Submarine) remove s.periscope return s", null, 2);
     }
 
+    @Test
+    public void shouldUpdateIndexesAsynchronously() throws Exception {
+        db.shutdown();
+        db = new TestGraphDatabaseFactory().newImpermanentDatabaseBuilder()
+                .setConfig("apoc.autoIndex.enabled", "true")
+                .setConfig("apoc.autoIndex.async", "true")
+                .setConfig("apoc.autoIndex.async_threads", "2")
+                .setConfig("apoc.autoIndex.async_rollover_millis", "50")
+                .newGraphDatabase();
+        TestUtil.registerProcedure(db, FreeTextSearch.class);
+        testCallEmpty(db, "call apoc.index.addAllNodesExtended('people',{Person:['name']},{autoUpdate:true})", null);
+        testCallEmpty(db, "call apoc.index.addAllNodesExtended('places',{City:['name']},{autoUpdate:true})", null);
+        testCallEmpty(db, "create (:Person{name:'John Doe'}), (:City{name:'Johnstown'})", null);
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (count("start n=node:people('Person.name:John') return n") + count("start n=node:places('City.name:Johnstown') return n") < 2) {
+            assertTrue("index not updated in time", System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+        TestUtil.testCall(db, "call apoc.index.autoUpdateStats() yield worker, appliedOps return count(*) as workers, sum(appliedOps) as ops", map -> {
+            assertEquals(2L, map.get("workers"));
+            assertEquals(2L, map.get("ops"));
+        });
+    }
+
+    private long count(String query) {
+        return Iterators.count(db.execute(query));
+    }
 }
@@ -25,6 +25,7 @@ import java.util.stream.LongStream;
 import static apoc.util.MapUtil.map;
 import static apoc.util.TestUtil.testCall;
 import static apoc.util.TestUtil.testResult;
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -59,7 +60,7 @@ public class SchemaIndexTest {
         personIds = IntStream.range(firstPerson, lastPerson+1).mapToObj(Long::new).collect(Collectors.toList());
         personNames = IntStream.range(firstPerson, lastPerson+1).mapToObj(Integer::toString).map(i -> "name"+i).sorted().collect(Collectors.toList());
         personAddresses = IntStream.range(firstPerson, lastPerson+1).mapToObj(Integer::toString).map(i -> i+"Main St.").sorted().collect(Collectors.toList());
-        personAges = IntStream.range(firstPerson, lastPerson+1).map(i -> i % 100).sorted().mapToObj(Long::new).collect(Collectors.toList());
+        personAges = IntStream.range(firstPerson, lastPerson+1).map(i -> i % 100).distinct().sorted().mapToObj(Long::new).collect(Collectors.toList());
 
         try (Transaction tx=db.beginTx()) {
             db.schema().awaitIndexesOnline(2,TimeUnit.SECONDS);
@@ -82,67 +83,112 @@ public class SchemaIndexTest {
     }
 
     @Test
-    public void testOrderedRangeNumbers() throws Exception {
-        testResult(db, "CALL apoc.index.orderedRange('Person','age',10,30,false,10)", r -> {
-            for (long i=10;i<20;i++) {
-                assertEquals(i,((Node)r.next().get("node")).getProperty("id"));
-            }
+    public void testRelatedInParallelBatches() throws Exception {
+        testResult(db, "MATCH (city:City) WITH city CALL apoc.index.related([city],'Person','age','LIVES_IN>',5,{batchSize:3,parallel:true}) YIELD node RETURN *", r -> {
+            Function<Result,Object> age = (res) -> ((Node)res.next().get("node")).getProperty("age");
+            LongStream.of(1,2,3,4,5).forEach( (a) -> assertEquals(a,age.apply(r)));
             assertEquals(false, r.hasNext());
         });
     }
 
+    @Test
+    public void testRelatedInParallelBatchesSeesChangesOfTransaction() throws Exception {
+        try (Transaction tx = db.beginTx()) {
+            db.execute("MATCH (p:Person {id:7}) CREATE (p)-[:LIKES]->(:Liked)").close();
+            testResult(db, "MATCH (l:Liked) WITH collect(l) AS targets CALL apoc.index.related(targets,'Person','age','LIKES>',5,{batchSize:3,parallel:true}) YIELD node RETURN node", r -> {
+                assertEquals(7L, ((Node) r.next().get("node")).getProperty("id"));
+                assertEquals(false, r.hasNext());
+            });
+            tx.failure();
+        }
+    }
+
+    @Test
+    public void testRelatedWithoutRelationshipsOfTargets() throws Exception {
+        testCall(db, "MATCH (city:City) WITH city CALL apoc.index.related([city],'Person','age','<LIVES_IN',5) YIELD node RETURN count(*) AS count",
+                row -> assertEquals(0L, row.get("count")));
+    }
+
+    @Test
+    public void testRelatedFromTargetsOfHighDegreeCandidate() throws Exception {
+        db.execute("MATCH (p:Person {id:42}) CREATE (p)-[:KNOWS]->(:Target) WITH p UNWIND range(1,100) AS i CREATE (p)-[:KNOWS]->()").close();
+        try {
+            testResult(db, "MATCH (t:Target) WITH collect(t) AS targets CALL apoc.index.related(targets,'Person','age','KNOWS>',5) YIELD node RETURN node", r -> {
+                assertEquals(42L, ((Node) r.next().get("node")).getProperty("id"));
+                assertEquals(false, r.hasNext());
+            });
+        } finally {
+            db.execute("MATCH (:Person {id:42})-[:KNOWS]->(n) DETACH DELETE n").close();
+        }
+    }
+
+    @Test
+    public void testOrderedRangeNumbers() throws Exception {
+        testResult(db, "CALL apoc.index.orderedRange('Person','age',10,30,false,10)",
+                r -> assertIds(r, 10, 110, 11, 111, 12, 112, 13, 113, 14, 114));
+    }
+
     @Test
     public void testOrderedRangeNumbersLowerBound() throws Exception {
-        testResult(db, "CALL apoc.index.orderedRange('Person','age',10,null,false,5)", r -> {
-            for (long i=10;i<15;i++) {
-                assertEquals(i,((Node)r.next().get("node")).getProperty("id"));
-            }
-            assertEquals(false, r.hasNext());
-        });
+        testResult(db, "CALL apoc.index.orderedRange('Person','age',10,null,false,5)",
+                r -> assertIds(r, 10, 110, 11, 111, 12));
     }
     @Test
     public void testOrderedRangeNumbersUpperBound() throws Exception {
-        testResult(db, "CALL apoc.index.orderedRange('Person','age',null,10,false,5)", r -> {
-            for (long i=1;i<6;i++) {
-                assertEquals(i,((Node)r.next().get("node")).getProperty("id"));
-            }
-            assertEquals(false, r.hasNext());
-        });
+        testResult(db, "CALL apoc.index.orderedRange('Person','age',null,10,false,5)",
+                r -> assertIds(r, 100, 200, 1, 101, 2));
     }
 
     @Test
     public void testOrderedRangeNumbersRangeSmallerSize() throws Exception {
-        testResult(db, "CALL apoc.index.orderedRange('Person','age',10,15,false,10)", r -> {
-            for (long i=10;i<16;i++) {
-                assertEquals(i,((Node)r.next().get("node")).getProperty("id"));
-            }
-            for (long i=110;i<114;i++) {
-                assertEquals(i,((Node)r.next().get("node")).getProperty("id"));
-            }
-            assertEquals(false, r.hasNext());
-        });
+        testResult(db, "CALL apoc.index.orderedRange('Person','age',10,15,false,10)",
+                r -> assertIds(r, 10, 110, 11, 111, 12, 112, 13, 113, 14, 114));
+    }
+
+    @Test
+    public void testOrderedRangeNumbersDescending() throws Exception {
+        testResult(db, "CALL apoc.index.orderedRange('Person','age',10,30,false,5,{order:'DESC'})",
+                r -> assertIds(r, 130, 30, 129, 29, 128));
+    }
+
+    @Test
+    public void testOrderedRangeNumbersPageAfter() throws Exception {
+        testResult(db, "MATCH (p:Person {id:111}) CALL apoc.index.orderedRange('Person','age',10,30,false,4,{after:p}) YIELD node RETURN node",
+                r -> assertIds(r, 12, 112, 13, 113));
+        testResult(db, "CALL apoc.index.orderedRange('Person','age',10,30,false,3,{order:'DESC',after:{value:29,id:29}})",
+                r -> assertIds(r, 128, 28, 127));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testOrderedRangeNumbersPageAfterWithoutId() throws Exception {
+        testResult(db, "CALL apoc.index.orderedRange('Person','age',10,30,false,3,{after:{value:29}})", r -> r.hasNext());
     }
 
     @Test
     public void testOrderedRangeText() throws Exception {
-        testResult(db, "CALL apoc.index.orderedRange('Person','name','name10','name30',false,10)", r -> {
-            assertEquals(2L, ((Node) r.next().get("node")).getProperty("id"));
-            assertEquals(3L, ((Node) r.next().get("node")).getProperty("id"));
-            for (long i=10;i<18;i++) {
-                assertEquals(i, ((Node) r.next().get("node")).getProperty("id"));
-            }
-            assertEquals(false, r.hasNext());
-        });
+        testResult(db, "CALL apoc.index.orderedRange('Person','name','name10','name30',false,10)",
+                r -> assertIds(r, 10, 100, 101, 102, 103, 104, 105, 106, 107, 108));
     }
+
     @Test
     public void testOrderByText() throws Exception {
-        testResult(db, "CALL apoc.index.orderedByText('Person','name','STARTS WITH','name1',false,10)", r -> {
-            assertEquals(1L,((Node)r.next().get("node")).getProperty("id"));
-            for (long i=10;i<19;i++) {
-                assertEquals(i, ((Node) r.next().get("node")).getProperty("id"));
-            }
-            assertEquals(false, r.hasNext());
-        });
+        testResult(db, "CALL apoc.index.orderedByText('Person','name','STARTS WITH','name1',false,10)",
+                r -> assertIds(r, 1, 10, 100, 101, 102, 103, 104, 105, 106, 107));
+    }
+
+    @Test
+    public void testOrderByTextDescendingPageAfter() throws Exception {
+        testResult(db, "CALL apoc.index.orderedByText('Person','name','STARTS WITH','name1',false,3,{order:'DESC'})",
+                r -> assertIds(r, 199, 198, 197));
+        testResult(db, "CALL apoc.index.orderedByText('Person','name','STARTS WITH','name1',false,3,{order:'DESC',after:{value:'name198',id:198}})",
+                r -> assertIds(r, 197, 196, 195));
+    }
+
+    private void assertIds(Result r, long... ids) {
+        for (long id : ids) {
+            assertEquals(id, ((Node) r.next().get("node")).getProperty("id"));
+        }
+        assertEquals(false, r.hasNext());
     }
 
     @Test
@@ -161,6 +207,35 @@ public class SchemaIndexTest {
         );
     }
 
+    @Test
+    public void testDistinctNumbers() throws Exception {
+        testCall(db,"CALL apoc.schema.properties.distinct({label}, {key})",
+                map("label", "Person","key", "age"),
+                (row) -> assertEquals(personAges, row.get("value"))
+        );
+    }
+
+    @Test
+    public void testDistinctWithPrefixAndLimit() throws Exception {
+        testCall(db,"CALL apoc.schema.properties.distinct('Person', 'name', {prefix:'name19', limit:3})",
+                (row) -> assertEquals(asList("name19", "name190", "name191"), row.get("value"))
+        );
+    }
+
+    @Test
+    public void testDistinctCountWithMinCountAndLimit() throws Exception {
+        testResult(db,"CALL apoc.schema.properties.distinctCount('', 'bar', {minCount:2})",
+                (result) -> {
+                    assertEquals(map("label","Foo","key","bar","value","four","count",2L),result.next());
+                    assertFalse(result.hasNext());
+                });
+        testResult(db,"CALL apoc.schema.properties.distinctCount('Person', 'age', {limit:3})",
+                (result) -> {
+                    assertDistinctCountProperties("Person", "age", personAges.subList(0, 3), () -> 2L, result);
+                    assertFalse(result.hasNext());
+                });
+    }
+
     @Test
     public void testDistinctCountPropertiesOnFirstIndex() throws Exception {
         String label = "Person";
@@ -203,10 +278,9 @@ public class SchemaIndexTest {
                 map("label",label,"key",""),
                 (result) -> {
                     assertDistinctCountProperties("Person", "address", personAddresses, () -> 1L, result);
+                    assertDistinctCountProperties("Person", "age", personAges, () -> 2L, result);
+                    assertDistinctCountProperties("Person", "id", personIds, () -> 1L, result);
                     assertDistinctCountProperties("Person", "name", personNames, () -> 1L, result);
-                    //todo: update when number terms are supported
-                    //assertDistinctCountProperties("Person", "id", personIds, () -> 1L, result);
-                    //assertDistinctCountProperties("Person", "age", personAges, () -> 1L, result);
                     assertFalse(result.hasNext());
                 });
     }
@@ -220,10 +294,9 @@ public class SchemaIndexTest {
                     assertEquals(map("label","Foo","key","bar","value","four","count",2L),result.next());
                     assertEquals(map("label","Foo","key","bar","value","three","count",1L),result.next());
                     assertDistinctCountProperties("Person", "address", personAddresses, () -> 1L, result);
+                    assertDistinctCountProperties("Person", "age", personAges, () -> 2L, result);
+                    assertDistinctCountProperties("Person", "id", personIds, () -> 1L, result);
                     assertDistinctCountProperties("Person", "name", personNames, () -> 1L, result);
-                    //todo: update when number terms are supported
-                    //assertDistinctCountProperties("Person", "id", personIds, () -> 1L, result);
-                    //assertDistinctCountProperties("Person", "age", personAges, () -> 1L, result);
                     assertFalse(result.hasNext());
                 });
     }
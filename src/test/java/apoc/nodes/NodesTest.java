@@ -9,6 +9,7 @@ import org.neo4j.test.TestGraphDatabaseFactory;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -94,6 +95,79 @@ public class NodesTest {
         TestUtil.testCall(db,"MATCH (n:FooBar) RETURN apoc.node.relationship.exists(n,'Y') AS value", (r)-> assertEquals(false,r.get("value")));
     }
 
+    @Test
+    public void testConnectedWithin() throws Exception {
+        db.execute("CREATE (a:A)-[:KNOWS]->(b:B)-[:KNOWS]->(c:C)<-[:KNOWS]-(d:D)-[:LIKES]->(e:E), (x:X) " +
+                "WITH b UNWIND range(1,100) AS _ CREATE (b)-[:KNOWS]->()").close();
+        TestUtil.testCall(db, "MATCH (a:A),(c:C) RETURN apoc.nodes.connectedWithin(a,c,'',1) as one, apoc.nodes.connectedWithin(a,c,'',2) as two", (r) -> {
+            assertEquals(false, r.get("one"));
+            assertEquals(true, r.get("two"));
+        });
+        TestUtil.testCall(db, "MATCH (a:A),(d:D) RETURN apoc.nodes.connectedWithin(a,d,'KNOWS',3) as value", (r) -> assertEquals(true, r.get("value")));
+        TestUtil.testCall(db, "MATCH (a:A),(d:D) RETURN apoc.nodes.connectedWithin(a,d,'KNOWS>',3) as value", (r) -> assertEquals(false, r.get("value")));
+        TestUtil.testCall(db, "MATCH (a:A),(d:D) RETURN apoc.nodes.connectedWithin(d,a,'<KNOWS',3) as value", (r) -> assertEquals(false, r.get("value")));
+        TestUtil.testCall(db, "MATCH (a:A),(c:C) RETURN apoc.nodes.connectedWithin(c,a,'<KNOWS',2) as value", (r) -> assertEquals(true, r.get("value")));
+        TestUtil.testCall(db, "MATCH (a:A),(e:E) RETURN apoc.nodes.connectedWithin(a,e,'KNOWS|LIKES',4) as four, apoc.nodes.connectedWithin(a,e,'KNOWS|LIKES',3) as three, apoc.nodes.connectedWithin(a,e,'KNOWS',10) as knows", (r) -> {
+            assertEquals(true, r.get("four"));
+            assertEquals(false, r.get("three"));
+            assertEquals(false, r.get("knows"));
+        });
+        TestUtil.testCall(db, "MATCH (a:A),(x:X) RETURN apoc.nodes.connectedWithin(a,x,'',10) as value", (r) -> assertEquals(false, r.get("value")));
+    }
+
+    @Test
+    public void testDegreesOfNodes() throws Exception {
+        db.execute("CREATE (a:A)-[:KNOWS]->(b:B)-[:LIKES]->(a), (c:C) " +
+                "WITH b UNWIND range(1,100) AS _ CREATE (b)-[:KNOWS]->()").close();
+        String query = "MATCH (n) WHERE n:A OR n:B OR n:C WITH n ORDER BY id(n) WITH collect(n) AS nodes " +
+                "CALL apoc.nodes.degree(nodes, {types}, {batchSize:1, parallel:true}) YIELD node, degree RETURN labels(node)[0] AS label, degree";
+        TestUtil.testResult(db, query, map("types", "KNOWS>|LIKES"), r -> {
+            assertEquals(map("label", "A", "degree", 2L), r.next());
+            assertEquals(map("label", "B", "degree", 101L), r.next());
+            assertEquals(map("label", "C", "degree", 0L), r.next());
+            assertEquals(false, r.hasNext());
+        });
+        TestUtil.testResult(db, query, map("types", "<KNOWS"), r -> {
+            assertEquals(0L, r.next().get("degree"));
+            assertEquals(1L, r.next().get("degree"));
+        });
+        TestUtil.testCall(db, "MATCH (b:B) CALL apoc.nodes.degree([b, 1000000]) YIELD degree RETURN collect(degree) AS degrees",
+                (r) -> assertEquals(asList(102L), r.get("degrees")));
+    }
+
+    @Test
+    public void testDegreesOfNodesChangedInTransaction() throws Exception {
+        TestUtil.testCall(db, "CREATE (a:Fresh)-[:KNOWS]->(b:Fresh) WITH [a,b] AS nodes " +
+                        "CALL apoc.nodes.degree(nodes, '', {batchSize:1, parallel:true}) YIELD degree RETURN collect(degree) AS degrees",
+                (r) -> assertEquals(asList(1L, 1L), r.get("degrees")));
+    }
+
+    @Test
+    public void testDegreesInParallelWithoutPositiveBatchSize() throws Exception {
+        db.execute("CREATE (a:Batch)-[:KNOWS]->(b:Batch)-[:KNOWS]->(c:Batch)").close();
+        String nodes = "MATCH (n:Batch) WITH n ORDER BY id(n) WITH collect(n) AS nodes ";
+        TestUtil.testCall(db, nodes + "CALL apoc.nodes.degree(nodes, '', {batchSize:0, parallel:true}) YIELD degree RETURN collect(degree) AS degrees",
+                (r) -> assertEquals(asList(1L, 2L, 1L), r.get("degrees")));
+        TestUtil.testCall(db, nodes + "CALL apoc.nodes.degree(nodes, '', {batchSize:-5, parallel:true}) YIELD degree RETURN collect(degree) AS degrees",
+                (r) -> assertEquals(asList(1L, 2L, 1L), r.get("degrees")));
+    }
+
+    @Test
+    public void testRelationshipsOfNodes() throws Exception {
+        db.execute("CREATE (a:A)-[:KNOWS]->(b:B)-[:LIKES]->(a), (c:C) " +
+                "WITH b UNWIND range(1,100) AS _ CREATE (b)-[:KNOWS]->()").close();
+        String nodes = "MATCH (n) WHERE n:A OR n:B OR n:C WITH n ORDER BY id(n) WITH collect(id(n)) AS nodes ";
+        TestUtil.testCall(db, nodes + "CALL apoc.nodes.relationship.exists(nodes, 'LIKES>', {batchSize:2, parallel:true}) YIELD exists RETURN collect(exists) AS value",
+                (r) -> assertEquals(asList(false, true, false), r.get("value")));
+        TestUtil.testCall(db, nodes + "CALL apoc.nodes.relationship.exists(nodes, '', {parallel:false}) YIELD exists RETURN collect(exists) AS value",
+                (r) -> assertEquals(asList(true, true, false), r.get("value")));
+        TestUtil.testResult(db, nodes + "CALL apoc.nodes.relationship.types(nodes, '<KNOWS|LIKES', {batchSize:1, parallel:true}) YIELD node, types RETURN labels(node)[0] AS label, types", r -> {
+            assertEquals(asList("LIKES"), r.next().get("types"));
+            assertEquals(new HashSet<>(asList("KNOWS", "LIKES")), new HashSet<>((List) r.next().get("types")));
+            assertEquals(Collections.emptyList(), r.next().get("types"));
+        });
+    }
+
     @Test
     public void testConnected() throws Exception {
         db.execute("CREATE (st:StartThin),(et:EndThin),(ed:EndDense)").close();
@@ -52,6 +52,20 @@ public class ExpandPathTest {
 		TestUtil.testCall(db, query, (row) -> assertEquals(11L,row.get("c")));
 	}
 
+	@Test
+	public void testExpandConfigParallelMatchesSequential() throws Throwable {
+		String query = "MATCH (m:Movie) WITH collect(m) AS movies CALL apoc.path.expandConfig(movies, {relationshipFilter:'<ACTED_IN|FOLLOWS', maxLevel:2, parallel:{parallel}, batchSize:3}) yield path return count(*) as c";
+		long sequential = Iterators.single(db.execute(query, Util.map("parallel", false)).<Long>columnAs("c"));
+		TestUtil.testCall(db, query, Util.map("parallel", true), (row) -> assertEquals(sequential, row.get("c")));
+	}
+
+	@Test
+	public void testExpandConfigParallelLimitPerStartNode() throws Throwable {
+		String query = "MATCH (m:Movie) WHERE m.title IN ['The Matrix','Top Gun'] WITH collect(m) AS movies " +
+				"CALL apoc.path.expandConfig(movies, {relationshipFilter:'<ACTED_IN', minLevel:1, maxLevel:1, parallel:true, limit:2}) yield path return count(*) as c";
+		TestUtil.testCall(db, query, (row) -> assertEquals(4L, row.get("c")));
+	}
+
 	@Test
 	public void testExplorePathLabelWhiteListTest() throws Throwable {
 		String query = "MATCH (m:Movie {title: 'The Matrix'}) CALL apoc.path.expand(m,'ACTED_IN|PRODUCED|FOLLOWS','+Person|Movie',0,3) yield path return count(*) as c";
@@ -81,6 +95,23 @@ public class ExpandPathTest {
 				});
 	}
 
+	@Test
+	public void testExplorePathWithTerminationLabelKernelEngine() {
+		db.execute("MATCH (c:Person) WHERE c.name in ['Clint Eastwood', 'Gene Hackman'] SET c:Western");
+
+		TestUtil.testResult(db,
+				"MATCH (k:Person {name:'Keanu Reeves'}) " +
+				"CALL apoc.path.expandConfig(k, {relationshipFilter:'ACTED_IN|PRODUCED|DIRECTED', labelFilter:'/Western', uniqueness: 'NODE_GLOBAL', engine:'kernel'}) yield path " +
+				"return path",
+				result -> {
+					List<Map<String, Object>> maps = Iterators.asList(result);
+					assertEquals(1, maps.size()); // since Gene blocks any path to Clint
+					Path path = (Path) maps.get(0).get("path");
+					assertEquals("Keanu Reeves", path.startNode().getProperty("name"));
+					assertEquals("Gene Hackman", path.endNode().getProperty("name"));
+				});
+	}
+
 	@Test
 	public void testExplorePathWithFilterStartNodeFalseIgnoresLabelFilter() throws Throwable {
 		String query = "MATCH (m:Movie {title: 'The Matrix'}) CALL apoc.path.expandConfig(m,{labelFilter:'+Person', maxLevel:2, filterStartNode:false}) yield path return count(*) as c";
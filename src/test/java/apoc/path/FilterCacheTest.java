@@ -0,0 +1,53 @@
+package apoc.path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.api.ReadOperations;
+import org.neo4j.kernel.api.Statement;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import static org.junit.Assert.*;
+
+public class FilterCacheTest {
+
+    private GraphDatabaseAPI db;
+
+    @Before
+    public void setUp() throws Exception {
+        db = (GraphDatabaseAPI) new TestGraphDatabaseFactory().newImpermanentDatabase();
+        db.execute("CREATE (:Person)-[:KNOWS]->(:Movie)").close();
+    }
+
+    @After
+    public void tearDown() {
+        db.shutdown();
+    }
+
+    @Test
+    public void testPatternsAreShared() throws Exception {
+        assertSame(FilterCache.relationshipPattern("KNOWS>|<LIKES"), FilterCache.relationshipPattern("KNOWS>|<LIKES"));
+        assertSame(FilterCache.labelPattern("+Person|-Movie"), FilterCache.labelPattern("+Person|-Movie"));
+        assertEquals(2, FilterCache.relationshipPattern("KNOWS>|<LIKES").size());
+    }
+
+    @Test
+    public void testCompiledFiltersAreCachedPerDatabase() throws Exception {
+        FilterCache filters = FilterCache.of(db);
+        assertSame(filters, FilterCache.of(db));
+        try (Transaction tx = db.beginTx();
+             Statement stmt = db.getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class).get()) {
+            ReadOperations ops = stmt.readOperations();
+            assertSame(filters.relationshipFilter(ops, "KNOWS>"), filters.relationshipFilter(ops, "KNOWS>"));
+            assertSame(filters.labelFilter(ops, "+Person|-Movie"), filters.labelFilter(ops, "+Person|-Movie"));
+            assertNull(filters.labelFilter(ops, ""));
+            // unknown tokens may be created later, those filters are compiled again
+            assertNotSame(filters.relationshipFilter(ops, "KNOWS>|UNKNOWN"), filters.relationshipFilter(ops, "KNOWS>|UNKNOWN"));
+            assertNotSame(filters.labelFilter(ops, "+Person|-Unknown"), filters.labelFilter(ops, "+Person|-Unknown"));
+            tx.success();
+        }
+    }
+}
@@ -239,4 +239,49 @@ public class SubgraphTest {
 			assertTrue(subgraph.containsAll(subgraphNodes));
 		});
 	}
+
+	@Test
+	public void testSubgraphNodesEnginesShouldReturnSameNodes() throws Throwable {
+		String query = "MATCH (k:Person {name: 'Keanu Reeves'}) " +
+				"CALL apoc.path.subgraphNodes(k,{maxLevel:3, relationshipFilter:'ACTED_IN>|<DIRECTED|PRODUCED', labelFilter:'-BigBrother', engine:{engine}}) yield node " +
+				"return collect(id(node)) as ids";
+		List<Long> kernel = (List<Long>) db.execute(query, Util.map("engine", "kernel")).next().get("ids");
+		List<Long> traversal = (List<Long>) db.execute(query, Util.map("engine", "traversal")).next().get("ids");
+		assertEquals(traversal.size(), kernel.size());
+		assertTrue(traversal.containsAll(kernel));
+	}
+
+	@Test
+	public void testSpanningTreeKernelEngineShouldReturnPathsFromStartNode() throws Throwable {
+		String query =
+				"MATCH (k:Person {name: 'Keanu Reeves'}) " +
+						"CALL apoc.path.spanningTree(k,{maxLevel:2, relationshipFilter:'ACTED_IN', engine:'kernel'}) yield path " +
+						"return collect(path) as paths";
+		TestUtil.testCall(db, query, (row) -> {
+			List<org.neo4j.graphdb.Path> paths = (List<org.neo4j.graphdb.Path>) row.get("paths");
+			assertTrue(paths.size() > 1);
+			for (org.neo4j.graphdb.Path path : paths) {
+				assertEquals("Keanu Reeves", path.startNode().getProperty("name"));
+				assertTrue(path.length() <= 2);
+			}
+			assertEquals(0, paths.get(0).length());
+		});
+	}
+
+	@Test
+	public void testParallelSubgraphNodesShouldReturnSameNodes() throws Throwable {
+		String query = "MATCH (m:Movie {title: 'The Matrix'}) " +
+				"CALL apoc.path.subgraphNodes(m,{maxLevel:4, labelFilter:'-BigBrother', parallel:{parallel}, batchSize:2}) yield node " +
+				"return collect(id(node)) as ids";
+		List<Long> serial = (List<Long>) db.execute(query, Util.map("parallel", false)).next().get("ids");
+		List<Long> parallel = (List<Long>) db.execute(query, Util.map("parallel", true)).next().get("ids");
+		assertEquals(serial.size(), parallel.size());
+		assertTrue(serial.containsAll(parallel));
+	}
+
+	@Test
+	public void testParallelSubgraphAllShouldContainAllNodes() throws Throwable {
+		String query = "MATCH (m:Movie {title: 'The Matrix'}) CALL apoc.path.subgraphAll(m,{parallel:true}) yield nodes return size(nodes) as cnt";
+		TestUtil.testCall(db, query, (row) -> assertEquals(fullGraphCount, ((Number) row.get("cnt")).longValue()));
+	}
 }
@@ -8,8 +8,12 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Transaction;
+import org.neo4j.helpers.collection.Iterators;
 import org.neo4j.test.TestGraphDatabaseFactory;
 
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import apoc.util.TestUtil;
 
 public class ParallelNodeSearchTest {
@@ -92,4 +96,55 @@ public class ParallelNodeSearchTest {
     	query = "call apoc.search.nodeAllReduced({Person: 'born', Movie: ['released']},'exact',2000) yield labels as n return count(n) as c";
 		TestUtil.testCall(db, query, (row) -> assertEquals(3L,row.get("c")));
     }
+
+    @Test
+    public void testMultiSearchUsesSchemaIndex() throws Throwable {
+        db.execute("CREATE INDEX ON :Person(name)").close();
+        try (Transaction tx = db.beginTx()) {
+            db.schema().awaitIndexesOnline(10, TimeUnit.SECONDS);
+            tx.success();
+        }
+        long expected = (long) db.execute("MATCH (p:Person) WHERE p.name STARTS WITH 'Tom' RETURN count(*) AS c").next().get("c");
+        TestUtil.testCall(db, "call apoc.search.nodeAll({Person: 'name'},'STARTS WITH','Tom') yield node return count(node) as c",
+                (row) -> assertEquals(expected, row.get("c")));
+        TestUtil.testCall(db, "call apoc.search.node({Person: ['name','name']},'exact','Keanu Reeves') yield node return count(node) as c",
+                (row) -> assertEquals(1L, row.get("c")));
+        TestUtil.testCall(db, "call apoc.search.nodeAllReduced({Person: 'name'},'=~','Keanu.*') yield values return values",
+                (row) -> assertEquals(Util.map("name", "Keanu Reeves"), row.get("values")));
+        db.execute("DROP INDEX ON :Person(name)").close();
+    }
+
+    @Test
+    public void testLimitAndOrderBy() throws Throwable {
+        List<Object> expected = Iterators.asList(db.execute("MATCH (n) WHERE (n:Person AND n.born > 1960) OR (n:Movie AND n.released > 1960) " +
+                "RETURN coalesce(n.born, n.released) AS v ORDER BY v DESC LIMIT 5").columnAs("v"));
+        List<Object> found = Iterators.asList(db.execute("call apoc.search.nodeAllReduced({Person: 'born', Movie: ['released']},'>',1960,{limit:5, orderBy:'value DESC'}) " +
+                "yield values return coalesce(values.born, values.released) as v").columnAs("v"));
+        assertEquals(expected, found);
+
+        TestUtil.testCall(db, "call apoc.search.nodeAllReduced({Person: 'name', Movie: ['title','tagline']},'CONTAINS','her',{limit:2}) yield id return count(*) as c",
+                (row) -> assertEquals(2L, row.get("c")));
+
+        List<Object> ids = Iterators.asList(db.execute("call apoc.search.multiSearchReduced({Person: 'name', Movie: ['title','tagline']},'CONTAINS','her',{limit:3, orderBy:'id'}) yield id return id").columnAs("id"));
+        List<Object> expectedIds = Iterators.asList(db.execute("MATCH (n) WHERE n.name CONTAINS 'her' OR n.title CONTAINS 'her' OR n.tagline CONTAINS 'her' " +
+                "RETURN id(n) AS id ORDER BY id LIMIT 3").columnAs("id"));
+        assertEquals(expectedIds, ids);
+
+        // the tagline of the first node is not among the best tagline, it is completed for the selected node
+        db.execute("CREATE (:Movie {title:'The 0 Movie', tagline:'The zzz'})").close();
+        TestUtil.testCall(db, "call apoc.search.multiSearchReduced({Movie: ['title','tagline']},'STARTS WITH','The',{limit:1, orderBy:'value'}) yield values return values",
+                (row) -> assertEquals(Util.map("title", "The 0 Movie", "tagline", "The zzz"), row.get("values")));
+        db.execute("MATCH (m:Movie {title:'The 0 Movie'}) DELETE m").close();
+    }
+
+    @Test
+    public void testNegativeLimitIsUnlimited() throws Throwable {
+        long all = Iterators.single(db.execute("call apoc.search.nodeAllReduced({Person: 'name', Movie: ['title','tagline']},'CONTAINS','her') yield id return count(*) as c").<Long>columnAs("c"));
+        TestUtil.testCall(db, "call apoc.search.nodeAllReduced({Person: 'name', Movie: ['title','tagline']},'CONTAINS','her',{limit:-5}) yield id return count(*) as c",
+                (row) -> assertEquals(all, row.get("c")));
+        TestUtil.testCall(db, "call apoc.search.nodeAllReduced({Person: 'name', Movie: ['title','tagline']},'CONTAINS','her',{limit:-5, orderBy:'id'}) yield id return count(*) as c",
+                (row) -> assertEquals(all, row.get("c")));
+        TestUtil.testCall(db, "call apoc.search.multiSearchReduced({Person: 'name', Movie: ['title','tagline']},'CONTAINS','her',{limit:0}) yield id return count(*) as c",
+                (row) -> assertEquals(0L, row.get("c")));
+    }
 }
@@ -0,0 +1,23 @@
+package apoc.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AtomicBitSetTest {
+
+    @Test
+    public void testAdd() throws Exception {
+        AtomicBitSet bits = new AtomicBitSet(130);
+        assertEquals(130, bits.size());
+        assertFalse(bits.contains(64));
+        assertTrue(bits.add(64));
+        assertFalse(bits.add(64));
+        assertTrue(bits.contains(64));
+        assertFalse(bits.contains(63));
+        assertTrue(bits.add(129));
+        assertTrue(bits.contains(129));
+    }
+}
@@ -0,0 +1,65 @@
+package apoc.util;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+public class QueueStreamTest {
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(2);
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void testStreamsAllResults() throws Exception {
+        assertEquals(asList(1, 2, 3, 4), QueueStream.<Integer, Integer>parallel(null, pool, 2, 1, asList(1, 2, 3, 4), (work, sink) -> sink.accept(work))
+                .sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testProducerStopsWhenResultsAreNotConsumed() throws Exception {
+        CountDownLatch stopped = new CountDownLatch(1);
+        AtomicBoolean accepted = new AtomicBoolean(true);
+        Iterator<Integer> results = QueueStream.<Integer, Integer>parallel(null, 200, pool, 1, 1, asList(1), (work, sink) -> {
+            for (int i = 0; accepted.get(); i++) accepted.set(sink.accept(i));
+            stopped.countDown();
+        }).iterator();
+        assertEquals(0, (int) results.next());
+        // abandoned without being closed
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+        assertFalse(accepted.get());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testConsumerFailsWithoutResults() throws Exception {
+        ExecutorService busy = Executors.newSingleThreadExecutor();
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // the only thread of the pool is taken, the runner is queued behind it
+            busy.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            QueueStream.<Integer, Integer>parallel(null, 200, busy, 1, 1, asList(1), (work, sink) -> sink.accept(work)).count();
+        } finally {
+            release.countDown();
+            busy.shutdownNow();
+        }
+    }
+}